@@ -0,0 +1,118 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Throughput benchmarks for the {@code Matrix} kernels across a range of
+ * square matrix sizes.
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MatrixBenchmark {
+
+    @Param({"3", "16", "64", "256", "1024", "4096"})
+    public int size;
+
+    private Matrix a;
+    private Matrix b;
+    private Matrix c;
+    private Matrix dest;
+
+    @Setup
+    public void setup() {
+        a = randomMatrix(size);
+        b = randomMatrix(size);
+        c = randomMatrix(size);
+        dest = new Matrix("", size, size);
+    }
+
+    @Benchmark
+    public Matrix mult() {
+        return a.mult(b);
+    }
+
+    @Benchmark
+    public Matrix multInto() {
+        Matrix.multInto(a, b, dest);
+        return dest;
+    }
+
+    @Benchmark
+    public Matrix parallelMult() {
+        return a.parallelMult(b);
+    }
+
+    @Benchmark
+    public Matrix add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public Matrix eagerChain() {
+        Matrix toReturn = a.add(b).sub(c);
+        toReturn.mult(2.0);
+        return toReturn;
+    }
+
+    @Benchmark
+    public Matrix lazyChain() {
+        return a.lazy().add(b).sub(c).mult(2.0).toMatrix("");
+    }
+
+    @Benchmark
+    public Matrix eagerMultAdd() {
+        return a.mult(b).add(c);
+    }
+
+    @Benchmark
+    public Matrix lazyMultAdd() {
+        return a.lazy().mult(b).add(c).toMatrix("");
+    }
+
+    @Benchmark
+    public Matrix transpose() {
+        return a.transpose();
+    }
+
+    @Benchmark
+    public Matrix rowEchelon() {
+        return a.rowEchelon();
+    }
+
+    @Benchmark
+    public Matrix reducedRowEchelon() {
+        return a.reducedRowEchelon();
+    }
+
+    /*
+     * Builds a random, strictly diagonally dominant matrix so that the
+     * elimination benchmarks never run into a singular matrix.
+     */
+    static Matrix randomMatrix(int size) {
+        Matrix m = new Matrix("", size, size);
+        m.setRand(-10, 10);
+
+        for(int i = 0; i < size; i++) {
+            m.setEntry(i, i, m.getEntry(i, i) + 10 * size);
+        }
+
+        return m;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Benchmarks for storing and retrieving variables in {@code Memory} while it
+ * already holds a given number of other variables.
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MemoryBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int variables;
+
+    private String[] labels;
+    private String lastMatrix;
+    private String lastVector;
+    private String lastConstant;
+
+    private final Memory memory = new Memory();
+    private final Matrix matrix = new Matrix("", 3, 3);
+    private final Vector vector = new Vector("", 1.0, 2.0, 3.0);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        labels = new String[variables];
+
+        for(int i = 0; i < variables; i++) {
+            // Interned so that lookups by identity and by value both succeed
+            labels[i] = ("var" + i).intern();
+
+            switch(i % 3) {
+                case 0:
+                    memory.store(labels[i], matrix);
+                    lastMatrix = labels[i];
+                    break;
+                case 1:
+                    memory.store(labels[i], vector);
+                    lastVector = labels[i];
+                    break;
+                default:
+                    memory.store(labels[i], (double) i);
+                    lastConstant = labels[i];
+                    break;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for(String label : labels) {
+            memory.free(label);
+        }
+    }
+
+    @Benchmark
+    public Matrix storeAndFree() {
+        memory.store("benchmark", matrix);
+        Matrix toReturn = memory.retrieveMatrix("benchmark");
+        memory.free("benchmark");
+
+        return toReturn;
+    }
+
+    @Benchmark
+    public Object retrieveType() {
+        return memory.retrieveType(lastMatrix);
+    }
+
+    @Benchmark
+    public Matrix retrieveMatrix() {
+        return memory.retrieveMatrix(lastMatrix);
+    }
+
+    @Benchmark
+    public Vector retrieveVector() {
+        return memory.retrieveVector(lastVector);
+    }
+
+    @Benchmark
+    public double retrieveConstant() {
+        return memory.retrieveConstant(lastConstant);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Matrix concurrentRetrieveMatrix() {
+        return memory.retrieveMatrix(lastMatrix);
+    }
+}
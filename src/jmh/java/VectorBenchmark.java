@@ -0,0 +1,64 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Throughput benchmarks for the {@code Vector} kernels. The sizes cover the
+ * same number of entries as the 3x3 to 4096x4096 matrices in
+ * {@link MatrixBenchmark}.
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class VectorBenchmark {
+
+    @Param({"3", "256", "4096", "65536", "1048576", "16777216"})
+    public int size;
+
+    private Vector a;
+    private Vector b;
+
+    @Setup
+    public void setup() {
+        a = new Vector("", size);
+        b = new Vector("", size);
+        a.setRand(-10, 10);
+        b.setRand(-10, 10);
+    }
+
+    @Benchmark
+    public double dot() {
+        return a.dot(b);
+    }
+
+    @Benchmark
+    public Vector add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public Vector sub() {
+        return a.sub(b);
+    }
+
+    @Benchmark
+    public double getMagnitude() {
+        return a.getMagnitude();
+    }
+}
@@ -4,24 +4,38 @@
  *
  * Entry point for the application.
  *
- * Detailed description to be added at a later date.
+ * Reads statements such as {@code C = A*B + 2*D} from standard input, one
+ * per line, and prints the value of each. See {@link Interpreter} for the
+ * syntax. A few example variables are stored to start with.
  */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
 public class App {
 
-    public static void main(String[] args) {
-        Memory.store("A", 9.0);
-        Memory.store("B", new Vector("", 1.0, 2.0, 3.0));
-        Memory.store("C", new Matrix("", 5, 5));
+    public static void main(String[] args) throws IOException {
+        Memory memory = new Memory();
 
-        try {
-            Memory.store("A", 234.0);
-        }
-        catch(IllegalArgumentException e) {
-            System.out.println("Good");
-        }
+        memory.store("A", 9.0);
+        memory.store("B", new Vector("", 1.0, 2.0, 3.0));
+        memory.store("C", new Matrix("", 3, 3));
+        Interpreter interpreter = new Interpreter(memory);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 
-        Memory.free("A");
+        String line;
+        while((line = in.readLine()) != null) {
+            if(line.trim().isEmpty()) {
+                continue;
+            }
 
-        Memory.store("A", 90.0);
+            try {
+                System.out.println(interpreter.evaluate(line));
+            }
+            catch(IllegalArgumentException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
     }
 }
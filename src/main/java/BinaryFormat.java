@@ -0,0 +1,484 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Reads and writes matrices and vectors in a versioned little-endian binary
+ * format, to and from byte buffers and channels. Each record is laid out as:
+ * <pre>
+ *     int    magic ("MUBF")
+ *     short  version
+ *     byte   kind (0 = vector, 1 = matrix)
+ *     byte   dtype (1 = 64-bit IEEE 754 double)
+ *     int    height (the size, for a vector)
+ *     int    width (1 for a vector)
+ *     int    label length in bytes (-1 for a null label)
+ *     byte[] label, UTF-8
+ *     padding to a multiple of 8 bytes from the start of the record
+ *     double[height * width] entries, row-major
+ * </pre>
+ * The entries are moved with bulk DoubleBuffer transfers, so there is no
+ * per-element work beyond the byte order conversion (none on little-endian
+ * machines) and nothing is boxed. Records can be concatenated in a stream
+ * and read back one at a time.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+public final class BinaryFormat {
+
+    /**
+     * The version written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4642554D;
+
+    private static final byte VECTOR = 0;
+    private static final byte MATRIX = 1;
+
+    private static final byte FLOAT64 = 1;
+
+    /*
+     * The length of the fixed part of the header, before the label.
+     */
+    private static final int FIXED_HEADER = 20;
+
+    /*
+     * The size of the buffer used to move entries to and from channels.
+     */
+    static final int CHUNK = 1 << 16;
+
+    private BinaryFormat() {
+    }
+
+/****************************************************************/
+/*                            Sizes                             */
+/****************************************************************/
+
+    /**
+     * Returns the number of bytes the matrix takes up when written.
+     * @param m The matrix.
+     * @return The size of its record in bytes.
+     */
+    public static long sizeOf(Matrix m) {
+        return headerSize(m.getLabel()) + 8L * m.getWidth() * m.getHeight();
+    }
+
+    /**
+     * Returns the number of bytes the vector takes up when written.
+     * @param v The vector.
+     * @return The size of its record in bytes.
+     */
+    public static long sizeOf(Vector v) {
+        return headerSize(v.getLabel()) + 8L * v.getSize();
+    }
+
+/****************************************************************/
+/*                           Buffers                            */
+/****************************************************************/
+
+    /**
+     * Writes the matrix at the buffer's position, advancing it past the
+     * record. The buffer's byte order is left unchanged.
+     * @param m The matrix to write.
+     * @param dest The buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void write(Matrix m, ByteBuffer dest) {
+        checkRoom(dest, sizeOf(m));
+        dest.put(header(MATRIX, m.getLabel(), m.getHeight(), m.getWidth()));
+        putEntries(m::copyTo, m.getWidth() * m.getHeight(), dest);
+    }
+
+    /**
+     * Writes the vector at the buffer's position, advancing it past the
+     * record. The buffer's byte order is left unchanged.
+     * @param v The vector to write.
+     * @param dest The buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void write(Vector v, ByteBuffer dest) {
+        checkRoom(dest, sizeOf(v));
+        dest.put(header(VECTOR, v.getLabel(), v.getSize(), 1));
+        putEntries(entriesOf(v), v.getSize(), dest);
+    }
+
+    /**
+     * Reads a matrix from the buffer's position, advancing it past the record.
+     * @param src The buffer to read from.
+     * @return The matrix.
+     * @throws IOException if the buffer does not hold a valid matrix record.
+     */
+    public static Matrix readMatrix(ByteBuffer src) throws IOException {
+        Header header = checkArraySize(readHeader(new BufferSource(src), MATRIX));
+        double[] entries = new double[header.height * header.width];
+        getEntries(src, entries);
+
+        return Matrix.wrap(header.label, header.width, header.height, entries);
+    }
+
+    /**
+     * Reads a vector from the buffer's position, advancing it past the record.
+     * @param src The buffer to read from.
+     * @return The vector.
+     * @throws IOException if the buffer does not hold a valid vector record.
+     */
+    public static Vector readVector(ByteBuffer src) throws IOException {
+        Header header = checkArraySize(readHeader(new BufferSource(src), VECTOR));
+        double[] entries = new double[header.height];
+        getEntries(src, entries);
+
+        return Vector.wrap(header.label, entries);
+    }
+
+/****************************************************************/
+/*                           Channels                           */
+/****************************************************************/
+
+    /**
+     * Writes the matrix to the channel.
+     * @param m The matrix to write.
+     * @param channel The channel to write to.
+     * @throws IOException if the channel can't be written.
+     */
+    public static void write(Matrix m, WritableByteChannel channel) throws IOException {
+        writeFully(channel, header(MATRIX, m.getLabel(), m.getHeight(), m.getWidth()));
+        writeEntries(m::copyTo, m.getWidth() * m.getHeight(), channel);
+    }
+
+    /**
+     * Writes the vector to the channel.
+     * @param v The vector to write.
+     * @param channel The channel to write to.
+     * @throws IOException if the channel can't be written.
+     */
+    public static void write(Vector v, WritableByteChannel channel) throws IOException {
+        writeFully(channel, header(VECTOR, v.getLabel(), v.getSize(), 1));
+        writeEntries(entriesOf(v), v.getSize(), channel);
+    }
+
+    /**
+     * Reads the next matrix from the channel.
+     * @param channel The channel to read from.
+     * @return The matrix.
+     * @throws IOException if the channel can't be read or does not hold a
+     * valid matrix record.
+     */
+    public static Matrix readMatrix(ReadableByteChannel channel) throws IOException {
+        Header header = checkArraySize(readHeader(new ChannelSource(channel), MATRIX));
+        double[] entries = new double[header.height * header.width];
+        readEntries(channel, entries);
+
+        return Matrix.wrap(header.label, header.width, header.height, entries);
+    }
+
+    /**
+     * Reads the next vector from the channel.
+     * @param channel The channel to read from.
+     * @return The vector.
+     * @throws IOException if the channel can't be read or does not hold a
+     * valid vector record.
+     */
+    public static Vector readVector(ReadableByteChannel channel) throws IOException {
+        Header header = checkArraySize(readHeader(new ChannelSource(channel), VECTOR));
+        double[] entries = new double[header.height];
+        readEntries(channel, entries);
+
+        return Vector.wrap(header.label, entries);
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Copies entries, in row-major order, into a buffer. Lets off-heap
+     * matrices be written without copying them to the heap first.
+     */
+    @FunctionalInterface
+    interface EntrySource {
+        void copyTo(int index, DoubleBuffer dest, int count);
+    }
+
+    static EntrySource entriesOf(Vector v) {
+        double[] entries = v.getEntries();
+        return (index, dest, count) -> dest.put(entries, index, count);
+    }
+
+    /*
+     * A parsed header. size is its length in bytes, including the padding,
+     * so the entries start size bytes into the record.
+     */
+    static class Header {
+        String label;
+        int height, width;
+        int size;
+    }
+
+    /*
+     * Builds the header of a matrix record, for writing the entries some
+     * other way.
+     */
+    static ByteBuffer matrixHeader(String label, int height, int width) {
+        return header(MATRIX, label, height, width);
+    }
+
+    /*
+     * Reads the header of a matrix record, leaving the channel at the first
+     * entry. Unlike readMatrix this accepts matrices with more entries than
+     * an array can hold.
+     */
+    static Header readMatrixHeader(ReadableByteChannel channel) throws IOException {
+        return readHeader(new ChannelSource(channel), MATRIX);
+    }
+
+    /*
+     * Builds the header of a vector record.
+     */
+    static ByteBuffer vectorHeader(String label, int size) {
+        return header(VECTOR, label, size, 1);
+    }
+
+    /*
+     * Reads the header of a vector record, leaving the channel at the first
+     * entry.
+     */
+    static Header readVectorHeader(ReadableByteChannel channel) throws IOException {
+        return readHeader(new ChannelSource(channel), VECTOR);
+    }
+
+    /*
+     * Throws if the record has too many entries to read into an array.
+     */
+    static Header checkArraySize(Header header) throws IOException {
+        if((long) header.width * header.height > Integer.MAX_VALUE - 8) {
+            throw new IOException("Record is too large to read into memory!");
+        }
+
+        return header;
+    }
+
+    /*
+     * Returns the number of bytes of padding that bring position up to a
+     * multiple of 8.
+     */
+    static int padding(long position) {
+        return (int) (-position & 7);
+    }
+
+    /*
+     * Somewhere to read header bytes from, so the same parsing works for
+     * buffers and channels.
+     */
+    private interface Source {
+        ByteBuffer read(int length) throws IOException;
+    }
+
+    private static class BufferSource implements Source {
+        private final ByteBuffer src;
+
+        BufferSource(ByteBuffer src) {
+            this.src = src;
+        }
+
+        @Override
+        public ByteBuffer read(int length) throws IOException {
+            if(src.remaining() < length) {
+                throw new EOFException("Record is truncated!");
+            }
+
+            ByteBuffer toReturn = src.slice().order(ByteOrder.LITTLE_ENDIAN);
+            toReturn.limit(length);
+            src.position(src.position() + length);
+            return toReturn;
+        }
+    }
+
+    private static class ChannelSource implements Source {
+        private final ReadableByteChannel channel;
+
+        ChannelSource(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public ByteBuffer read(int length) throws IOException {
+            ByteBuffer toReturn = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, toReturn);
+            toReturn.flip();
+            return toReturn;
+        }
+    }
+
+    private static int headerSize(String label) {
+        int size = FIXED_HEADER + bytesOf(label).length;
+        return size + padding(size);
+    }
+
+    /*
+     * Builds the header for a record, padded to a multiple of 8 bytes.
+     */
+    private static ByteBuffer header(byte kind, String label, int height, int width) {
+        byte[] labelBytes = bytesOf(label);
+        ByteBuffer header = ByteBuffer.allocate(headerSize(label)).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.putInt(MAGIC);
+        header.putShort((short) VERSION);
+        header.put(kind);
+        header.put(FLOAT64);
+        header.putInt(height);
+        header.putInt(width);
+        header.putInt(label == null ? -1 : labelBytes.length);
+        header.put(labelBytes);
+
+        // The rest is already zero padding
+        header.clear();
+        return header;
+    }
+
+    /*
+     * Parses and validates a header, consuming its padding as well.
+     */
+    private static Header readHeader(Source source, byte kind) throws IOException {
+        ByteBuffer fixed = source.read(FIXED_HEADER);
+
+        if(fixed.getInt() != MAGIC) {
+            throw new IOException("Not a matrix or vector record!");
+        }
+
+        int version = fixed.getShort();
+        if(version < 1 || version > VERSION) {
+            throw new IOException("Unsupported format version " + version + "!");
+        }
+
+        byte actualKind = fixed.get();
+        if(actualKind != kind) {
+            throw new IOException(kind == MATRIX ? "Record holds a vector, not a matrix!"
+                                                 : "Record holds a matrix, not a vector!");
+        }
+
+        byte dtype = fixed.get();
+        if(dtype != FLOAT64) {
+            throw new IOException("Unsupported data type " + dtype + "!");
+        }
+
+        Header header = new Header();
+        header.height = fixed.getInt();
+        header.width = fixed.getInt();
+        int labelLength = fixed.getInt();
+
+        // Matrices built from vectors of size 1 have a single column
+        boolean validSize = kind == MATRIX ? header.width >= 1 && header.height >= 1
+                                           : header.width == 1 && header.height >= 1;
+        if(!validSize || labelLength < -1) {
+            throw new IOException("Record is corrupt!");
+        }
+
+        if(labelLength == -1) {
+            header.label = null;
+            labelLength = 0;
+        }
+        else {
+            byte[] labelBytes = new byte[labelLength];
+            source.read(labelLength).get(labelBytes);
+            header.label = new String(labelBytes, StandardCharsets.UTF_8);
+        }
+
+        header.size = FIXED_HEADER + labelLength + padding(FIXED_HEADER + labelLength);
+        source.read(header.size - FIXED_HEADER - labelLength);
+
+        return header;
+    }
+
+    /*
+     * Throws before anything is written if the whole record won't fit, so a
+     * failed write never leaves half a record behind.
+     */
+    private static void checkRoom(ByteBuffer dest, long size) {
+        if(dest.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    private static void putEntries(EntrySource entries, int length, ByteBuffer dest) {
+        entries.copyTo(0, dest.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer(), length);
+        dest.position((int) (dest.position() + 8L * length));
+    }
+
+    private static void getEntries(ByteBuffer src, double[] entries) throws IOException {
+        long bytes = 8L * entries.length;
+        if(src.remaining() < bytes) {
+            throw new EOFException("Record is truncated!");
+        }
+
+        src.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(entries);
+        src.position((int) (src.position() + bytes));
+    }
+
+    /*
+     * Returns the size of the buffer to stream length entries through: one
+     * chunk, or less if the entries fit in less. Records can hold more than
+     * 2GB of entries, so the size is worked out in longs.
+     */
+    static int chunkBytes(int length) {
+        return (int) Math.min(CHUNK, 8L * length);
+    }
+
+    /*
+     * Streams the entries through a direct buffer, a chunk at a time.
+     */
+    private static void writeEntries(EntrySource entries, int length, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(chunkBytes(length)).order(ByteOrder.LITTLE_ENDIAN);
+        int perChunk = buffer.capacity() / 8;
+
+        for(int offset = 0; offset < length; offset += perChunk) {
+            int count = Math.min(perChunk, length - offset);
+
+            buffer.clear();
+            entries.copyTo(offset, buffer.asDoubleBuffer(), count);
+            buffer.limit(8 * count);
+            writeFully(channel, buffer);
+        }
+    }
+
+    private static void readEntries(ReadableByteChannel channel, double[] entries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(chunkBytes(entries.length)).order(ByteOrder.LITTLE_ENDIAN);
+        int perChunk = buffer.capacity() / 8;
+
+        for(int offset = 0; offset < entries.length; offset += perChunk) {
+            int count = Math.min(perChunk, entries.length - offset);
+
+            buffer.clear();
+            buffer.limit(8 * count);
+            readFully(channel, buffer);
+            buffer.flip();
+            buffer.asDoubleBuffer().get(entries, offset, count);
+        }
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer) < 0) {
+                throw new EOFException("Record is truncated!");
+            }
+        }
+    }
+
+    static byte[] bytesOf(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+}
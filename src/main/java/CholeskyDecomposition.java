@@ -0,0 +1,298 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The Cholesky decomposition of a symmetric positive-definite matrix, such
+ * that A = LL^T where L is lower triangular.
+ *
+ * This needs half the work of an LU decomposition and no pivoting, but only
+ * works for symmetric positive-definite matrices. The factorization stops as
+ * soon as it finds that the matrix isn't one, so callers can check
+ * {@link #isSPD()} and fall back to {@link LUDecomposition} cheaply:
+ * <pre>
+ *     CholeskyDecomposition c = m.cholesky();
+ *     Vector x = c.isSPD() ? c.solve(b) : m.lu().solve(b);
+ * </pre>
+ */
+
+public class CholeskyDecomposition {
+
+    /*
+     * L in a row-major n by n array. Only the lower triangle is meaningful
+     * while factoring; the upper triangle is cleared at the end.
+     */
+    private final double[] l;
+    private final int n;
+    private final boolean spd;
+
+    /*
+     * The number of columns in each panel of the blocked factorization.
+     */
+    private static final int BLOCK = 64;
+
+    /*
+     * The largest relative difference allowed between A[i][j] and A[j][i]
+     * for the matrix to still be treated as symmetric.
+     */
+    private static final double SYMMETRY_TOLERANCE = 1e-10;
+
+    /**
+     * Computes the Cholesky decomposition of the matrix provided. The matrix
+     * itself is not modified. If the matrix is not symmetric positive-definite
+     * the factorization is abandoned and {@link #isSPD()} returns false.
+     * @param m The matrix to decompose.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     */
+    public CholeskyDecomposition(Matrix m) throws UnsupportedOperationException {
+        if(!m.isSquare()) {
+            throw new UnsupportedOperationException("Cannot take the Cholesky decomposition of a non-square matrix!");
+        }
+
+        this.n = m.getWidth();
+        this.l = m.toArray();
+        this.spd = isSymmetric() && factor();
+
+        if(spd) {
+            for(int i = 0; i < n; i++) {
+                for(int j = i + 1; j < n; j++) {
+                    l[i * n + j] = 0;
+                }
+            }
+        }
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Checks whether the decomposed matrix was symmetric positive-definite,
+     * i.e. whether the decomposition succeeded.
+     * @return Whether or not the matrix is symmetric positive-definite.
+     */
+    public boolean isSPD() {
+        return spd;
+    }
+
+    /**
+     * Returns the lower triangular factor L.
+     * @return L.
+     * @throws ArithmeticException if the matrix was not symmetric positive-definite.
+     */
+    public Matrix getL() throws ArithmeticException {
+        checkSPD();
+
+        return Matrix.wrap("L", n, n, l.clone());
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Computes the determinant of the decomposed matrix in O(n).
+     * @return The determinant.
+     * @throws ArithmeticException if the matrix was not symmetric positive-definite.
+     */
+    public double determinant() throws ArithmeticException {
+        checkSPD();
+
+        double det = 1;
+        for(int i = 0; i < n; i++) {
+            det *= l[i * n + i];
+        }
+
+        return det * det;
+    }
+
+    /**
+     * Solves the system Ax = b, where A is the decomposed matrix.
+     * @param b The right-hand side.
+     * @return The solution x.
+     * @throws IllegalArgumentException if b is not the same size as A.
+     * @throws ArithmeticException if A was not symmetric positive-definite.
+     */
+    public Vector solve(Vector b) throws IllegalArgumentException, ArithmeticException {
+        if(b.getSize() != n) {
+            throw new IllegalArgumentException("Right-hand side is the wrong size!");
+        }
+        checkSPD();
+
+        double[] x = b.toArray();
+        substitute(x, 1);
+
+        return Vector.wrap(b.getLabel(), x);
+    }
+
+    /**
+     * Solves the system AX = B for every column of B at once, where A is the
+     * decomposed matrix.
+     * @param b The right-hand sides, one per column.
+     * @return The solutions, one per column.
+     * @throws IllegalArgumentException if B does not have the same height as A.
+     * @throws ArithmeticException if A was not symmetric positive-definite.
+     */
+    public Matrix solve(Matrix b) throws IllegalArgumentException, ArithmeticException {
+        if(b.getHeight() != n) {
+            throw new IllegalArgumentException("Right-hand side is the wrong size!");
+        }
+        checkSPD();
+
+        double[] x = b.toArray();
+        substitute(x, b.getWidth());
+
+        return Matrix.wrap(b.getLabel(), b.getWidth(), n, x);
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Checks that the matrix is symmetric to within SYMMETRY_TOLERANCE.
+     */
+    private boolean isSymmetric() {
+        for(int i = 0; i < n; i++) {
+            for(int j = 0; j < i; j++) {
+                double a = l[i * n + j];
+                double b = l[j * n + i];
+
+                if(Math.abs(a - b) > SYMMETRY_TOLERANCE * Math.max(Math.abs(a), Math.abs(b))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Factors the lower triangle of l in place. Returns false as soon as a
+     * non-positive pivot shows up, since then the matrix isn't positive-definite.
+     *
+     * Each BLOCK wide panel is factored on its own, then the trailing lower
+     * triangle is updated one block row at a time with the GEMM kernel.
+     */
+    private boolean factor() {
+        double[] panelT = new double[Math.min(BLOCK, n) * n];
+
+        for(int k0 = 0; k0 < n; k0 += BLOCK) {
+            int k1 = Math.min(k0 + BLOCK, n);
+            int nb = k1 - k0;
+
+            // Factor the diagonal block and solve for the panel below it. The
+            // contributions of the columns before k0 were already subtracted.
+            for(int j = k0; j < k1; j++) {
+                int jRow = j * n;
+
+                double d = l[jRow + j];
+                for(int p = k0; p < j; p++) {
+                    d -= l[jRow + p] * l[jRow + p];
+                }
+
+                if(!(d > 0)) {
+                    return false;
+                }
+
+                double diag = Math.sqrt(d);
+                l[jRow + j] = diag;
+
+                for(int i = j + 1; i < n; i++) {
+                    int iRow = i * n;
+
+                    double sum = l[iRow + j];
+                    for(int p = k0; p < j; p++) {
+                        sum -= l[iRow + p] * l[jRow + p];
+                    }
+                    l[iRow + j] = sum / diag;
+                }
+            }
+
+            if(k1 == n) {
+                break;
+            }
+
+            // Copy the transpose of the panel below the diagonal block so it
+            // can be used as the right operand of the GEMM kernel.
+            int rest = n - k1;
+            for(int i = k1; i < n; i++) {
+                for(int p = 0; p < nb; p++) {
+                    panelT[p * rest + (i - k1)] = l[i * n + k0 + p];
+                }
+            }
+
+            // A22 -= L21 L21^T, only computing blocks on or below the diagonal
+            for(int i0 = k1; i0 < n; i0 += BLOCK) {
+                int i1 = Math.min(i0 + BLOCK, n);
+
+                Gemm.multiply(-1, i1 - i0, i1 - k1, nb,
+                              l, i0 * n + k0, n,
+                              panelT, 0, rest,
+                              l, i0 * n + k1, n);
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Overwrites the n by cols row-major array x with the solution of
+     * LL^T X = x.
+     */
+    private void substitute(double[] x, int cols) {
+        // Forward substitution with L
+        for(int i = 0; i < n; i++) {
+            int row = i * n;
+            int xRow = i * cols;
+
+            for(int j = 0; j < i; j++) {
+                double factor = l[row + j];
+                if(factor == 0) {
+                    continue;
+                }
+
+                int xj = j * cols;
+                for(int c = 0; c < cols; c++) {
+                    x[xRow + c] -= factor * x[xj + c];
+                }
+            }
+
+            double diag = l[row + i];
+            for(int c = 0; c < cols; c++) {
+                x[xRow + c] /= diag;
+            }
+        }
+
+        // Back substitution with L^T, using row i of L as column i of L^T
+        for(int i = n - 1; i >= 0; i--) {
+            int row = i * n;
+            int xRow = i * cols;
+
+            double diag = l[row + i];
+            for(int c = 0; c < cols; c++) {
+                x[xRow + c] /= diag;
+            }
+
+            for(int j = 0; j < i; j++) {
+                double factor = l[row + j];
+                if(factor == 0) {
+                    continue;
+                }
+
+                int xj = j * cols;
+                for(int c = 0; c < cols; c++) {
+                    x[xj + c] -= factor * x[xRow + c];
+                }
+            }
+        }
+    }
+
+    /*
+     * Throws if the matrix was not symmetric positive-definite.
+     */
+    private void checkSPD() throws ArithmeticException {
+        if(!spd) {
+            throw new ArithmeticException("Matrix is not symmetric positive-definite!");
+        }
+    }
+}
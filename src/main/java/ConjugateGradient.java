@@ -0,0 +1,76 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The (preconditioned) conjugate gradient method for systems Ax = b where A
+ * is symmetric positive-definite. Each iteration needs one product with A,
+ * one application of the preconditioner and a handful of vectors, so memory
+ * is O(n) however large the system is. The preconditioner must also be
+ * symmetric positive-definite.
+ * <pre>
+ *     ConjugateGradient cg = new ConjugateGradient();
+ *     cg.setPreconditioner(new JacobiPreconditioner(a));
+ *     Vector x = cg.solve(a::mult, b);
+ * </pre>
+ */
+
+public class ConjugateGradient extends IterativeSolver {
+
+    /*
+     * Runs CG on x in place. Throws if the operator turns out not to be
+     * positive-definite, since CG breaks down for those.
+     */
+    @Override
+    boolean iterate(LinearOperator a, double[] b, double[] x, double target) throws ArithmeticException {
+        int n = b.length;
+        double bNorm = norm(b);
+
+        double[] r = apply(a, x);
+        for(int i = 0; i < n; i++) {
+            r[i] = b[i] - r[i];
+        }
+
+        double rNorm = norm(r);
+        residual = rNorm / bNorm;
+        if(rNorm <= target) {
+            return true;
+        }
+
+        double[] z = precondition(r);
+        double[] p = z.clone();
+        double rz = dot(r, z);
+
+        while(iterations < getMaxIterations()) {
+            double[] ap = apply(a, p);
+
+            double pap = dot(p, ap);
+            if(!(pap > 0)) {
+                throw new ArithmeticException("Operator is not positive-definite!");
+            }
+
+            double alpha = rz / pap;
+            for(int i = 0; i < n; i++) {
+                x[i] += alpha * p[i];
+                r[i] -= alpha * ap[i];
+            }
+
+            iterations++;
+            rNorm = norm(r);
+            residual = rNorm / bNorm;
+            if(rNorm <= target) {
+                return true;
+            }
+
+            z = precondition(r);
+            double rzNew = dot(r, z);
+            double beta = rzNew / rz;
+            rz = rzNew;
+
+            for(int i = 0; i < n; i++) {
+                p[i] = z[i] + beta * p[i];
+            }
+        }
+
+        return false;
+    }
+}
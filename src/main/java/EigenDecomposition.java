@@ -0,0 +1,411 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The eigen-decomposition of a symmetric matrix, such that A = V D V^T where
+ * D is diagonal and holds the eigenvalues and V is orthogonal and holds the
+ * eigenvectors as its columns.
+ *
+ * The matrix is first reduced to tridiagonal form with Householder
+ * reflections, and the eigenvalues of the tridiagonal matrix are then found
+ * with the implicitly shifted QL algorithm. When only the eigenvalues are
+ * needed, neither the reflections nor the QL rotations are accumulated,
+ * which saves most of the work.
+ */
+
+public class EigenDecomposition {
+
+    private final int n;
+    private final double[] eigenvalues;
+
+    /*
+     * The transpose of V, i.e. eigenvector i is row i. Null when only the
+     * eigenvalues were computed.
+     */
+    private final double[] vt;
+
+    /*
+     * The largest relative difference allowed between A[i][j] and A[j][i]
+     * for the matrix to still be treated as symmetric.
+     */
+    private static final double SYMMETRY_TOLERANCE = 1e-10;
+
+    /*
+     * The number of QL iterations allowed per eigenvalue before giving up.
+     */
+    private static final int MAX_ITERATIONS = 30;
+
+    private static final double EPSILON = Math.ulp(1.0);
+
+    /**
+     * Computes the eigenvalues and eigenvectors of the symmetric matrix
+     * provided. The matrix itself is not modified.
+     * @param m The matrix to decompose.
+     * @throws UnsupportedOperationException if the matrix is not square and symmetric.
+     */
+    public EigenDecomposition(Matrix m) throws UnsupportedOperationException {
+        this(m, true);
+    }
+
+    /**
+     * Computes the eigenvalues, and optionally the eigenvectors, of the
+     * symmetric matrix provided. The matrix itself is not modified.
+     * @param m The matrix to decompose.
+     * @param computeVectors Whether or not to compute the eigenvectors.
+     * @throws UnsupportedOperationException if the matrix is not square and symmetric.
+     * @throws ArithmeticException if the QL iteration fails to converge.
+     */
+    public EigenDecomposition(Matrix m, boolean computeVectors) throws UnsupportedOperationException, ArithmeticException {
+        if(!m.isSquare()) {
+            throw new UnsupportedOperationException("Cannot take the eigen-decomposition of a non-square matrix!");
+        }
+
+        this.n = m.getWidth();
+
+        double[] a = m.toArray();
+        if(!isSymmetric(a, n)) {
+            throw new UnsupportedOperationException("Only symmetric matrices are supported!");
+        }
+
+        double[] d = new double[n];
+        double[] e = new double[n];
+        double[] tau = new double[n];
+
+        tridiagonalize(a, d, e, tau);
+
+        this.vt = computeVectors ? accumulateReflectors(a, tau) : null;
+        this.eigenvalues = d;
+
+        ql(d, e, vt);
+        sort(d, vt);
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Returns the eigenvalues in ascending order.
+     * @return The eigenvalues.
+     */
+    public Vector getEigenvalues() {
+        return Vector.wrap("", eigenvalues.clone());
+    }
+
+    /**
+     * Returns the eigenvector belonging to the i-th smallest eigenvalue.
+     * @param index The index of the eigenvalue.
+     * @return The eigenvector, normalized to unit length.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     * @throws UnsupportedOperationException if the eigenvectors were not computed.
+     */
+    public Vector getEigenvector(int index) throws IndexOutOfBoundsException, UnsupportedOperationException {
+        if(index >= n || index < 0) {
+            throw new IndexOutOfBoundsException("Index out of bounds!");
+        }
+        checkVectors();
+
+        double[] toReturn = new double[n];
+        System.arraycopy(vt, index * n, toReturn, 0, n);
+
+        return Vector.wrap("", toReturn);
+    }
+
+    /**
+     * Returns the matrix V whose columns are the eigenvectors, in the same
+     * order as the eigenvalues.
+     * @return V.
+     * @throws UnsupportedOperationException if the eigenvectors were not computed.
+     */
+    public Matrix getV() throws UnsupportedOperationException {
+        checkVectors();
+
+        return Matrix.wrap("V", n, n, vt.clone()).transpose();
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Checks that the n by n row-major array a is symmetric to within
+     * SYMMETRY_TOLERANCE.
+     */
+    private static boolean isSymmetric(double[] a, int n) {
+        for(int i = 0; i < n; i++) {
+            for(int j = 0; j < i; j++) {
+                double x = a[i * n + j];
+                double y = a[j * n + i];
+
+                if(Math.abs(x - y) > SYMMETRY_TOLERANCE * Math.max(Math.abs(x), Math.abs(y))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Reduces a to tridiagonal form, working only on its upper triangle so
+     * that every inner loop runs along a row. Fills in the diagonal d and the
+     * off-diagonal e (e[k] couples k and k + 1). The Householder vector used
+     * to clear row k is left in a[k][k + 1 .. n) with its scale in tau[k].
+     */
+    private void tridiagonalize(double[] a, double[] d, double[] e, double[] tau) {
+        double[] p = new double[n];
+
+        for(int k = 0; k < n - 2; k++) {
+            int row = k * n;
+            int start = k + 1;
+
+            d[k] = a[row + k];
+
+            // Build the reflector which clears a[k][k + 2 .. n)
+            double alpha = a[row + start];
+            double sum = 0;
+            for(int j = start + 1; j < n; j++) {
+                sum += a[row + j] * a[row + j];
+            }
+
+            if(sum == 0) {
+                e[k] = alpha;
+                tau[k] = 0;
+                continue;
+            }
+
+            double norm = Math.sqrt(alpha * alpha + sum);
+            double beta = alpha > 0 ? -norm : norm;
+            double scale = 1.0 / (alpha - beta);
+
+            a[row + start] = 1;
+            for(int j = start + 1; j < n; j++) {
+                a[row + j] *= scale;
+            }
+
+            double t = (beta - alpha) / beta;
+            e[k] = beta;
+            tau[k] = t;
+
+            // p = tau * A22 v, using only the upper triangle of A22
+            for(int i = start; i < n; i++) {
+                p[i] = 0;
+            }
+            for(int i = start; i < n; i++) {
+                int iRow = i * n;
+                double vi = a[row + i];
+                double sumI = a[iRow + i] * vi;
+
+                for(int j = i + 1; j < n; j++) {
+                    double aij = a[iRow + j];
+                    sumI += aij * a[row + j];
+                    p[j] += aij * vi;
+                }
+
+                p[i] += sumI;
+            }
+
+            // w = p - (tau / 2)(p . v) v, stored back into p
+            double pv = 0;
+            for(int i = start; i < n; i++) {
+                p[i] *= t;
+                pv += p[i] * a[row + i];
+            }
+
+            double half = 0.5 * t * pv;
+            for(int i = start; i < n; i++) {
+                p[i] -= half * a[row + i];
+            }
+
+            // A22 -= v w^T + w v^T, upper triangle only
+            for(int i = start; i < n; i++) {
+                int iRow = i * n;
+                double vi = a[row + i];
+                double wi = p[i];
+
+                for(int j = i; j < n; j++) {
+                    a[iRow + j] -= vi * p[j] + wi * a[row + j];
+                }
+            }
+        }
+
+        d[n - 2] = a[(n - 2) * n + n - 2];
+        e[n - 2] = a[(n - 2) * n + n - 1];
+        d[n - 1] = a[(n - 1) * n + n - 1];
+        e[n - 1] = 0;
+    }
+
+    /*
+     * Builds Q^T, the transpose of the product of the reflectors, so that the
+     * QL rotations can then be applied to its rows.
+     *
+     * Q^T = H(n - 3) ... H(0), which is built up by multiplying the identity
+     * on the right by each reflector in turn, last one first. At each step
+     * only the trailing rows and columns are affected.
+     */
+    private double[] accumulateReflectors(double[] a, double[] tau) {
+        double[] qt = new double[n * n];
+
+        for(int i = 0; i < n; i++) {
+            qt[i * n + i] = 1;
+        }
+
+        for(int k = n - 3; k >= 0; k--) {
+            double t = tau[k];
+            if(t == 0) {
+                continue;
+            }
+
+            int vRow = k * n;
+            for(int r = k + 1; r < n; r++) {
+                int row = r * n;
+
+                double dot = 0;
+                for(int j = k + 1; j < n; j++) {
+                    dot += qt[row + j] * a[vRow + j];
+                }
+
+                dot *= t;
+                for(int j = k + 1; j < n; j++) {
+                    qt[row + j] -= dot * a[vRow + j];
+                }
+            }
+        }
+
+        return qt;
+    }
+
+    /*
+     * Finds the eigenvalues of the symmetric tridiagonal matrix with diagonal
+     * d and off-diagonal e using the implicitly shifted QL algorithm, leaving
+     * them in d. If vt is not null, each rotation is also applied to its rows.
+     */
+    private void ql(double[] d, double[] e, double[] vt) throws ArithmeticException {
+        double shift = 0;
+        double norm = 0;
+
+        for(int l = 0; l < n; l++) {
+            norm = Math.max(norm, Math.abs(d[l]) + Math.abs(e[l]));
+
+            // Look for a negligible off-diagonal entry to split the matrix at
+            int m = l;
+            while(m < n - 1 && Math.abs(e[m]) > EPSILON * norm) {
+                m++;
+            }
+
+            int iterations = 0;
+            while(m > l) {
+                if(++iterations > MAX_ITERATIONS) {
+                    throw new ArithmeticException("Eigenvalue iteration did not converge!");
+                }
+
+                // Compute the implicit shift from the leading 2x2 block
+                double g = d[l];
+                double p = (d[l + 1] - g) / (2 * e[l]);
+                double r = Math.hypot(p, 1);
+                if(p < 0) {
+                    r = -r;
+                }
+
+                d[l] = e[l] / (p + r);
+                d[l + 1] = e[l] * (p + r);
+                double dl1 = d[l + 1];
+                double h = g - d[l];
+
+                for(int i = l + 2; i < n; i++) {
+                    d[i] -= h;
+                }
+                shift += h;
+
+                // Chase the bulge from m back up to l
+                p = d[m];
+                double c = 1, c2 = 1, c3 = 1;
+                double el1 = e[l + 1];
+                double s = 0, s2 = 0;
+
+                for(int i = m - 1; i >= l; i--) {
+                    c3 = c2;
+                    c2 = c;
+                    s2 = s;
+                    g = c * e[i];
+                    h = c * p;
+                    r = Math.hypot(p, e[i]);
+                    e[i + 1] = s * r;
+                    s = e[i] / r;
+                    c = p / r;
+                    p = c * d[i] - s * g;
+                    d[i + 1] = h + s * (c * g + s * d[i]);
+
+                    if(vt != null) {
+                        rotateRows(vt, i, c, s);
+                    }
+                }
+
+                p = -s * s2 * c3 * el1 * e[l] / dl1;
+                e[l] = s * p;
+                d[l] = c * p;
+
+                if(Math.abs(e[l]) <= EPSILON * norm) {
+                    break;
+                }
+            }
+
+            d[l] += shift;
+            e[l] = 0;
+        }
+    }
+
+    /*
+     * Applies a Givens rotation to rows i and i + 1 of vt.
+     */
+    private void rotateRows(double[] vt, int i, double c, double s) {
+        int row0 = i * n;
+        int row1 = row0 + n;
+
+        for(int k = 0; k < n; k++) {
+            double h = vt[row1 + k];
+            vt[row1 + k] = s * vt[row0 + k] + c * h;
+            vt[row0 + k] = c * vt[row0 + k] - s * h;
+        }
+    }
+
+    /*
+     * Sorts the eigenvalues into ascending order, moving the rows of vt (if
+     * present) along with them.
+     */
+    private void sort(double[] d, double[] vt) {
+        for(int i = 0; i < n - 1; i++) {
+            int k = i;
+            double p = d[i];
+
+            for(int j = i + 1; j < n; j++) {
+                if(d[j] < p) {
+                    k = j;
+                    p = d[j];
+                }
+            }
+
+            if(k != i) {
+                d[k] = d[i];
+                d[i] = p;
+
+                if(vt != null) {
+                    for(int j = 0; j < n; j++) {
+                        double temp = vt[i * n + j];
+                        vt[i * n + j] = vt[k * n + j];
+                        vt[k * n + j] = temp;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Throws if the eigenvectors were not computed.
+     */
+    private void checkVectors() throws UnsupportedOperationException {
+        if(vt == null) {
+            throw new UnsupportedOperationException("Eigenvectors were not computed!");
+        }
+    }
+}
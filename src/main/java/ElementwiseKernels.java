@@ -0,0 +1,104 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Element-wise and reduction kernels over runs of doubles, shared by
+ * {@link Vector} and {@link Matrix}.
+ *
+ * This class holds the plain scalar implementations, which the JIT
+ * compiler can vectorize on its own except for the reductions; those are
+ * split over four independent accumulators instead of one so consecutive
+ * iterations don't wait on each other's additions. A subclass written
+ * against the Java Vector API (jdk.incubator.vector) lives in
+ * src/simd/java. It is picked once, at startup, when it has been compiled
+ * in and the JVM was started with {@code --add-modules jdk.incubator.vector};
+ * running with {@code -Dsimd=false} forces the scalar kernels.
+ *
+ * Since reductions add in a different order than a simple loop, results
+ * can differ from one in the last bits.
+ */
+
+class ElementwiseKernels {
+
+    /*
+     * The kernels in use.
+     */
+    static final ElementwiseKernels INSTANCE = load();
+
+    /*
+     * Returns the dot product of n entries of a and b.
+     */
+    double dot(double[] a, int aOff, double[] b, int bOff, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+
+        for(; i <= n - 4; i += 4) {
+            s0 += a[aOff + i] * b[bOff + i];
+            s1 += a[aOff + i + 1] * b[bOff + i + 1];
+            s2 += a[aOff + i + 2] * b[bOff + i + 2];
+            s3 += a[aOff + i + 3] * b[bOff + i + 3];
+        }
+        for(; i < n; i++) {
+            s0 += a[aOff + i] * b[bOff + i];
+        }
+
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /*
+     * Returns the sum of the squares of n entries of a.
+     */
+    double sumOfSquares(double[] a, int off, int n) {
+        return dot(a, off, a, off, n);
+    }
+
+    /*
+     * Sets n entries of dest to a + b. dest may overlap a or b only if it
+     * starts at the same index.
+     */
+    void add(double[] a, int aOff, double[] b, int bOff, double[] dest, int dOff, int n) {
+        for(int i = 0; i < n; i++) {
+            dest[dOff + i] = a[aOff + i] + b[bOff + i];
+        }
+    }
+
+    /*
+     * Sets n entries of dest to a - b, with the same restriction as add.
+     */
+    void sub(double[] a, int aOff, double[] b, int bOff, double[] dest, int dOff, int n) {
+        for(int i = 0; i < n; i++) {
+            dest[dOff + i] = a[aOff + i] - b[bOff + i];
+        }
+    }
+
+    /*
+     * Multiplies n entries of a by c in place.
+     */
+    void scale(double c, double[] a, int off, int n) {
+        for(int i = 0; i < n; i++) {
+            a[off + i] *= c;
+        }
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Loads the SIMD kernels if they are available and wanted. Any failure,
+     * from the class or the Vector API module being missing to the API
+     * offering no useful vector width, falls back to the scalar kernels.
+     */
+    private static ElementwiseKernels load() {
+        if(!Boolean.parseBoolean(System.getProperty("simd", "true"))) {
+            return new ElementwiseKernels();
+        }
+
+        try {
+            return (ElementwiseKernels) Class.forName("SimdKernels").getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return new ElementwiseKernels();
+        }
+    }
+}
@@ -0,0 +1,511 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * A lazily evaluated arithmetic expression over matrices and vectors.
+ * Building an expression only records the operations in a graph; nothing
+ * is computed until {@link #toMatrix(String)} or {@link #toVector(String)}
+ * is called. For example
+ * <pre>
+ *     Matrix r = a.lazy().add(b).sub(c).mult(2.0).toMatrix("R");
+ * </pre>
+ * computes 2(a + b - c) in a single pass over the entries, where the eager
+ * equivalent would create two temporary matrices and sweep memory four
+ * times.
+ *
+ * When an expression is evaluated, every chain of additions, subtractions
+ * and scalings is flattened into a sum of scaled terms, and identical
+ * terms are merged. The terms that are matrices or vectors are combined in
+ * one fused pass, block by block, so each is read exactly once and the
+ * result is written once. Terms that are products are not materialized at
+ * all: each is accumulated straight into the result by {@link Gemm}, with
+ * its scale folded into the kernel, so {@code a.lazy().mult(b).add(c)} is a
+ * single C = c + ab. A product used in more than one place is computed
+ * once and reused.
+ *
+ * Matrices and vectors are read when the expression is evaluated, not when
+ * it is built, so an expression can be evaluated again after its operands
+ * change. Since terms are regrouped, results can differ from the eager
+ * operations in the last bits.
+ */
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public abstract class Expression {
+
+    /*
+     * The number of entries combined at a time in the fused pass. The block
+     * of the result (16KB) stays in L1 while every term streams past it.
+     */
+    private static final int BLOCK = 2048;
+
+    /*
+     * The shape of the value. Vectors are columns, one entry wide, so
+     * whether the value is a vector is recorded separately; a matrix can
+     * also be a single column.
+     */
+    private final int width, height;
+    private final boolean vector;
+
+    private Expression(int width, int height, boolean vector) {
+        this.width = width;
+        this.height = height;
+        this.vector = vector;
+    }
+
+    /**
+     * Starts an expression with the matrix provided.
+     * @param m The matrix.
+     * @return The expression.
+     */
+    public static Expression of(Matrix m) {
+        return new Leaf(m.getWidth(), m.getHeight(), false, m);
+    }
+
+    /**
+     * Starts an expression with the vector provided, which is treated as a
+     * column.
+     * @param v The vector.
+     * @return The expression.
+     */
+    public static Expression of(Vector v) {
+        return new Leaf(1, v.getSize(), true, v);
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Gets the width of the value. A vector is 1 wide.
+     * @return The width.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Gets the height of the value. For a vector this is its size.
+     * @return The height.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Checks whether the expression evaluates to a vector.
+     * @return Whether or not the value is a vector.
+     */
+    public boolean isVector() {
+        return this.vector;
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Records the sum of this expression and the one provided.
+     * @param e The expression to add.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the expressions are not the same size.
+     */
+    public Expression add(Expression e) throws IllegalArgumentException {
+        if(e.width != width || e.height != height) {
+            throw new IllegalArgumentException("Cannot add expressions of unequal size!");
+        }
+
+        return new Sum(this, e, 1);
+    }
+
+    /**
+     * Records the sum of this expression and the matrix provided.
+     * @param m The matrix to add.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the matrix is not the same size.
+     */
+    public Expression add(Matrix m) throws IllegalArgumentException {
+        return add(of(m));
+    }
+
+    /**
+     * Records the sum of this expression and the vector provided.
+     * @param v The vector to add.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the vector is not the same size.
+     */
+    public Expression add(Vector v) throws IllegalArgumentException {
+        return add(of(v));
+    }
+
+    /**
+     * Records the difference of this expression and the one provided.
+     * @param e The expression to subtract.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the expressions are not the same size.
+     */
+    public Expression sub(Expression e) throws IllegalArgumentException {
+        if(e.width != width || e.height != height) {
+            throw new IllegalArgumentException("Cannot subtract expressions of unequal size!");
+        }
+
+        return new Sum(this, e, -1);
+    }
+
+    /**
+     * Records the difference of this expression and the matrix provided.
+     * @param m The matrix to subtract.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the matrix is not the same size.
+     */
+    public Expression sub(Matrix m) throws IllegalArgumentException {
+        return sub(of(m));
+    }
+
+    /**
+     * Records the difference of this expression and the vector provided.
+     * @param v The vector to subtract.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the vector is not the same size.
+     */
+    public Expression sub(Vector v) throws IllegalArgumentException {
+        return sub(of(v));
+    }
+
+    /**
+     * Records this expression scaled by a constant.
+     * @param c The constant by which to multiply.
+     * @return The new expression.
+     */
+    public Expression mult(double c) {
+        return new Scale(this, c);
+    }
+
+    /**
+     * Records the matrix product of this expression and the one provided.
+     * @param e The expression to multiply by.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the height of the expression provided
+     * is not equal to the width of this one.
+     */
+    public Expression mult(Expression e) throws IllegalArgumentException {
+        if(e.height != width) {
+            throw new IllegalArgumentException("Cannot multiply these expressions!");
+        }
+
+        return new Product(this, e);
+    }
+
+    /**
+     * Records the matrix product of this expression and the matrix provided.
+     * @param m The matrix to multiply by.
+     * @return The new expression.
+     * @throws IllegalArgumentException if the height of the matrix is not
+     * equal to the width of this expression.
+     */
+    public Expression mult(Matrix m) throws IllegalArgumentException {
+        return mult(of(m));
+    }
+
+    /**
+     * Records the product of this expression and the vector provided.
+     * @param v The vector to multiply by.
+     * @return The new expression, which is a vector.
+     * @throws IllegalArgumentException if the size of the vector is not equal
+     * to the width of this expression.
+     */
+    public Expression mult(Vector v) throws IllegalArgumentException {
+        return mult(of(v));
+    }
+
+/****************************************************************/
+/*                          Evaluation                          */
+/****************************************************************/
+
+    /**
+     * Evaluates the expression into a new matrix.
+     * @param label The label for the new matrix.
+     * @return The value of the expression.
+     * @throws UnsupportedOperationException if the expression is a vector.
+     */
+    public Matrix toMatrix(String label) throws UnsupportedOperationException {
+        if(isVector()) {
+            throw new UnsupportedOperationException("Expression is a vector, not a matrix!");
+        }
+
+        return Matrix.wrap(label, width, height, new Evaluator(this).evaluate());
+    }
+
+    /**
+     * Evaluates the expression into a new vector.
+     * @param label The label for the new vector.
+     * @return The value of the expression.
+     * @throws UnsupportedOperationException if the expression is a matrix.
+     */
+    public Vector toVector(String label) throws UnsupportedOperationException {
+        if(!isVector()) {
+            throw new UnsupportedOperationException("Expression is a matrix, not a vector!");
+        }
+
+        return Vector.wrap(label, new Evaluator(this).evaluate());
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * A matrix or vector.
+     */
+    private static final class Leaf extends Expression {
+        private final Object value;
+
+        Leaf(int width, int height, boolean vector, Object value) {
+            super(width, height, vector);
+            this.value = value;
+        }
+
+        /*
+         * Returns the entries, row-major. Heap matrices and vectors hand
+         * over their own arrays, which are only ever read.
+         */
+        double[] entries() {
+            if(value instanceof Vector) {
+                return ((Vector) value).getEntries();
+            }
+
+            Matrix m = (Matrix) value;
+            return m.isOffHeap() ? m.toArray() : m.getEntries();
+        }
+    }
+
+    /*
+     * left + sign * right.
+     */
+    private static final class Sum extends Expression {
+        private final Expression left, right;
+        private final double sign;
+
+        Sum(Expression left, Expression right, double sign) {
+            super(left.width, left.height, left.vector);
+            this.left = left;
+            this.right = right;
+            this.sign = sign;
+        }
+    }
+
+    /*
+     * c * operand.
+     */
+    private static final class Scale extends Expression {
+        private final Expression operand;
+        private final double c;
+
+        Scale(Expression operand, double c) {
+            super(operand.width, operand.height, operand.vector);
+            this.operand = operand;
+            this.c = c;
+        }
+    }
+
+    /*
+     * The matrix product left * right.
+     */
+    private static final class Product extends Expression {
+        private final Expression left, right;
+
+        Product(Expression left, Expression right) {
+            // A matrix times a vector is a vector
+            super(right.width, left.height, right.vector);
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /*
+     * Evaluates one expression. Nodes are keyed by identity, so a node that
+     * appears more than once in the graph is recognized as the same term.
+     */
+    private static final class Evaluator {
+        private final Expression root;
+
+        /*
+         * How many times each node is used as an operand, and the values of
+         * the nodes used more than once, kept so they are computed only once.
+         */
+        private final Map<Expression, Integer> uses = new IdentityHashMap<>();
+        private final Map<Expression, double[]> computed = new IdentityHashMap<>();
+
+        Evaluator(Expression root) {
+            this.root = root;
+            count(root);
+        }
+
+        double[] evaluate() {
+            double[] toReturn = new double[root.width * root.height];
+            evaluateInto(root, toReturn);
+
+            return toReturn;
+        }
+
+        /*
+         * Counts the uses of every operand, visiting the operands of each
+         * node only the first time it is seen.
+         */
+        private void count(Expression e) {
+            Expression[] operands;
+            if(e instanceof Sum) {
+                operands = new Expression[] {((Sum) e).left, ((Sum) e).right};
+            }
+            else if(e instanceof Scale) {
+                operands = new Expression[] {((Scale) e).operand};
+            }
+            else if(e instanceof Product) {
+                operands = new Expression[] {((Product) e).left, ((Product) e).right};
+            }
+            else {
+                return;
+            }
+
+            for(Expression operand : operands) {
+                if(uses.put(operand, uses.getOrDefault(operand, 0) + 1) == null) {
+                    count(operand);
+                }
+            }
+        }
+
+        private boolean isShared(Expression e) {
+            return uses.getOrDefault(e, 0) > 1;
+        }
+
+        /*
+         * Returns the entries of any expression, evaluating it if needed.
+         */
+        private double[] valueOf(Expression e) {
+            if(e instanceof Leaf) {
+                return ((Leaf) e).entries();
+            }
+
+            double[] toReturn = computed.get(e);
+            if(toReturn == null) {
+                toReturn = new double[e.width * e.height];
+                evaluateInto(e, toReturn);
+                computed.put(e, toReturn);
+            }
+
+            return toReturn;
+        }
+
+        /*
+         * Evaluates the expression into dest, which must be zeroed. The
+         * expression is flattened into a sum of scaled terms, the terms that
+         * have values are combined in one pass, and the products used only
+         * here are accumulated into dest by the GEMM kernel.
+         */
+        private void evaluateInto(Expression e, double[] dest) {
+            Map<Expression, Double> terms = new IdentityHashMap<>();
+            List<Expression> order = new ArrayList<>();
+            expand(e, 1, terms, order);
+
+            List<double[]> arrays = new ArrayList<>();
+            List<Double> factors = new ArrayList<>();
+            List<Product> products = new ArrayList<>();
+
+            for(Expression term : order) {
+                // e itself is being evaluated here, even if it is shared
+                if(term instanceof Product && (term == e || !isShared(term))) {
+                    products.add((Product) term);
+                }
+                else {
+                    arrays.add(valueOf(term));
+                    factors.add(terms.get(term));
+                }
+            }
+
+            if(!arrays.isEmpty()) {
+                combine(arrays, factors, dest);
+            }
+
+            for(Product p : products) {
+                double[] a = valueOf(p.left);
+                double[] b = valueOf(p.right);
+
+                int m = p.getHeight();
+                int n = p.getWidth();
+                int k = p.left.getWidth();
+
+                Gemm.multiply(terms.get(p), m, n, k, a, 0, k, b, 0, n, dest, 0, n);
+            }
+        }
+
+        /*
+         * Adds the terms of factor * e to the map, merging repeated terms.
+         * order records the terms in the order they were first seen. Shared
+         * nodes are kept whole as terms so they are evaluated once.
+         */
+        private void flatten(Expression e, double factor, Map<Expression, Double> terms, List<Expression> order) {
+            if((e instanceof Sum || e instanceof Scale) && !isShared(e)) {
+                expand(e, factor, terms, order);
+                return;
+            }
+
+            Double previous = terms.get(e);
+            if(previous == null) {
+                order.add(e);
+                terms.put(e, factor);
+            }
+            else {
+                terms.put(e, previous + factor);
+            }
+        }
+
+        /*
+         * Flattens the operands of a sum or a scaling. Anything else is a
+         * single term.
+         */
+        private void expand(Expression e, double factor, Map<Expression, Double> terms, List<Expression> order) {
+            if(e instanceof Sum) {
+                Sum s = (Sum) e;
+                flatten(s.left, factor, terms, order);
+                flatten(s.right, factor * s.sign, terms, order);
+            }
+            else if(e instanceof Scale) {
+                Scale s = (Scale) e;
+                flatten(s.operand, factor * s.c, terms, order);
+            }
+            else {
+                order.add(e);
+                terms.put(e, factor);
+            }
+        }
+
+        /*
+         * Sets dest to the sum of factor * array over the terms, a block at
+         * a time, so dest is written once and each array is read once.
+         */
+        private static void combine(List<double[]> arrays, List<Double> factors, double[] dest) {
+            int count = arrays.size();
+
+            for(int start = 0; start < dest.length; start += BLOCK) {
+                int end = Math.min(start + BLOCK, dest.length);
+
+                double[] t = arrays.get(0);
+                double c = factors.get(0);
+                for(int i = start; i < end; i++) {
+                    dest[i] = c * t[i];
+                }
+
+                for(int k = 1; k < count; k++) {
+                    t = arrays.get(k);
+                    c = factors.get(k);
+                    for(int i = start; i < end; i++) {
+                        dest[i] += c * t[i];
+                    }
+                }
+            }
+        }
+    }
+}
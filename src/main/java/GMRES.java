@@ -0,0 +1,206 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The restarted generalized minimal residual method, GMRES(m), for general
+ * square systems Ax = b. Each cycle builds an orthonormal Krylov basis of up
+ * to m vectors and picks the x in it with the smallest residual, then
+ * restarts from that x, so memory is O(mn) rather than growing with the
+ * iteration count.
+ *
+ * The preconditioner is applied on the right, solving AM^-1 y = b with
+ * x = M^-1 y, so the residual being minimized and checked against the
+ * tolerance is the true residual of the original system.
+ */
+
+import java.util.Arrays;
+
+public class GMRES extends IterativeSolver {
+
+    private int restart;
+
+    /**
+     * Creates a GMRES solver which restarts every 30 iterations.
+     */
+    public GMRES() {
+        this(30);
+    }
+
+    /**
+     * Creates a GMRES solver which restarts every restart iterations.
+     * @param restart The number of iterations per cycle.
+     * @throws IllegalArgumentException if restart is less than 1.
+     */
+    public GMRES(int restart) throws IllegalArgumentException {
+        setRestart(restart);
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Gets the number of iterations per cycle.
+     * @return The restart length.
+     */
+    public int getRestart() {
+        return restart;
+    }
+
+    /**
+     * Sets the number of iterations per cycle. Longer cycles converge in
+     * fewer iterations but keep more vectors and make each iteration slower.
+     * @param restart The restart length.
+     * @throws IllegalArgumentException if restart is less than 1.
+     */
+    public void setRestart(int restart) throws IllegalArgumentException {
+        if(restart < 1) {
+            throw new IllegalArgumentException("Restart length must be at least 1!");
+        }
+
+        this.restart = restart;
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Runs restarted GMRES on x in place. The Hessenberg matrix is reduced to
+     * triangular form with Givens rotations as it is built, so the residual
+     * of each iterate is known without forming it.
+     */
+    @Override
+    boolean iterate(LinearOperator a, double[] b, double[] x, double target) {
+        int n = b.length;
+        int m = Math.min(restart, n);
+        double bNorm = norm(b);
+
+        // The Krylov basis, one vector per row
+        double[] v = new double[(m + 1) * n];
+        double[] h = new double[(m + 1) * m];
+        double[] cs = new double[m];
+        double[] sn = new double[m];
+        double[] g = new double[m + 1];
+
+        while(true) {
+            double[] r = apply(a, x);
+            for(int i = 0; i < n; i++) {
+                r[i] = b[i] - r[i];
+            }
+
+            double beta = norm(r);
+            residual = beta / bNorm;
+            if(beta <= target) {
+                return true;
+            }
+            if(iterations >= getMaxIterations()) {
+                return false;
+            }
+
+            for(int i = 0; i < n; i++) {
+                v[i] = r[i] / beta;
+            }
+            Arrays.fill(g, 0);
+            g[0] = beta;
+
+            int k = 0;
+            while(k < m && iterations < getMaxIterations()) {
+                double[] w = apply(a, precondition(row(v, k, n)));
+
+                // Modified Gram-Schmidt against the basis so far
+                for(int i = 0; i <= k; i++) {
+                    int offset = i * n;
+                    double d = 0;
+                    for(int j = 0; j < n; j++) {
+                        d += w[j] * v[offset + j];
+                    }
+                    for(int j = 0; j < n; j++) {
+                        w[j] -= d * v[offset + j];
+                    }
+                    h[i * m + k] = d;
+                }
+
+                double wNorm = norm(w);
+                h[(k + 1) * m + k] = wNorm;
+
+                if(wNorm != 0) {
+                    int offset = (k + 1) * n;
+                    for(int j = 0; j < n; j++) {
+                        v[offset + j] = w[j] / wNorm;
+                    }
+                }
+
+                // Apply the previous rotations to the new column, then make
+                // a new one to clear its subdiagonal entry
+                for(int i = 0; i < k; i++) {
+                    double temp = cs[i] * h[i * m + k] + sn[i] * h[(i + 1) * m + k];
+                    h[(i + 1) * m + k] = -sn[i] * h[i * m + k] + cs[i] * h[(i + 1) * m + k];
+                    h[i * m + k] = temp;
+                }
+
+                double diag = h[k * m + k];
+                double sub = h[(k + 1) * m + k];
+                double rho = Math.hypot(diag, sub);
+
+                if(rho == 0) {
+                    // The operator is singular on the Krylov space
+                    break;
+                }
+
+                cs[k] = diag / rho;
+                sn[k] = sub / rho;
+                h[k * m + k] = rho;
+                h[(k + 1) * m + k] = 0;
+
+                g[k + 1] = -sn[k] * g[k];
+                g[k] = cs[k] * g[k];
+
+                k++;
+                iterations++;
+
+                // A zero wNorm means the Krylov space is invariant and the
+                // solution has been found exactly
+                if(Math.abs(g[k]) <= target || wNorm == 0) {
+                    break;
+                }
+            }
+
+            if(k == 0) {
+                return false;
+            }
+
+            // Solve the triangular system H y = g and update x += M^-1 V y
+            double[] y = new double[k];
+            for(int i = k - 1; i >= 0; i--) {
+                double sum = g[i];
+                for(int j = i + 1; j < k; j++) {
+                    sum -= h[i * m + j] * y[j];
+                }
+                y[i] = sum / h[i * m + i];
+            }
+
+            double[] update = new double[n];
+            for(int i = 0; i < k; i++) {
+                int offset = i * n;
+                for(int j = 0; j < n; j++) {
+                    update[j] += y[i] * v[offset + j];
+                }
+            }
+
+            update = precondition(update);
+            for(int j = 0; j < n; j++) {
+                x[j] += update[j];
+            }
+        }
+    }
+
+    /*
+     * Copies row k of the row-major array a with rows of length n.
+     */
+    private static double[] row(double[] a, int k, int n) {
+        double[] toReturn = new double[n];
+        System.arraycopy(a, k * n, toReturn, 0, n);
+        return toReturn;
+    }
+}
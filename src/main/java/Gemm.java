@@ -0,0 +1,257 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Cache-blocked general matrix multiplication kernel operating on row-major
+ * arrays. Computes C += alpha * A * B where A is m by k, B is k by n and C
+ * is m by n.
+ *
+ * The computation is split into KC by NC panels of B which are packed into a
+ * contiguous buffer so that they stay in cache while every MC row block of A
+ * streams past them. The innermost loop computes a 4 by 4 tile of C held
+ * entirely in local variables so the JIT can keep it in registers.
+ */
+
+final class Gemm {
+
+    /*
+     * Block sizes. A KC by NC panel of B (256 * 256 * 8 bytes = 512KB) is
+     * sized for L2, and each 4 row strip of A (4 * 256 * 8 bytes) for L1.
+     */
+    static final int MC = 64;
+    static final int KC = 256;
+    static final int NC = 256;
+
+    /*
+     * The micro-tile dimensions.
+     */
+    private static final int MR = 4;
+    private static final int NR = 4;
+
+    /*
+     * Below this many multiply-adds the packing overhead isn't worth it.
+     */
+    private static final long SMALL_THRESHOLD = 32 * 32 * 32;
+
+    /*
+     * Per-thread buffer for the packed panel of B, so that repeated calls
+     * don't allocate.
+     */
+    private static final ThreadLocal<double[]> PACK_BUFFER = new ThreadLocal<double[]>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[KC * NC];
+        }
+    };
+
+    private Gemm() {}
+
+    /**
+     * Computes C += A * B.
+     * @param m    The number of rows of A and C.
+     * @param n    The number of columns of B and C.
+     * @param k    The number of columns of A and rows of B.
+     * @param a    The entries of A.
+     * @param aOff The index of A's first entry.
+     * @param lda  The row stride of A.
+     * @param b    The entries of B.
+     * @param bOff The index of B's first entry.
+     * @param ldb  The row stride of B.
+     * @param c    The entries of C.
+     * @param cOff The index of C's first entry.
+     * @param ldc  The row stride of C.
+     */
+    static void multiply(int m, int n, int k,
+                         double[] a, int aOff, int lda,
+                         double[] b, int bOff, int ldb,
+                         double[] c, int cOff, int ldc) {
+        multiply(1, m, n, k, a, aOff, lda, b, bOff, ldb, c, cOff, ldc);
+    }
+
+    /**
+     * Computes C += alpha * A * B. See {@link #multiply(int, int, int,
+     * double[], int, int, double[], int, int, double[], int, int)} for the
+     * meaning of the other parameters.
+     * @param alpha The factor to scale the product by before accumulating it.
+     */
+    static void multiply(double alpha, int m, int n, int k,
+                         double[] a, int aOff, int lda,
+                         double[] b, int bOff, int ldb,
+                         double[] c, int cOff, int ldc) {
+        if((long) m * n * k <= SMALL_THRESHOLD) {
+            multiplySmall(alpha, m, n, k, a, aOff, lda, b, bOff, ldb, c, cOff, ldc);
+            return;
+        }
+
+        double[] packed = PACK_BUFFER.get();
+
+        for(int jc = 0; jc < n; jc += NC) {
+            int nc = Math.min(NC, n - jc);
+
+            for(int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+
+                packB(kc, nc, b, bOff + pc * ldb + jc, ldb, packed);
+
+                for(int ic = 0; ic < m; ic += MC) {
+                    int mc = Math.min(MC, m - ic);
+
+                    macroKernel(alpha, mc, nc, kc,
+                                a, aOff + ic * lda + pc, lda,
+                                packed,
+                                c, cOff + ic * ldc + jc, ldc);
+                }
+            }
+        }
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Straightforward i-k-j product for small operands. The inner loop runs
+     * along rows of B and C so it is still sequential in memory.
+     */
+    private static void multiplySmall(double alpha, int m, int n, int k,
+                                      double[] a, int aOff, int lda,
+                                      double[] b, int bOff, int ldb,
+                                      double[] c, int cOff, int ldc) {
+        for(int i = 0; i < m; i++) {
+            int aRow = aOff + i * lda;
+            int cRow = cOff + i * ldc;
+
+            for(int p = 0; p < k; p++) {
+                double aip = alpha * a[aRow + p];
+                if(aip == 0) {
+                    continue;
+                }
+
+                int bRow = bOff + p * ldb;
+                for(int j = 0; j < n; j++) {
+                    c[cRow + j] += aip * b[bRow + j];
+                }
+            }
+        }
+    }
+
+    /*
+     * Packs a kc by nc panel of B into NR wide column strips. Strip s holds
+     * columns [s * NR, s * NR + NR) laid out row by row, so the micro-kernel
+     * reads it strictly sequentially. Columns past nc are zero-filled.
+     */
+    private static void packB(int kc, int nc, double[] b, int bOff, int ldb, double[] packed) {
+        int index = 0;
+
+        for(int j = 0; j < nc; j += NR) {
+            int nr = Math.min(NR, nc - j);
+
+            for(int p = 0; p < kc; p++) {
+                int bRow = bOff + p * ldb + j;
+
+                for(int jj = 0; jj < nr; jj++) {
+                    packed[index++] = b[bRow + jj];
+                }
+                for(int jj = nr; jj < NR; jj++) {
+                    packed[index++] = 0;
+                }
+            }
+        }
+    }
+
+    /*
+     * Multiplies an mc by kc block of A with a packed kc by nc panel of B.
+     */
+    private static void macroKernel(double alpha, int mc, int nc, int kc,
+                                    double[] a, int aOff, int lda,
+                                    double[] packed,
+                                    double[] c, int cOff, int ldc) {
+        for(int j = 0; j < nc; j += NR) {
+            int nr = Math.min(NR, nc - j);
+            int pOff = (j / NR) * kc * NR;
+
+            int i = 0;
+            for(; i + MR <= mc; i += MR) {
+                microKernel4x4(alpha, kc, nr, a, aOff + i * lda, lda, packed, pOff, c, cOff + i * ldc + j, ldc);
+            }
+            for(; i < mc; i++) {
+                microKernel1x4(alpha, kc, nr, a, aOff + i * lda, packed, pOff, c, cOff + i * ldc + j);
+            }
+        }
+    }
+
+    /*
+     * Computes a 4 by 4 tile of C in registers. Only the first nr columns
+     * are written back.
+     */
+    private static void microKernel4x4(double alpha, int kc, int nr,
+                                       double[] a, int aOff, int lda,
+                                       double[] packed, int pOff,
+                                       double[] c, int cOff, int ldc) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+
+        int a0 = aOff;
+        int a1 = aOff + lda;
+        int a2 = aOff + 2 * lda;
+        int a3 = aOff + 3 * lda;
+
+        for(int p = 0; p < kc; p++) {
+            int bp = pOff + p * NR;
+            double b0 = packed[bp];
+            double b1 = packed[bp + 1];
+            double b2 = packed[bp + 2];
+            double b3 = packed[bp + 3];
+
+            double ai = a[a0 + p];
+            c00 += ai * b0; c01 += ai * b1; c02 += ai * b2; c03 += ai * b3;
+            ai = a[a1 + p];
+            c10 += ai * b0; c11 += ai * b1; c12 += ai * b2; c13 += ai * b3;
+            ai = a[a2 + p];
+            c20 += ai * b0; c21 += ai * b1; c22 += ai * b2; c23 += ai * b3;
+            ai = a[a3 + p];
+            c30 += ai * b0; c31 += ai * b1; c32 += ai * b2; c33 += ai * b3;
+        }
+
+        storeRow(alpha, c, cOff, nr, c00, c01, c02, c03);
+        storeRow(alpha, c, cOff + ldc, nr, c10, c11, c12, c13);
+        storeRow(alpha, c, cOff + 2 * ldc, nr, c20, c21, c22, c23);
+        storeRow(alpha, c, cOff + 3 * ldc, nr, c30, c31, c32, c33);
+    }
+
+    /*
+     * Computes a single row of a 4 wide tile of C. Used for the rows left
+     * over when mc is not a multiple of MR.
+     */
+    private static void microKernel1x4(double alpha, int kc, int nr,
+                                       double[] a, int aOff,
+                                       double[] packed, int pOff,
+                                       double[] c, int cOff) {
+        double c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+
+        for(int p = 0; p < kc; p++) {
+            int bp = pOff + p * NR;
+            double ai = a[aOff + p];
+            c0 += ai * packed[bp];
+            c1 += ai * packed[bp + 1];
+            c2 += ai * packed[bp + 2];
+            c3 += ai * packed[bp + 3];
+        }
+
+        storeRow(alpha, c, cOff, nr, c0, c1, c2, c3);
+    }
+
+    /*
+     * Scales the first nr values of a row of a micro-tile by alpha and
+     * accumulates them into C.
+     */
+    private static void storeRow(double alpha, double[] c, int cOff, int nr,
+                                 double c0, double c1, double c2, double c3) {
+        c[cOff] += alpha * c0;
+        if(nr > 1) c[cOff + 1] += alpha * c1;
+        if(nr > 2) c[cOff + 2] += alpha * c2;
+        if(nr > 3) c[cOff + 3] += alpha * c3;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The zero fill-in incomplete LU preconditioner, ILU(0). It runs Gaussian
+ * elimination on a sparse matrix but throws away every entry that falls
+ * outside the matrix's own sparsity pattern, so L and U together take
+ * exactly as much memory as A. Applying it costs one forward and one back
+ * substitution, and usually cuts the iteration count far more than
+ * {@link JacobiPreconditioner} does.
+ *
+ * ILU(0) is not symmetric, so it should be used with {@link GMRES} rather
+ * than {@link ConjugateGradient}.
+ */
+
+import java.util.Arrays;
+
+public class ILU0Preconditioner implements LinearOperator {
+
+    /*
+     * L (strictly lower, unit diagonal implied) and U (upper, including the
+     * diagonal) share A's CSR pattern.
+     */
+    private final int[] rowPointers;
+    private final int[] columns;
+    private final double[] lu;
+    private final int[] diagonal;
+    private final int n;
+
+    /**
+     * Computes the incomplete factorization of the sparse matrix provided.
+     * The matrix itself is not modified.
+     * @param a The matrix to precondition.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     * @throws ArithmeticException if a diagonal entry is missing or becomes
+     * zero during the factorization.
+     */
+    public ILU0Preconditioner(SparseMatrix a) throws UnsupportedOperationException, ArithmeticException {
+        if(!a.isSquare()) {
+            throw new UnsupportedOperationException("Cannot precondition a non-square matrix!");
+        }
+
+        this.n = a.getWidth();
+        this.rowPointers = a.getRowPointers();
+        this.columns = a.getColumns();
+        this.lu = a.getValues().clone();
+        this.diagonal = new int[n];
+
+        factor();
+    }
+
+    /**
+     * Computes the incomplete factorization of the dense matrix provided,
+     * using its nonzeros as the pattern.
+     * @param a The matrix to precondition.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     * @throws ArithmeticException if a diagonal entry is missing or becomes
+     * zero during the factorization.
+     */
+    public ILU0Preconditioner(Matrix a) throws UnsupportedOperationException, ArithmeticException {
+        this(new SparseMatrix(a));
+    }
+
+    /**
+     * Solves LUz = x.
+     * @param x The vector to precondition.
+     * @return The preconditioned vector.
+     * @throws IllegalArgumentException if x is the wrong size.
+     */
+    @Override
+    public Vector apply(Vector x) throws IllegalArgumentException {
+        if(x.getSize() != n) {
+            throw new IllegalArgumentException("Vector is the wrong size!");
+        }
+
+        double[] z = x.toArray();
+
+        // Forward substitution with the unit lower triangle
+        for(int i = 0; i < n; i++) {
+            double sum = z[i];
+            for(int p = rowPointers[i]; p < diagonal[i]; p++) {
+                sum -= lu[p] * z[columns[p]];
+            }
+            z[i] = sum;
+        }
+
+        // Back substitution with the upper triangle
+        for(int i = n - 1; i >= 0; i--) {
+            double sum = z[i];
+            for(int p = diagonal[i] + 1; p < rowPointers[i + 1]; p++) {
+                sum -= lu[p] * z[columns[p]];
+            }
+            z[i] = sum / lu[diagonal[i]];
+        }
+
+        return Vector.wrap(x.getLabel(), z);
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Factors lu in place, row by row (the IKJ ordering). position maps a
+     * column to its index in the current row, or -1 if it is not in the
+     * pattern, so updates outside the pattern are simply skipped.
+     */
+    private void factor() throws ArithmeticException {
+        int[] position = new int[n];
+        Arrays.fill(position, -1);
+
+        for(int i = 0; i < n; i++) {
+            int start = rowPointers[i];
+            int end = rowPointers[i + 1];
+
+            for(int p = start; p < end; p++) {
+                position[columns[p]] = p;
+            }
+
+            int p = start;
+            for(; p < end && columns[p] < i; p++) {
+                int k = columns[p];
+                double factor = lu[p] / lu[diagonal[k]];
+                lu[p] = factor;
+
+                for(int q = diagonal[k] + 1; q < rowPointers[k + 1]; q++) {
+                    int target = position[columns[q]];
+                    if(target != -1) {
+                        lu[target] -= factor * lu[q];
+                    }
+                }
+            }
+
+            if(p == end || columns[p] != i || lu[p] == 0) {
+                throw new ArithmeticException("Zero pivot in incomplete factorization!");
+            }
+            diagonal[i] = p;
+
+            for(int q = start; q < end; q++) {
+                position[columns[q]] = -1;
+            }
+        }
+    }
+}
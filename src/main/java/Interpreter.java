@@ -0,0 +1,156 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Evaluates arithmetic statements such as {@code C = A*B + 2*D} against the
+ * variables in a {@link Memory}. A statement is either an expression, whose
+ * value is returned, or an assignment, whose value is also stored under the
+ * label on the left. Expressions are built from numbers, identifiers,
+ * parentheses, unary minus and the operators + - * /, with the usual
+ * precedence.
+ *
+ * Each statement is compiled once into a plan that is cached by its source
+ * text, so running the same statement again, as scripts and REPL loops do,
+ * skips parsing and type checking. A cached plan is only reused while every
+ * identifier it mentions has the same type it had when it was compiled;
+ * otherwise the statement is compiled again. The cache keeps the most
+ * recently used {@value #CACHE_SIZE} statements.
+ *
+ * Matrix and vector arithmetic is evaluated lazily through
+ * {@link Expression}, so a statement like {@code C = A*B + 2*D} is computed
+ * as a single multiply-accumulate without temporaries.
+ *
+ * An interpreter is thread-safe as long as its memory is.
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+public class Interpreter {
+
+    /**
+     * The number of compiled statements kept in the cache.
+     */
+    public static final int CACHE_SIZE = 256;
+
+    private final Memory memory;
+
+    /*
+     * Compiled statements by source text, least recently used first. Also
+     * the lock for the cache.
+     */
+    private final LinkedHashMap<String, Plan> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates an interpreter over the memory provided.
+     * @param memory The memory that identifiers are resolved in and results
+     * are stored to.
+     */
+    public Interpreter(Memory memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Evaluates a statement. If the statement is an assignment, the result is
+     * stored in memory under the label on the left, replacing any variable
+     * that already has that label.
+     * @param source The statement.
+     * @return The value of the statement, a Matrix, Vector or Double.
+     * @throws IllegalArgumentException if the statement is invalid, mentions an
+     * unknown identifier, combines types that can't be combined or combines
+     * matrices and vectors of the wrong sizes.
+     */
+    public Object evaluate(String source) throws IllegalArgumentException {
+        return compile(source).execute(memory);
+    }
+
+    /**
+     * Evaluates an expression that produces a matrix.
+     * @param source The statement.
+     * @return The matrix.
+     * @throws IllegalArgumentException if the statement is invalid or does not
+     * produce a matrix.
+     */
+    public Matrix evaluateMatrix(String source) throws IllegalArgumentException {
+        return (Matrix) evaluate(source, Memory.EntryType.MATRIX);
+    }
+
+    /**
+     * Evaluates an expression that produces a vector.
+     * @param source The statement.
+     * @return The vector.
+     * @throws IllegalArgumentException if the statement is invalid or does not
+     * produce a vector.
+     */
+    public Vector evaluateVector(String source) throws IllegalArgumentException {
+        return (Vector) evaluate(source, Memory.EntryType.VECTOR);
+    }
+
+    /**
+     * Evaluates an expression that produces a constant.
+     * @param source The statement.
+     * @return The constant.
+     * @throws IllegalArgumentException if the statement is invalid or does not
+     * produce a constant.
+     */
+    public double evaluateConstant(String source) throws IllegalArgumentException {
+        return (Double) evaluate(source, Memory.EntryType.CONSTANT);
+    }
+
+    /**
+     * Gets the number of compiled statements in the cache.
+     * @return The number of cached statements.
+     */
+    public int cacheSize() {
+        synchronized(cache) {
+            return cache.size();
+        }
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Returns the compiled statement, reusing the cached plan if the types it
+     * was compiled for still hold.
+     */
+    Plan compile(String source) throws IllegalArgumentException {
+        Plan plan;
+        synchronized(cache) {
+            plan = cache.get(source);
+        }
+
+        if(plan != null && plan.matches(memory)) {
+            return plan;
+        }
+
+        // Compiled outside the lock; two threads racing on the same new
+        // statement both compile it and the last one wins
+        plan = new Parser(source, memory).parse();
+
+        synchronized(cache) {
+            cache.put(source, plan);
+
+            if(cache.size() > CACHE_SIZE) {
+                Iterator<String> it = cache.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+
+        return plan;
+    }
+
+    private Object evaluate(String source, Memory.EntryType type) throws IllegalArgumentException {
+        Plan plan = compile(source);
+
+        if(plan.getType() != type) {
+            throw new IllegalArgumentException("Statement produces a " + plan.getType().name().toLowerCase(Locale.ROOT)
+                                               + ", not a " + type.name().toLowerCase(Locale.ROOT));
+        }
+
+        return plan.execute(memory);
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The settings and statistics shared by the iterative solvers. A solver
+ * stops once the residual b - Ax is no longer than the tolerance times the
+ * length of b, and gives up after the maximum number of iterations.
+ *
+ * Solvers hold the statistics of their last solve, so a single instance
+ * should not be shared between threads.
+ */
+
+public abstract class IterativeSolver {
+
+    private double tolerance = 1e-10;
+    private int maxIterations = 1000;
+    private LinearOperator preconditioner;
+
+    /*
+     * Statistics from the last call to solve.
+     */
+    protected int iterations;
+    protected double residual;
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Gets the relative residual tolerance.
+     * @return The tolerance.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Sets the relative residual tolerance. Defaults to 1e-10.
+     * @param tolerance The tolerance.
+     * @throws IllegalArgumentException if the tolerance is not positive.
+     */
+    public void setTolerance(double tolerance) throws IllegalArgumentException {
+        if(!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive!");
+        }
+
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Gets the maximum number of iterations.
+     * @return The maximum number of iterations.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Sets the maximum number of iterations. Defaults to 1000.
+     * @param maxIterations The maximum number of iterations.
+     * @throws IllegalArgumentException if the number is less than 1.
+     */
+    public void setMaxIterations(int maxIterations) throws IllegalArgumentException {
+        if(maxIterations < 1) {
+            throw new IllegalArgumentException("Must allow at least one iteration!");
+        }
+
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Gets the preconditioner, or null if there isn't one.
+     * @return The preconditioner.
+     */
+    public LinearOperator getPreconditioner() {
+        return preconditioner;
+    }
+
+    /**
+     * Sets the preconditioner, which should apply an approximate inverse of
+     * the operator, for example a {@link JacobiPreconditioner} or an
+     * {@link ILU0Preconditioner}. Null for none, which is the default.
+     * @param preconditioner The preconditioner.
+     */
+    public void setPreconditioner(LinearOperator preconditioner) {
+        this.preconditioner = preconditioner;
+    }
+
+    /**
+     * Gets the number of iterations taken by the last solve.
+     * @return The number of iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Gets the relative residual, |b - Ax| / |b|, reached by the last solve.
+     * @return The relative residual.
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Solves Ax = b starting from x = 0.
+     * @param a The operator A.
+     * @param b The right-hand side.
+     * @return The solution x.
+     * @throws ArithmeticException if the solver does not converge within the
+     * maximum number of iterations.
+     */
+    public Vector solve(LinearOperator a, Vector b) throws ArithmeticException {
+        return solve(a, b, new Vector(b.getLabel(), b.getSize()));
+    }
+
+    /**
+     * Solves Ax = b starting from the initial guess provided, which is not
+     * modified.
+     * @param a The operator A.
+     * @param b The right-hand side.
+     * @param x0 The initial guess.
+     * @return The solution x.
+     * @throws IllegalArgumentException if the initial guess is the wrong size.
+     * @throws ArithmeticException if the solver does not converge within the
+     * maximum number of iterations.
+     */
+    public Vector solve(LinearOperator a, Vector b, Vector x0) throws IllegalArgumentException, ArithmeticException {
+        if(x0.getSize() != b.getSize()) {
+            throw new IllegalArgumentException("Initial guess is the wrong size!");
+        }
+
+        iterations = 0;
+        residual = 0;
+
+        double[] x = x0.toArray();
+        double[] rhs = b.toArray();
+        double bNorm = norm(rhs);
+
+        if(bNorm == 0) {
+            // The solution of Ax = 0 is 0
+            return new Vector(b.getLabel(), b.getSize());
+        }
+
+        if(!iterate(a, rhs, x, tolerance * bNorm)) {
+            throw new ArithmeticException("Solver did not converge in " + maxIterations + " iterations!");
+        }
+
+        return Vector.wrap(b.getLabel(), x);
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Runs the solver on x in place until the residual is at most target,
+     * updating iterations and residual (relative to |b|) as it goes. Returns
+     * whether it converged.
+     */
+    abstract boolean iterate(LinearOperator a, double[] b, double[] x, double target) throws ArithmeticException;
+
+    /*
+     * Applies the operator to the array provided. The array is wrapped, not
+     * copied, so operators must not modify their argument.
+     */
+    static double[] apply(LinearOperator a, double[] x) throws IllegalArgumentException {
+        double[] toReturn = a.apply(Vector.wrap("", x)).toArray();
+        if(toReturn.length != x.length) {
+            throw new IllegalArgumentException("Operator returned a vector of the wrong size!");
+        }
+
+        return toReturn;
+    }
+
+    /*
+     * Applies the preconditioner to r, or returns a copy of r if there is none.
+     */
+    double[] precondition(double[] r) {
+        return preconditioner == null ? r.clone() : apply(preconditioner, r);
+    }
+
+    static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for(int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static double norm(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+}
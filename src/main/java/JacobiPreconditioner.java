@@ -0,0 +1,93 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The Jacobi (diagonal) preconditioner, which approximates A^-1 by the
+ * inverse of the diagonal of A. It is cheap to build and apply, and helps
+ * most when the rows of A are badly scaled relative to each other.
+ */
+
+public class JacobiPreconditioner implements LinearOperator {
+
+    private final double[] inverseDiagonal;
+
+    /**
+     * Builds the preconditioner from the diagonal of the sparse matrix provided.
+     * @param a The matrix to precondition.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     * @throws ArithmeticException if a diagonal entry is zero.
+     */
+    public JacobiPreconditioner(SparseMatrix a) throws UnsupportedOperationException, ArithmeticException {
+        if(!a.isSquare()) {
+            throw new UnsupportedOperationException("Cannot precondition a non-square matrix!");
+        }
+
+        int n = a.getWidth();
+        int[] rowPointers = a.getRowPointers();
+        int[] columns = a.getColumns();
+        double[] values = a.getValues();
+
+        this.inverseDiagonal = new double[n];
+        for(int i = 0; i < n; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                if(columns[p] == i) {
+                    inverseDiagonal[i] = 1.0 / values[p];
+                }
+            }
+        }
+
+        checkDiagonal();
+    }
+
+    /**
+     * Builds the preconditioner from the diagonal of the dense matrix provided.
+     * @param a The matrix to precondition.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     * @throws ArithmeticException if a diagonal entry is zero.
+     */
+    public JacobiPreconditioner(Matrix a) throws UnsupportedOperationException, ArithmeticException {
+        if(!a.isSquare()) {
+            throw new UnsupportedOperationException("Cannot precondition a non-square matrix!");
+        }
+
+        int n = a.getWidth();
+
+        this.inverseDiagonal = new double[n];
+        for(int i = 0; i < n; i++) {
+            inverseDiagonal[i] = 1.0 / a.getEntry(i, i);
+        }
+
+        checkDiagonal();
+    }
+
+    /**
+     * Divides each entry of x by the matching diagonal entry of A.
+     * @param x The vector to precondition.
+     * @return The preconditioned vector.
+     * @throws IllegalArgumentException if x is the wrong size.
+     */
+    @Override
+    public Vector apply(Vector x) throws IllegalArgumentException {
+        if(x.getSize() != inverseDiagonal.length) {
+            throw new IllegalArgumentException("Vector is the wrong size!");
+        }
+
+        double[] toReturn = x.toArray();
+        for(int i = 0; i < toReturn.length; i++) {
+            toReturn[i] *= inverseDiagonal[i];
+        }
+
+        return Vector.wrap(x.getLabel(), toReturn);
+    }
+
+    /*
+     * Throws if a diagonal entry was zero (or missing).
+     */
+    private void checkDiagonal() throws ArithmeticException {
+        for(double d : inverseDiagonal) {
+            if(Double.isInfinite(d) || d == 0) {
+                throw new ArithmeticException("Matrix has a zero on the diagonal!");
+            }
+        }
+    }
+}
@@ -0,0 +1,543 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The LU decomposition of a square matrix with partial pivoting, such that
+ * PA = LU where P is a permutation matrix, L is unit lower triangular and U
+ * is upper triangular.
+ *
+ * Factoring costs O(n^3) and is done once on construction. After that each
+ * call to {@link #solve(Vector)} costs O(n^2), so the same decomposition
+ * should be kept and reused when solving many systems with the same
+ * coefficient matrix.
+ */
+
+public class LUDecomposition {
+
+    /*
+     * L and U packed into a single row-major n by n array. The entries below
+     * the diagonal belong to L (whose unit diagonal is not stored) and the
+     * rest belong to U.
+     */
+    private final double[] lu;
+    private final int n;
+
+    /*
+     * pivot[i] is the row of the original matrix that ended up in row i.
+     */
+    private final int[] pivot;
+    private final int pivotSign;
+    private final boolean singular;
+
+    /*
+     * The number of rows or columns handled at a time by the blocked
+     * factorization and triangular solves.
+     */
+    private static final int BLOCK = 64;
+
+    /**
+     * Computes the LU decomposition of the matrix provided. The matrix
+     * itself is not modified.
+     * @param m The matrix to decompose.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     */
+    public LUDecomposition(Matrix m) throws UnsupportedOperationException {
+        if(!m.isSquare()) {
+            throw new UnsupportedOperationException("Cannot take the LU decomposition of a non-square matrix!");
+        }
+
+        this.n = m.getWidth();
+        this.lu = m.toArray();
+        this.pivot = new int[n];
+        this.pivotSign = factor(lu, n, pivot);
+
+        boolean isSingular = false;
+        for(int i = 0; i < n; i++) {
+            if(lu[i * n + i] == 0) {
+                isSingular = true;
+            }
+        }
+
+        this.singular = isSingular;
+    }
+
+    /*
+     * Factors the n by n row-major array a in place into packed L and U
+     * factors, filling in the row permutation. Returns the sign of the
+     * permutation.
+     *
+     * The factorization is blocked: each BLOCK wide panel of columns is
+     * factored on its own, the matching rows of U to its right are solved
+     * for, and then the whole trailing submatrix is updated with a single
+     * call to the GEMM kernel.
+     */
+    static int factor(double[] a, int n, int[] pivot) {
+        for(int i = 0; i < n; i++) {
+            pivot[i] = i;
+        }
+
+        int sign = 1;
+
+        for(int k0 = 0; k0 < n; k0 += BLOCK) {
+            int k1 = Math.min(k0 + BLOCK, n);
+
+            for(int k = k0; k < k1; k++) {
+                // Find the entry with the largest magnitude in column k
+                int p = k;
+                double max = Math.abs(a[k * n + k]);
+                for(int i = k + 1; i < n; i++) {
+                    double candidate = Math.abs(a[i * n + k]);
+                    if(candidate > max) {
+                        max = candidate;
+                        p = i;
+                    }
+                }
+
+                if(p != k) {
+                    swapRows(a, n, p, k);
+                    int temp = pivot[p];
+                    pivot[p] = pivot[k];
+                    pivot[k] = temp;
+                    sign = -sign;
+                }
+
+                double diag = a[k * n + k];
+                if(diag == 0) {
+                    continue;
+                }
+
+                // Eliminate below the pivot within the panel
+                int kRow = k * n;
+                for(int i = k + 1; i < n; i++) {
+                    int iRow = i * n;
+                    double factor = a[iRow + k] / diag;
+                    a[iRow + k] = factor;
+
+                    if(factor != 0) {
+                        for(int j = k + 1; j < k1; j++) {
+                            a[iRow + j] -= factor * a[kRow + j];
+                        }
+                    }
+                }
+            }
+
+            if(k1 == n) {
+                break;
+            }
+
+            // Solve for the rows of U to the right of the panel
+            for(int i = k0 + 1; i < k1; i++) {
+                int iRow = i * n;
+
+                for(int j = k0; j < i; j++) {
+                    double factor = a[iRow + j];
+                    if(factor == 0) {
+                        continue;
+                    }
+
+                    int jRow = j * n;
+                    for(int c = k1; c < n; c++) {
+                        a[iRow + c] -= factor * a[jRow + c];
+                    }
+                }
+            }
+
+            // Update the trailing submatrix
+            Gemm.multiply(-1, n - k1, n - k1, k1 - k0,
+                          a, k1 * n + k0, n,
+                          a, k0 * n + k1, n,
+                          a, k1 * n + k1, n);
+        }
+
+        return sign;
+    }
+
+    /*
+     * Overwrites the n by n row-major array a with its inverse, using only
+     * O(n * BLOCK) extra memory. The matrix is factored in place, U is
+     * inverted in place, and then the system inverse(A) * L = inverse(U) is
+     * solved for inverse(A) BLOCK columns at a time, from the right.
+     *
+     * Throws if the matrix is singular, in which case a is left holding its
+     * LU factors.
+     */
+    static void invertInPlace(double[] a, int n) throws ArithmeticException {
+        int[] pivot = new int[n];
+        factor(a, n, pivot);
+
+        for(int i = 0; i < n; i++) {
+            if(a[i * n + i] == 0) {
+                throw new ArithmeticException("Matrix is singular!");
+            }
+        }
+
+        double[] work = new double[n];
+
+        // Invert U in place from the bottom row up. Row i of the inverse is
+        // the combination of the already inverted rows below it given by row
+        // i of U, scaled by -1 / U[i][i].
+        for(int i = n - 1; i >= 0; i--) {
+            int row = i * n;
+            double diag = 1.0 / a[row + i];
+
+            for(int k = i + 1; k < n; k++) {
+                work[k] = a[row + k];
+                a[row + k] = 0;
+            }
+
+            for(int k = i + 1; k < n; k++) {
+                double factor = work[k];
+                if(factor == 0) {
+                    continue;
+                }
+
+                int kRow = k * n;
+                for(int c = k; c < n; c++) {
+                    a[row + c] += factor * a[kRow + c];
+                }
+            }
+
+            for(int c = i + 1; c < n; c++) {
+                a[row + c] *= -diag;
+            }
+            a[row + i] = diag;
+        }
+
+        // Solve X * L = inverse(U) for X. For each block of columns, move the
+        // part of L below the diagonal out of the array, subtract the
+        // contribution of the already solved columns to the right with the
+        // GEMM kernel, then finish the block column by column.
+        double[] panel = new double[n * Math.min(BLOCK, n)];
+
+        for(int j1 = n; j1 > 0; j1 -= BLOCK) {
+            int j0 = Math.max(j1 - BLOCK, 0);
+            int w = j1 - j0;
+
+            for(int i = j0; i < n; i++) {
+                int row = i * n;
+                int pRow = (i - j0) * w;
+
+                for(int c = 0; c < w; c++) {
+                    if(i > j0 + c) {
+                        panel[pRow + c] = a[row + j0 + c];
+                        a[row + j0 + c] = 0;
+                    }
+                    else {
+                        panel[pRow + c] = 0;
+                    }
+                }
+            }
+
+            if(j1 < n) {
+                Gemm.multiply(-1, n, w, n - j1,
+                              a, j1, n,
+                              panel, (j1 - j0) * w, w,
+                              a, j0, n);
+            }
+
+            for(int r = 0; r < n; r++) {
+                int row = r * n;
+
+                for(int j = j1 - 1; j >= j0; j--) {
+                    double sum = 0;
+                    for(int i = j + 1; i < j1; i++) {
+                        sum += a[row + i] * panel[(i - j0) * w + j - j0];
+                    }
+                    a[row + j] -= sum;
+                }
+            }
+        }
+
+        // inverse(A) = X * P, which moves column k of X to column pivot[k]
+        for(int r = 0; r < n; r++) {
+            int row = r * n;
+            for(int k = 0; k < n; k++) {
+                work[pivot[k]] = a[row + k];
+            }
+            System.arraycopy(work, 0, a, row, n);
+        }
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Gets the size of the decomposed matrix.
+     * @return The width and height of the decomposed matrix.
+     */
+    public int getSize() {
+        return n;
+    }
+
+    /**
+     * Checks whether the decomposed matrix is singular, i.e. whether a zero
+     * pivot was encountered.
+     * @return Whether or not the matrix is singular.
+     */
+    public boolean isSingular() {
+        return singular;
+    }
+
+    /**
+     * Returns the unit lower triangular factor L.
+     * @return L.
+     */
+    public Matrix getL() {
+        double[] toReturn = new double[n * n];
+
+        for(int i = 0; i < n; i++) {
+            System.arraycopy(lu, i * n, toReturn, i * n, i);
+            toReturn[i * n + i] = 1;
+        }
+
+        return Matrix.wrap("L", n, n, toReturn);
+    }
+
+    /**
+     * Returns the upper triangular factor U.
+     * @return U.
+     */
+    public Matrix getU() {
+        double[] toReturn = new double[n * n];
+
+        for(int i = 0; i < n; i++) {
+            System.arraycopy(lu, i * n + i, toReturn, i * n + i, n - i);
+        }
+
+        return Matrix.wrap("U", n, n, toReturn);
+    }
+
+    /**
+     * Returns the permutation matrix P.
+     * @return P.
+     */
+    public Matrix getP() {
+        double[] toReturn = new double[n * n];
+
+        for(int i = 0; i < n; i++) {
+            toReturn[i * n + pivot[i]] = 1;
+        }
+
+        return Matrix.wrap("P", n, n, toReturn);
+    }
+
+    /**
+     * Returns the row permutation. Entry i is the index of the row of the
+     * original matrix that was moved to row i.
+     * @return The pivot indices.
+     */
+    public int[] getPivot() {
+        return pivot.clone();
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Computes the determinant of the decomposed matrix in O(n).
+     * @return The determinant.
+     */
+    public double determinant() {
+        double det = pivotSign;
+
+        for(int i = 0; i < n; i++) {
+            det *= lu[i * n + i];
+        }
+
+        return det;
+    }
+
+    /**
+     * Solves the system Ax = b, where A is the decomposed matrix.
+     * @param b The right-hand side.
+     * @return The solution x.
+     * @throws IllegalArgumentException if b is not the same size as A.
+     * @throws ArithmeticException if A is singular.
+     */
+    public Vector solve(Vector b) throws IllegalArgumentException, ArithmeticException {
+        if(b.getSize() != n) {
+            throw new IllegalArgumentException("Right-hand side is the wrong size!");
+        }
+        checkNonSingular();
+
+        double[] rhs = b.toArray();
+        double[] x = new double[n];
+
+        for(int i = 0; i < n; i++) {
+            x[i] = rhs[pivot[i]];
+        }
+
+        // Forward substitution with the unit lower triangular L
+        for(int i = 1; i < n; i++) {
+            int row = i * n;
+            double sum = x[i];
+            for(int j = 0; j < i; j++) {
+                sum -= lu[row + j] * x[j];
+            }
+            x[i] = sum;
+        }
+
+        // Back substitution with U
+        for(int i = n - 1; i >= 0; i--) {
+            int row = i * n;
+            double sum = x[i];
+            for(int j = i + 1; j < n; j++) {
+                sum -= lu[row + j] * x[j];
+            }
+            x[i] = sum / lu[row + i];
+        }
+
+        return Vector.wrap(b.getLabel(), x);
+    }
+
+    /**
+     * Solves the system AX = B for every column of B at once, where A is the
+     * decomposed matrix. All of the columns are substituted together in one
+     * blocked pass, which is much faster than solving them one at a time.
+     * @param b The right-hand sides, one per column.
+     * @return The solutions, one per column.
+     * @throws IllegalArgumentException if B does not have the same height as A.
+     * @throws ArithmeticException if A is singular.
+     */
+    public Matrix solve(Matrix b) throws IllegalArgumentException, ArithmeticException {
+        if(b.getHeight() != n) {
+            throw new IllegalArgumentException("Right-hand side is the wrong size!");
+        }
+        checkNonSingular();
+
+        int cols = b.getWidth();
+        double[] rhs = b.toArray();
+        double[] x = new double[n * cols];
+
+        for(int i = 0; i < n; i++) {
+            System.arraycopy(rhs, pivot[i] * cols, x, i * cols, cols);
+        }
+
+        substitute(x, cols);
+
+        return Matrix.wrap(b.getLabel(), cols, n, x);
+    }
+
+    /**
+     * Computes the inverse of the decomposed matrix.
+     * @return The inverse.
+     * @throws ArithmeticException if the matrix is singular.
+     */
+    public Matrix inverse() throws ArithmeticException {
+        checkNonSingular();
+
+        double[] x = new double[n * n];
+
+        for(int i = 0; i < n; i++) {
+            x[i * n + pivot[i]] = 1;
+        }
+
+        substitute(x, n);
+
+        return Matrix.wrap("", n, n, x);
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Overwrites the already permuted n by cols row-major array x with the
+     * solution of LUX = x.
+     *
+     * Both triangular solves are blocked: the rows are processed BLOCK at a
+     * time, with the contribution of all previously solved rows subtracted
+     * in a single call to the GEMM kernel, and only the small triangle on
+     * the diagonal solved row by row. This way almost all of the work runs
+     * through the cache-blocked kernel regardless of the number of columns.
+     */
+    private void substitute(double[] x, int cols) {
+        // Forward substitution with the unit lower triangular L
+        for(int i0 = 0; i0 < n; i0 += BLOCK) {
+            int i1 = Math.min(i0 + BLOCK, n);
+
+            if(i0 > 0) {
+                Gemm.multiply(-1, i1 - i0, cols, i0,
+                              lu, i0 * n, n,
+                              x, 0, cols,
+                              x, i0 * cols, cols);
+            }
+
+            for(int i = i0 + 1; i < i1; i++) {
+                int row = i * n;
+                int xRow = i * cols;
+
+                for(int j = i0; j < i; j++) {
+                    double factor = lu[row + j];
+                    if(factor == 0) {
+                        continue;
+                    }
+
+                    int xj = j * cols;
+                    for(int c = 0; c < cols; c++) {
+                        x[xRow + c] -= factor * x[xj + c];
+                    }
+                }
+            }
+        }
+
+        // Back substitution with U
+        for(int i1 = n; i1 > 0; i1 -= BLOCK) {
+            int i0 = Math.max(i1 - BLOCK, 0);
+
+            if(i1 < n) {
+                Gemm.multiply(-1, i1 - i0, cols, n - i1,
+                              lu, i0 * n + i1, n,
+                              x, i1 * cols, cols,
+                              x, i0 * cols, cols);
+            }
+
+            for(int i = i1 - 1; i >= i0; i--) {
+                int row = i * n;
+                int xRow = i * cols;
+
+                for(int j = i + 1; j < i1; j++) {
+                    double factor = lu[row + j];
+                    if(factor == 0) {
+                        continue;
+                    }
+
+                    int xj = j * cols;
+                    for(int c = 0; c < cols; c++) {
+                        x[xRow + c] -= factor * x[xj + c];
+                    }
+                }
+
+                double diag = lu[row + i];
+                for(int c = 0; c < cols; c++) {
+                    x[xRow + c] /= diag;
+                }
+            }
+        }
+    }
+
+    /*
+     * Throws if the matrix is singular.
+     */
+    private void checkNonSingular() throws ArithmeticException {
+        if(singular) {
+            throw new ArithmeticException("Matrix is singular!");
+        }
+    }
+
+    /*
+     * Swaps two rows of an n by n row-major array.
+     */
+    private static void swapRows(double[] a, int n, int index1, int index2) {
+        int offset1 = index1 * n;
+        int offset2 = index2 * n;
+
+        for(int i = 0; i < n; i++) {
+            double temp = a[offset1 + i];
+            a[offset1 + i] = a[offset2 + i];
+            a[offset2 + i] = temp;
+        }
+    }
+}
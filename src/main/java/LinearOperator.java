@@ -0,0 +1,24 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * A square linear operator, i.e. anything that can multiply itself by a
+ * vector. The iterative solvers only ever need this product, so the operator
+ * never has to be stored as a matrix. Dense and sparse matrices can be passed
+ * directly as method references:
+ * <pre>
+ *     Vector x = new ConjugateGradient().solve(sparse::mult, b);
+ * </pre>
+ * Preconditioners are operators too; they apply an approximate inverse.
+ */
+
+@FunctionalInterface
+public interface LinearOperator {
+
+    /**
+     * Applies this operator to the vector provided. Must not modify x.
+     * @param x The vector to apply the operator to.
+     * @return The product, which must be the same size as x.
+     */
+    Vector apply(Vector x);
+}
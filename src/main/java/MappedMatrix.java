@@ -0,0 +1,343 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * A matrix whose entries live in a memory-mapped file rather than in RAM,
+ * for products too large to hold in memory at all. The file is a single
+ * {@link BinaryFormat} matrix record, so a matrix written with
+ * {@code BinaryFormat.write(m, channel)} can be opened as a MappedMatrix and
+ * a small MappedMatrix can be read back with {@code BinaryFormat.readMatrix}.
+ * Unlike {@link Matrix}, the number of entries may exceed the size of an
+ * array; only the width and height are limited to an int each.
+ *
+ * Products are computed out-of-core by {@link #multInto(MappedMatrix,
+ * MappedMatrix, MappedMatrix, long)}, which streams square tiles of the
+ * operands through a fixed-size buffer on the heap.
+ *
+ * Changes are written back to the file by the operating system. A
+ * MappedMatrix is not thread-safe, and must be closed once it is no longer
+ * needed to release the mapping.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class MappedMatrix implements Closeable {
+
+    private final FileChannel channel;
+    private final OffHeapStorage storage;
+    private final String label;
+    private final int width, height;
+
+    /*
+     * The largest tile side. Three tiles of this size (48GB) are more than
+     * any reasonable buffer, and a tile still fits in one array.
+     */
+    private static final int MAX_TILE = 46336;
+
+    private MappedMatrix(FileChannel channel, long position, String label, int width, int height) throws IOException {
+        this.channel = channel;
+        this.label = label;
+        this.width = width;
+        this.height = height;
+        this.storage = new OffHeapStorage(channel, position, width, height);
+    }
+
+    /**
+     * Creates a new zero matrix in the file provided, replacing the file if
+     * it exists. The file is sized up front but typically takes up disk space
+     * only as entries are written.
+     * @param file The file to store the matrix in.
+     * @param label The label for the matrix.
+     * @param width The width of the matrix.
+     * @param height The height of the matrix.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the size of the matrix is too small.
+     * @throws IOException if the file can't be created or mapped.
+     */
+    public static MappedMatrix create(Path file, String label, int width, int height) throws IllegalArgumentException, IOException {
+        if(width <= 1 || height <= 1) {
+            throw new IllegalArgumentException("The minimum size for a matrix is 2x2.");
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = BinaryFormat.matrixHeader(label, height, width);
+            int size = header.remaining();
+
+            while(header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            return new MappedMatrix(channel, size, label, width, height);
+        }
+        catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a matrix previously stored in the file provided, for reading and
+     * writing.
+     * @param file The file holding the matrix.
+     * @return The matrix.
+     * @throws IOException if the file can't be opened or does not hold a
+     * valid matrix record.
+     */
+    public static MappedMatrix open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            BinaryFormat.Header header = BinaryFormat.readMatrixHeader(channel);
+
+            if(channel.size() < header.size + 8L * header.width * header.height) {
+                throw new IOException("Record is truncated!");
+            }
+
+            return new MappedMatrix(channel, header.size, header.label, header.width, header.height);
+        }
+        catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Gets the width of the matrix.
+     * @return The width of the matrix.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Gets the height of the matrix.
+     * @return The height of the matrix.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the matrix's label.
+     * @return The string containing the matrix's label.
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Returns the value of the entry in the position provided.
+     * @param x The x index.
+     * @param y The y index.
+     * @return The value at the specified index.
+     * @throws IndexOutOfBoundsException if the x or y indices provided are greater
+     * than the width or height of the matrix respectively.
+     */
+    public double getEntry(int x, int y) throws IndexOutOfBoundsException {
+        if(x >= width || x < 0 || y >= height || y < 0) {
+            throw new IndexOutOfBoundsException("Index out of bounds!");
+        }
+
+        return storage.get(x, y);
+    }
+
+    /**
+     * Sets the value of the entry in the position provided to the value provided.
+     * @param x The x index.
+     * @param y The y index.
+     * @param value The value to set the entry to.
+     * @throws IndexOutOfBoundsException if the x or y indices provided are greater
+     * than the width or height of the matrix respectively.
+     */
+    public void setEntry(int x, int y, double value) throws IndexOutOfBoundsException {
+        if(x >= width || x < 0 || y >= height || y < 0) {
+            throw new IndexOutOfBoundsException("Index out of bounds!");
+        }
+
+        storage.set(x, y, value);
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Multiplies this matrix by the matrix provided out-of-core, storing the
+     * product in a new file. Uses a buffer of a quarter of the maximum heap
+     * size; see {@link #multInto(MappedMatrix, MappedMatrix, MappedMatrix, long)}.
+     * @param label The label for the product.
+     * @param m The matrix to multiply by.
+     * @param file The file to store the product in.
+     * @return The product.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     * @throws IOException if the product's file can't be created.
+     */
+    public MappedMatrix mult(String label, MappedMatrix m, Path file) throws IllegalArgumentException, IOException {
+        if(m.getHeight() != width) {
+            throw new IllegalArgumentException("Cannot multiply these matrices!");
+        }
+
+        MappedMatrix toReturn = create(file, label, m.getWidth(), height);
+        try {
+            multInto(this, m, toReturn, Runtime.getRuntime().maxMemory() / 4);
+        }
+        catch(RuntimeException e) {
+            toReturn.close();
+            throw e;
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * Computes the matrix product {@code a * b} out-of-core and stores it in
+     * {@code dest}, overwriting its previous entries.
+     *
+     * The product is computed one square tile of {@code dest} at a time. The
+     * buffer holds that tile plus one tile each of {@code a} and {@code b}, so
+     * the tile side s is about the square root of a third of the buffer (in
+     * doubles). Each tile of {@code dest} is written exactly once and never
+     * read, while {@code a} is read once per column of tiles and {@code b}
+     * once per row of tiles, about 16mnk/s bytes in total. The tiles of
+     * {@code dest} are visited in a serpentine order and the tiles of the
+     * operands are visited in alternating directions, so the first operand
+     * tile each step needs is the one already in the buffer and is not read
+     * again. Tiles are multiplied in parallel on the common fork/join pool.
+     *
+     * As an example, a 50,000 by 50,000 product with a 6GB buffer uses tiles
+     * 16,384 entries on a side and reads about 160GB from the operand files.
+     * @param a The left matrix.
+     * @param b The right matrix.
+     * @param dest The matrix to store the result in. Must be {@code b.getWidth()}
+     * wide and {@code a.getHeight()} high, and must not be {@code a} or {@code b}.
+     * @param bufferBytes The size of the in-memory buffer, in bytes.
+     * @throws IllegalArgumentException if the height of {@code b} is not equal
+     * to the width of {@code a}, if the destination is the wrong size or is
+     * one of the operands, or if the buffer can't hold three 2x2 tiles.
+     */
+    public static void multInto(MappedMatrix a, MappedMatrix b, MappedMatrix dest, long bufferBytes) throws IllegalArgumentException {
+        if(b.height != a.width) {
+            throw new IllegalArgumentException("Cannot multiply these matrices!");
+        }
+        if(dest.width != b.width || dest.height != a.height) {
+            throw new IllegalArgumentException("Destination matrix is the wrong size!");
+        }
+        if(dest == a || dest == b) {
+            throw new IllegalArgumentException("Destination matrix cannot be an operand!");
+        }
+
+        int m = a.height;
+        int n = b.width;
+        int k = a.width;
+
+        // No tile needs to be bigger than the matrices themselves
+        long side = (long) Math.sqrt(bufferBytes / 8.0 / 3);
+        int tile = (int) Math.min(Math.min(side, MAX_TILE), Math.max(m, Math.max(n, k)));
+        if(tile < 2) {
+            throw new IllegalArgumentException("Buffer is too small!");
+        }
+
+        int tm = Math.min(tile, m);
+        int tn = Math.min(tile, n);
+        int tk = Math.min(tile, k);
+
+        double[] aTile = new double[tm * tk];
+        double[] bTile = new double[tk * tn];
+        double[] cTile = new double[tm * tn];
+
+        int rowTiles = (m + tile - 1) / tile;
+        int colTiles = (n + tile - 1) / tile;
+        int depthTiles = (k + tile - 1) / tile;
+
+        // Which tiles of a and b are in the buffer, as {row, column} in tiles
+        int[] aLoaded = {-1, -1};
+        int[] bLoaded = {-1, -1};
+        boolean forward = true;
+
+        for(int ti = 0; ti < rowTiles; ti++) {
+            int ic = ti * tile;
+            int mc = Math.min(tile, m - ic);
+
+            for(int step = 0; step < colTiles; step++) {
+                int tj = ti % 2 == 0 ? step : colTiles - 1 - step;
+                int jc = tj * tile;
+                int nc = Math.min(tile, n - jc);
+
+                Arrays.fill(cTile, 0, mc * nc, 0);
+
+                for(int depth = 0; depth < depthTiles; depth++) {
+                    int tp = forward ? depth : depthTiles - 1 - depth;
+                    int pc = tp * tile;
+                    int kc = Math.min(tile, k - pc);
+
+                    if(aLoaded[0] != ti || aLoaded[1] != tp) {
+                        a.getTile(ic, pc, mc, kc, aTile);
+                        aLoaded[0] = ti;
+                        aLoaded[1] = tp;
+                    }
+                    if(bLoaded[0] != tp || bLoaded[1] != tj) {
+                        b.getTile(pc, jc, kc, nc, bTile);
+                        bLoaded[0] = tp;
+                        bLoaded[1] = tj;
+                    }
+
+                    ParallelKernels.multiply(mc, nc, kc, aTile, 0, kc, bTile, 0, nc, cTile, 0, nc);
+                }
+
+                dest.putTile(ic, jc, mc, nc, cTile);
+                forward = !forward;
+            }
+        }
+    }
+
+/****************************************************************/
+/*                           Override                           */
+/****************************************************************/
+
+    /**
+     * Unmaps the matrix and closes its file. The matrix can't be used
+     * afterwards.
+     * @throws IOException if the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        storage.close();
+        channel.close();
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Copies a rows by cols block starting at (x, y) into dest, packed with a
+     * stride of cols.
+     */
+    private void getTile(int y, int x, int rows, int cols, double[] dest) {
+        for(int r = 0; r < rows; r++) {
+            storage.getRow(y + r, x, dest, r * cols, cols);
+        }
+    }
+
+    /*
+     * Copies a rows by cols block packed with a stride of cols into this
+     * matrix, starting at (x, y).
+     */
+    private void putTile(int y, int x, int rows, int cols, double[] src) {
+        for(int r = 0; r < rows; r++) {
+            storage.putRow(y + r, x, src, r * cols, cols);
+        }
+    }
+}
@@ -3,14 +3,28 @@
  * @version 1
  *
  * An m by n matrix.
+ *
+ * Matrices normally keep their entries on the heap. One created with
+ * {@link #offHeap(String, int, int)} keeps them in direct memory instead,
+ * so that very large operands add nothing to the garbage collector's work;
+ * such a matrix should be closed once it is no longer needed.
  */
 
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
 import java.util.Random;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
-public class Matrix {
+public class Matrix implements AutoCloseable {
 
-    private Vector[] rowVectors;
+    /*
+     * The entries are stored row-major in a single contiguous array. The entry
+     * at (x, y) lives at index y * stride + x. An off-heap matrix has the same
+     * layout in offHeap instead, and entries is null.
+     */
+    private double[] entries;
+    private OffHeapStorage offHeap;
+    private int stride;
     private String label;
     private Random rand = new Random();
 
@@ -21,29 +35,52 @@ public class Matrix {
 
     private static final double COMPARE_PRECISION = 1e-2;
 
+    /*
+     * The side of the square tiles that off-heap operands are copied through
+     * (512 * 512 * 8 bytes = 2MB each).
+     */
+    private static final int TILE = 512;
+
+    /*
+     * Per-thread scratch arrays that off-heap tiles are copied through, so
+     * that repeated calls don't allocate. Each is grown to the largest tile
+     * asked of it, which is at most TILE * TILE.
+     */
+    private static final ThreadLocal<double[][]> SCRATCH = new ThreadLocal<double[][]>() {
+        @Override
+        protected double[][] initialValue() {
+            return new double[3][0];
+        }
+    };
+
     /**
      * Creates a new matrix object and initializes the column vectors with the ones provided.
      * @param label The label for the matrix.
      * @param rowVectors The column vectors of the matrix.
      * @throws IllegalArgumentException if there are not enough vectors provided.
      * @throws IllegalArgumentException if the vectors are not equal in size.
+     * @throws IllegalArgumentException if the matrix is too large to fit in a
+     * single array.
      */
     public Matrix(String label, Vector... rowVectors) throws IllegalArgumentException {
         if(rowVectors.length <= 1) {
             throw new IllegalArgumentException("No column vectors provided!");
         }
 
-        this.rowVectors = new Vector[rowVectors.length];
         this.label = label;
         this.height = rowVectors.length;
         this.width = rowVectors[0].getSize();
+        this.stride = width;
+        this.entries = new double[entryCount(width, height)];
 
         for(int i = 0; i < rowVectors.length; i++) {
-            this.rowVectors[i] = rowVectors[i];
-
             if(rowVectors[i].getSize() != width) {
                 throw new IllegalArgumentException("Column vectors are not equal size!");
             }
+
+            for(int j = 0; j < width; j++) {
+                entries[i * stride + j] = rowVectors[i].getEntry(j);
+            }
         }
     }
 
@@ -52,21 +89,78 @@ public class Matrix {
      * @param label The label for the matrix.
      * @param width The width of the matrix.
      * @param height The height of the matrix.
-     * @throws IllegalArgumentException if the size of the matrix is too small.
+     * @throws IllegalArgumentException if the size of the matrix is too small,
+     * or too large to fit in a single array.
      */
     public Matrix(String label, int width, int height) throws IllegalArgumentException {
         if(width <= 1 || height <= 1) {
             throw new IllegalArgumentException("The minimum size for a matrix is 2x2.");
         }
 
-        this.rowVectors = new Vector[height];
         this.label = label;
         this.width = width;
         this.height = height;
+        this.stride = width;
+        this.entries = new double[entryCount(width, height)];
+    }
+
+    /*
+     * Wraps the row-major array provided without copying it. Used by the
+     * decompositions to hand back their results. Accepts every shape the
+     * public constructors can build, including a single column.
+     */
+    static Matrix wrap(String label, int width, int height, double[] entries) {
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("Matrix dimensions must be positive!");
+        }
+        if(entries.length != entryCount(width, height)) {
+            throw new IllegalArgumentException("Entry array is the wrong size!");
+        }
+
+        return new Matrix(label, width, height, entries);
+    }
+
+    private Matrix(String label, int width, int height, double[] entries) {
+        this.label = label;
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+        this.entries = entries;
+    }
 
-        for(int i = 0; i < height; i++) {
-            this.rowVectors[i] = new Vector("", width);
+    private Matrix(String label, int width, int height, OffHeapStorage offHeap) {
+        this.label = label;
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Creates a new zero matrix with the width and height provided whose
+     * entries are kept off the garbage collected heap, in direct memory.
+     * Every operation works on it unchanged, but results that are new
+     * matrices are ordinary heap matrices; pass an off-heap destination to
+     * {@link #multInto(Matrix, Matrix, Matrix)} and the other {@code Into}
+     * methods to keep results off-heap too. Off-heap operands are copied
+     * through the heap one tile at a time rather than all at once.
+     * The matrix should be closed once it is no longer needed.
+     * @param label The label for the matrix.
+     * @param width The width of the matrix.
+     * @param height The height of the matrix.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the size of the matrix is too small,
+     * or if it has more entries than an array can hold.
+     */
+    public static Matrix offHeap(String label, int width, int height) throws IllegalArgumentException {
+        if(width <= 1 || height <= 1) {
+            throw new IllegalArgumentException("The minimum size for a matrix is 2x2.");
+        }
+        if((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix is too large!");
         }
+
+        return new Matrix(label, width, height, new OffHeapStorage(width, height));
     }
 
 /****************************************************************/
@@ -102,7 +196,10 @@ public class Matrix {
             throw new IndexOutOfBoundsException("Index out of bounds!");
         }
 
-        return rowVectors[y].getEntry(x);
+        if(offHeap != null) {
+            return offHeap.get(x, y);
+        }
+        return entries[y * stride + x];
     }
 
     /**
@@ -118,11 +215,16 @@ public class Matrix {
             throw new IndexOutOfBoundsException("Index out of bounds!");
         }
 
-        rowVectors[y].setEntry(x, value);
+        if(offHeap != null) {
+            offHeap.set(x, y, value);
+            return;
+        }
+        entries[y * stride + x] = value;
     }
 
     /**
-     * Returns the entries in a specific row as a {@code Vector}.
+     * Returns a copy of the entries in a specific row as a {@code Vector}.
+     * Changes made to the returned vector are not reflected in the matrix.
      * @param index The index of the row to return.
      * @return The row vector at the index specified.
      */
@@ -131,7 +233,10 @@ public class Matrix {
             throw new IndexOutOfBoundsException("Index greater than matrix height!");
         }
 
-        return rowVectors[index];
+        double[] row = new double[width];
+        getTile(index, 0, 1, width, row);
+
+        return Vector.wrap(this.label, row);
     }
 
     /**
@@ -147,7 +252,7 @@ public class Matrix {
         Vector toReturn = new Vector(this.label, this.height);
 
         for(int i = 0; i < height; i++) {
-            toReturn.setEntry(i, this.getEntry(index, i));
+            toReturn.setEntry(i, getEntry(index, i));
         }
 
         return toReturn;
@@ -161,7 +266,14 @@ public class Matrix {
     public void setRand(int lowerBound, int upperBound) {
         for(int i = 0; i < height; i++) {
             for(int j = 0; j < width; j++) {
-                rowVectors[j].setEntry(i, (double) rand.nextInt(upperBound - lowerBound) + lowerBound);
+                double value = (double) rand.nextInt(upperBound - lowerBound) + lowerBound;
+
+                if(offHeap != null) {
+                    offHeap.set(j, i, value);
+                }
+                else {
+                    entries[i * stride + j] = value;
+                }
             }
         }
     }
@@ -197,10 +309,82 @@ public class Matrix {
         return this.width == this.height;
     }
 
+    /**
+     * Checks whether the matrix keeps its entries off the heap.
+     * @return Whether or not the matrix was created with {@link #offHeap(String, int, int)}.
+     */
+    public boolean isOffHeap() {
+        return offHeap != null;
+    }
+
+    /*
+     * Returns a row-major copy of the entries of the transpose, i.e. a
+     * column-major copy of this matrix.
+     */
+    double[] toTransposedArray() {
+        double[] toReturn = new double[width * height];
+        double[] row = offHeap != null ? new double[width] : entries;
+
+        for(int j = 0; j < height; j++) {
+            int offset = j * stride;
+
+            if(offHeap != null) {
+                offHeap.getRow(j, 0, row, 0, width);
+                offset = 0;
+            }
+
+            for(int i = 0; i < width; i++) {
+                toReturn[i * height + j] = row[offset + i];
+            }
+        }
+
+        return toReturn;
+    }
+
+    /*
+     * Returns a row-major copy of the entries with a stride equal to the width.
+     */
+    double[] toArray() {
+        double[] toReturn = new double[width * height];
+        getTile(0, 0, height, width, toReturn);
+
+        return toReturn;
+    }
+
+    /*
+     * Returns the backing array itself, not a copy, or null if the matrix is
+     * off-heap. Used by expressions to read operands without copying them.
+     */
+    double[] getEntries() {
+        return entries;
+    }
+
+    /*
+     * Copies count entries, in row-major order starting from the index
+     * provided, into dest, for bulk I/O. Works for either kind of storage.
+     */
+    void copyTo(int index, DoubleBuffer dest, int count) {
+        if(offHeap != null) {
+            offHeap.copyTo(index, dest, count);
+        }
+        else {
+            dest.put(entries, index, count);
+        }
+    }
+
 /****************************************************************/
 /*                          Arithmetic                          */
 /****************************************************************/
 
+    /**
+     * Starts a lazy expression with this matrix, so that a chain of
+     * operations is evaluated in as few passes as possible. See {@link Expression}.
+     * @return The expression.
+     */
+    public Expression lazy() {
+        return Expression.of(this);
+    }
+
     /**
      * Adds this matrix and the matrix provided.
      * @param label The label for the new matrix.
@@ -215,12 +399,7 @@ public class Matrix {
         }
 
         Matrix toReturn = new Matrix(label, width, height);
-
-        for(int i = 0; i < width; i++) {
-            for(int j = 0; j < height; j++) {
-                toReturn.setEntry(i, j, this.getEntry(i, j) + m.getEntry(i, j));
-            }
-        }
+        addInto(this, m, toReturn);
 
         return toReturn;
     }
@@ -249,12 +428,7 @@ public class Matrix {
         }
 
         Matrix toReturn = new Matrix(label, width, height);
-
-        for(int i = 0; i < width; i++) {
-            for(int j = 0; j < height; j++) {
-                toReturn.setEntry(i, j, this.getEntry(i, j) - m.getEntry(i, j));
-            }
-        }
+        subInto(this, m, toReturn);
 
         return toReturn;
     }
@@ -272,6 +446,7 @@ public class Matrix {
 
     /**
      * Performs matrix multiplication between this matrix and the matrix provided.
+     * Large products are computed with a cache-blocked kernel (see {@link Gemm}).
      * @param label The label for the new matrix.
      * @param m The matrix to multiply by.
      * @return The new matrix.
@@ -284,29 +459,116 @@ public class Matrix {
         }
 
         Matrix toReturn = new Matrix(label, m.getWidth(), height);
+        multInto(this, m, toReturn);
 
-        for(int i = 0; i < m.getWidth(); i++) {
-            for(int j = 0; j < height; j++) {
-                double sum = 0;
-                for(int k = 0; k < width; k++) {
-                    sum += this.getEntry(k, j) * m.getEntry(i, k);
-                }
+        return toReturn;
+    }
+
+    /**
+     * Performs matrix multiplication between this matrix and the matrix provided.
+     * @param m The matrix to multiply by.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public Matrix mult(Matrix m) throws IllegalArgumentException {
+        return mult(this.label, m);
+    }
+
+    /**
+     * Multiplies this matrix by the vector provided.
+     * @param label The label for the new vector.
+     * @param v The vector to multiply by.
+     * @return The new vector, with one entry per row of this matrix.
+     * @throws IllegalArgumentException if the size of the vector is not equal
+     * to the width of this matrix.
+     */
+    public Vector mult(String label, Vector v) throws IllegalArgumentException {
+        if(v.getSize() != width) {
+            throw new IllegalArgumentException("Cannot multiply this matrix and vector!");
+        }
+
+        double[] x = v.toArray();
+        double[] toReturn = new double[height];
+        double[] row = offHeap != null ? new double[width] : entries;
+
+        for(int i = 0; i < height; i++) {
+            int offset = i * stride;
+            double sum = 0;
+
+            if(offHeap != null) {
+                offHeap.getRow(i, 0, row, 0, width);
+                offset = 0;
+            }
 
-                toReturn.setEntry(i, j, sum);
+            for(int j = 0; j < width; j++) {
+                sum += row[offset + j] * x[j];
             }
+
+            toReturn[i] = sum;
+        }
+
+        return Vector.wrap(label, toReturn);
+    }
+
+    /**
+     * Multiplies this matrix by the vector provided.
+     * @param v The vector to multiply by.
+     * @return The new vector, with one entry per row of this matrix.
+     * @throws IllegalArgumentException if the size of the vector is not equal
+     * to the width of this matrix.
+     */
+    public Vector mult(Vector v) throws IllegalArgumentException {
+        return mult(this.label, v);
+    }
+
+    /**
+     * Performs matrix multiplication between this matrix and the sparse
+     * matrix provided. Only the nonzeros of the sparse matrix are visited.
+     * @param label The label for the new matrix.
+     * @param m The sparse matrix to multiply by.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public Matrix mult(String label, SparseMatrix m) throws IllegalArgumentException {
+        if(m.getHeight() != width) {
+            throw new IllegalArgumentException("Cannot multiply these matrices!");
+        }
+
+        Matrix toReturn = new Matrix(label, m.getWidth(), height);
+
+        if(offHeap == null) {
+            m.leftMultInto(entries, height, toReturn.entries);
+            return toReturn;
+        }
+
+        // Multiply a block of rows at a time
+        int rows = Math.max(1, TILE * TILE / width);
+        double[] block = new double[rows * width];
+        double[] product = new double[rows * m.getWidth()];
+
+        for(int y = 0; y < height; y += rows) {
+            int count = Math.min(rows, height - y);
+
+            getTile(y, 0, count, width, block);
+            Arrays.fill(product, 0);
+            m.leftMultInto(block, count, product);
+            System.arraycopy(product, 0, toReturn.entries, y * m.getWidth(), count * m.getWidth());
         }
 
         return toReturn;
     }
 
     /**
-     * Performs matrix multiplication between this matrix and the matrix provided.
-     * @param m The matrix to multiply by.
+     * Performs matrix multiplication between this matrix and the sparse
+     * matrix provided.
+     * @param m The sparse matrix to multiply by.
      * @return The new matrix.
      * @throws IllegalArgumentException if the height of the matrix provided is
      * not equal to the width of this matrix.
      */
-    public Matrix mult(Matrix m) throws IllegalArgumentException {
+    public Matrix mult(SparseMatrix m) throws IllegalArgumentException {
         return mult(this.label, m);
     }
 
@@ -315,11 +577,7 @@ public class Matrix {
      * @param c The constant by which to multiply.
      */
     public void mult(double c) {
-        for(int i = 0; i < width; i++) {
-            for(int j = 0; j < height; j++) {
-                this.setEntry(i, j, this.getEntry(i, j) * c);
-            }
-        }
+        scaleInPlace(c);
     }
 
     /**
@@ -357,12 +615,7 @@ public class Matrix {
      */
     public Matrix transpose() {
         Matrix toReturn = new Matrix(label, height, width);
-
-        for(int i = 0; i < width; i++) {
-            for(int j = 0; j < height; j++) {
-                toReturn.setEntry(j, i, this.getEntry(i, j));
-            }
-        }
+        transposeInto(this, toReturn);
 
         return toReturn;
     }
@@ -464,10 +717,533 @@ public class Matrix {
         return toReturn;
     }
 
+/****************************************************************/
+/*                        Decompositions                        */
+/****************************************************************/
+
+    /**
+     * Computes the LU decomposition of this matrix with partial pivoting.
+     * The returned object can be reused to solve many systems, or compute
+     * the determinant or inverse, without factoring the matrix again.
+     * @return The LU decomposition.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     */
+    public LUDecomposition lu() throws UnsupportedOperationException {
+        return new LUDecomposition(this);
+    }
+
+    /**
+     * Computes the Cholesky decomposition of this matrix. Check
+     * {@link CholeskyDecomposition#isSPD()} on the result to find out
+     * whether the matrix was symmetric positive-definite, and fall back to
+     * {@link #lu()} if it wasn't.
+     * @return The Cholesky decomposition.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     */
+    public CholeskyDecomposition cholesky() throws UnsupportedOperationException {
+        return new CholeskyDecomposition(this);
+    }
+
+    /**
+     * Computes the eigenvalues and eigenvectors of this matrix, which must be
+     * symmetric.
+     * @return The eigen-decomposition.
+     * @throws UnsupportedOperationException if the matrix is not square and symmetric.
+     */
+    public EigenDecomposition eigen() throws UnsupportedOperationException {
+        return new EigenDecomposition(this, true);
+    }
+
+    /**
+     * Computes only the eigenvalues of this matrix, which must be symmetric.
+     * This is considerably faster than {@link #eigen()} since the
+     * eigenvectors are never accumulated.
+     * @return The eigenvalues in ascending order.
+     * @throws UnsupportedOperationException if the matrix is not square and symmetric.
+     */
+    public Vector eigenvalues() throws UnsupportedOperationException {
+        return new EigenDecomposition(this, false).getEigenvalues();
+    }
+
+    /**
+     * Computes the thin singular value decomposition of this matrix, in which
+     * U and V have min(width, height) columns.
+     * @return The singular value decomposition.
+     * @throws ArithmeticException if the iteration fails to converge.
+     */
+    public SingularValueDecomposition svd() throws ArithmeticException {
+        return new SingularValueDecomposition(this, true);
+    }
+
+    /**
+     * Computes the singular value decomposition of this matrix.
+     * @param thin Whether to compute only the leading min(width, height)
+     * columns of U and V rather than square U and V.
+     * @return The singular value decomposition.
+     * @throws ArithmeticException if the iteration fails to converge.
+     */
+    public SingularValueDecomposition svd(boolean thin) throws ArithmeticException {
+        return new SingularValueDecomposition(this, thin);
+    }
+
+    /**
+     * Computes the QR decomposition of this matrix using Householder
+     * reflections.
+     * @return The QR decomposition.
+     * @throws UnsupportedOperationException if the matrix is wider than it is high.
+     */
+    public QRDecomposition qr() throws UnsupportedOperationException {
+        return new QRDecomposition(this);
+    }
+
+    /**
+     * Finds the vector x which minimizes the length of Ax - b, where A is this
+     * matrix, using its QR decomposition. Unlike solving the normal equations
+     * this never forms the product of the transpose of A with A, which would
+     * square the condition number.
+     * @param b The right-hand side. Must have one entry per row of this matrix.
+     * @return The least-squares solution, with one entry per column of this matrix.
+     * @throws UnsupportedOperationException if the matrix is wider than it is high.
+     * @throws IllegalArgumentException if b is the wrong size.
+     * @throws ArithmeticException if the columns of this matrix are linearly dependent.
+     */
+    public Vector leastSquares(Vector b) throws UnsupportedOperationException, IllegalArgumentException, ArithmeticException {
+        return qr().leastSquares(b);
+    }
+
+    /**
+     * Computes the determinant of this matrix from its LU decomposition in
+     * O(n^3).
+     * @return The determinant.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     */
+    public double determinant() throws UnsupportedOperationException {
+        if(!isSquare()) {
+            throw new UnsupportedOperationException("Cannot take the determinant of a non-square matrix!");
+        }
+
+        return lu().determinant();
+    }
+
+    /**
+     * Returns the inverse of this matrix, computed from its LU decomposition.
+     * @return The inverse of this matrix.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     * @throws ArithmeticException if the matrix is singular.
+     */
+    public Matrix inverse() throws UnsupportedOperationException, ArithmeticException {
+        if(!isSquare()) {
+            throw new UnsupportedOperationException("Cannot invert a non-square matrix!");
+        }
+
+        Matrix toReturn = this.cloneMatrix();
+        toReturn.invertInPlace();
+
+        return toReturn;
+    }
+
+    /**
+     * Overwrites this matrix with its inverse, using O(64n) extra memory for
+     * a scratch panel of 64 columns rather than a second n by n array.
+     * An off-heap matrix is inverted through a heap copy of its entries,
+     * which needs n * n more.
+     *
+     * If the matrix turns out to be singular the exception is thrown part
+     * way through. A matrix on the heap is then left holding its LU
+     * factors; an off-heap matrix is left unchanged, since only the copy
+     * was touched.
+     * @throws UnsupportedOperationException if the matrix is not square.
+     * @throws ArithmeticException if the matrix is singular.
+     */
+    public void invertInPlace() throws UnsupportedOperationException, ArithmeticException {
+        if(!isSquare()) {
+            throw new UnsupportedOperationException("Cannot invert a non-square matrix!");
+        }
+
+        if(offHeap != null) {
+            // The inversion needs the entries in an array
+            double[] copy = toArray();
+            LUDecomposition.invertInPlace(copy, width);
+            putTile(0, 0, height, width, copy);
+            return;
+        }
+
+        LUDecomposition.invertInPlace(entries, width);
+    }
+
+    /**
+     * Solves the linear system Ax = b, where A is this matrix. This factors
+     * the matrix every time it is called; to solve many systems with the
+     * same matrix, keep the result of {@link #lu()} and call its
+     * {@code solve} method instead, or solve them all at once with
+     * {@link #solve(Matrix)}.
+     * @param b The right-hand side.
+     * @return The solution x.
+     * @throws UnsupportedOperationException if this matrix is not square.
+     * @throws IllegalArgumentException if b is not the same size as this matrix.
+     * @throws ArithmeticException if this matrix is singular.
+     */
+    public Vector solve(Vector b) throws UnsupportedOperationException, IllegalArgumentException, ArithmeticException {
+        return lu().solve(b);
+    }
+
+    /**
+     * Solves the linear system AX = B for every column of B, where A is this
+     * matrix. The matrix is factored once and all of the right-hand sides
+     * are substituted together in one blocked pass.
+     * @param b The right-hand sides, one per column.
+     * @return The solutions, one per column.
+     * @throws UnsupportedOperationException if this matrix is not square.
+     * @throws IllegalArgumentException if B is not the same height as this matrix.
+     * @throws ArithmeticException if this matrix is singular.
+     */
+    public Matrix solve(Matrix b) throws UnsupportedOperationException, IllegalArgumentException, ArithmeticException {
+        return lu().solve(b);
+    }
+
+/****************************************************************/
+/*                     In-place arithmetic                      */
+/****************************************************************/
+
+    /**
+     * Adds the matrix provided to this matrix, overwriting this matrix's
+     * entries with the result. Does not allocate.
+     * @param m The matrix to add.
+     * @throws IllegalArgumentException if the matrix passed is not the
+     * same size as this one.
+     */
+    public void addInPlace(Matrix m) throws IllegalArgumentException {
+        addInto(this, m, this);
+    }
+
+    /**
+     * Subtracts the matrix provided from this matrix, overwriting this
+     * matrix's entries with the result. Does not allocate.
+     * @param m The matrix to subtract.
+     * @throws IllegalArgumentException if the matrix passed is not the
+     * same size as this one.
+     */
+    public void subInPlace(Matrix m) throws IllegalArgumentException {
+        subInto(this, m, this);
+    }
+
+    /**
+     * Multiplies each entry in this matrix by a constant. Once warmed up on
+     * a thread this does not allocate.
+     * @param c The constant by which to multiply.
+     */
+    public void scaleInPlace(double c) {
+        if(offHeap != null) {
+            for(int y = 0; y < height; y += TILE) {
+                int rows = Math.min(TILE, height - y);
+
+                for(int x = 0; x < width; x += TILE) {
+                    int cols = Math.min(TILE, width - x);
+                    double[] tile = scratch(0, rows * cols);
+
+                    getTile(y, x, rows, cols, tile);
+                    ElementwiseKernels.INSTANCE.scale(c, tile, 0, rows * cols);
+                    putTile(y, x, rows, cols, tile);
+                }
+            }
+            return;
+        }
+
+        for(int j = 0; j < height; j++) {
+            multRow(j, c);
+        }
+    }
+
+    /**
+     * Computes {@code a + b} and stores the result in {@code dest}. The
+     * destination may be one of the operands. Once warmed up on a thread
+     * this does not allocate.
+     * @param a The first matrix.
+     * @param b The matrix to add to the first.
+     * @param dest The matrix to store the result in.
+     * @throws IllegalArgumentException if the matrices are not all the same size.
+     */
+    public static void addInto(Matrix a, Matrix b, Matrix dest) throws IllegalArgumentException {
+        if(b.width != a.width || b.height != a.height) {
+            throw new IllegalArgumentException("Cannot add matrices of unequal size!");
+        }
+        if(dest.width != a.width || dest.height != a.height) {
+            throw new IllegalArgumentException("Destination matrix is the wrong size!");
+        }
+
+        if(a.offHeap != null || b.offHeap != null || dest.offHeap != null) {
+            addScaledTiles(a, b, 1, dest);
+            return;
+        }
+
+        for(int j = 0; j < a.height; j++) {
+            int aOffset = j * a.stride;
+            int bOffset = j * b.stride;
+            int dOffset = j * dest.stride;
+
+            ElementwiseKernels.INSTANCE.add(a.entries, aOffset, b.entries, bOffset, dest.entries, dOffset, a.width);
+        }
+    }
+
+    /**
+     * Computes {@code a - b} and stores the result in {@code dest}. The
+     * destination may be one of the operands. Once warmed up on a thread
+     * this does not allocate.
+     * @param a The first matrix.
+     * @param b The matrix to subtract from the first.
+     * @param dest The matrix to store the result in.
+     * @throws IllegalArgumentException if the matrices are not all the same size.
+     */
+    public static void subInto(Matrix a, Matrix b, Matrix dest) throws IllegalArgumentException {
+        if(b.width != a.width || b.height != a.height) {
+            throw new IllegalArgumentException("Cannot subtract matrices of unequal size!");
+        }
+        if(dest.width != a.width || dest.height != a.height) {
+            throw new IllegalArgumentException("Destination matrix is the wrong size!");
+        }
+
+        if(a.offHeap != null || b.offHeap != null || dest.offHeap != null) {
+            addScaledTiles(a, b, -1, dest);
+            return;
+        }
+
+        for(int j = 0; j < a.height; j++) {
+            int aOffset = j * a.stride;
+            int bOffset = j * b.stride;
+            int dOffset = j * dest.stride;
+
+            ElementwiseKernels.INSTANCE.sub(a.entries, aOffset, b.entries, bOffset, dest.entries, dOffset, a.width);
+        }
+    }
+
+    /**
+     * Computes the matrix product {@code a * b} and stores the result in
+     * {@code dest}, overwriting its previous entries. Once warmed up on a
+     * thread this does not allocate.
+     * @param a The left matrix.
+     * @param b The right matrix.
+     * @param dest The matrix to store the result in. Must be {@code b.getWidth()}
+     * wide and {@code a.getHeight()} high, and must not be {@code a} or {@code b}.
+     * @throws IllegalArgumentException if the height of {@code b} is not equal
+     * to the width of {@code a}, if the destination is the wrong size, or if
+     * the destination is one of the operands.
+     */
+    public static void multInto(Matrix a, Matrix b, Matrix dest) throws IllegalArgumentException {
+        if(b.height != a.width) {
+            throw new IllegalArgumentException("Cannot multiply these matrices!");
+        }
+        if(dest.width != b.width || dest.height != a.height) {
+            throw new IllegalArgumentException("Destination matrix is the wrong size!");
+        }
+        if(dest == a || dest == b) {
+            throw new IllegalArgumentException("Destination matrix cannot be an operand!");
+        }
+
+        if(a.offHeap != null || b.offHeap != null || dest.offHeap != null) {
+            multiplyTiled(a, b, dest);
+            return;
+        }
+
+        dest.fill(0);
+        Gemm.multiply(a.height, b.width, a.width,
+                      a.entries, 0, a.stride,
+                      b.entries, 0, b.stride,
+                      dest.entries, 0, dest.stride);
+    }
+
+    /**
+     * Stores the transpose of {@code m} in {@code dest}. Once warmed up on
+     * a thread this does not allocate.
+     * @param m The matrix to transpose.
+     * @param dest The matrix to store the result in. Must be {@code m.getHeight()}
+     * wide and {@code m.getWidth()} high, and must not be {@code m}.
+     * @throws IllegalArgumentException if the destination is the wrong size
+     * or is the matrix being transposed.
+     */
+    public static void transposeInto(Matrix m, Matrix dest) throws IllegalArgumentException {
+        if(dest.width != m.height || dest.height != m.width) {
+            throw new IllegalArgumentException("Destination matrix is the wrong size!");
+        }
+        if(dest == m) {
+            throw new IllegalArgumentException("Destination matrix cannot be the source!");
+        }
+
+        if(m.offHeap != null || dest.offHeap != null) {
+            transposeTiled(m, dest);
+            return;
+        }
+
+        for(int j = 0; j < m.height; j++) {
+            int offset = j * m.stride;
+
+            for(int i = 0; i < m.width; i++) {
+                dest.entries[i * dest.stride + j] = m.entries[offset + i];
+            }
+        }
+    }
+
+/****************************************************************/
+/*                     Parallel arithmetic                      */
+/****************************************************************/
+
+    /**
+     * Adds this matrix and the matrix provided, splitting the work across
+     * the common fork/join pool. Small matrices are added on the calling
+     * thread, as are off-heap matrices. The result is identical to
+     * {@link #add(String, Matrix)}.
+     * @param label The label for the new matrix.
+     * @param m The matrix to add.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the matrix passed is not the
+     * same size as this one.
+     */
+    public Matrix parallelAdd(String label, Matrix m) throws IllegalArgumentException {
+        if(m.getWidth() != width || m.getHeight() != height) {
+            throw new IllegalArgumentException("Cannot add matrices of unequal size!");
+        }
+        if(offHeap != null || m.offHeap != null) {
+            return add(label, m);
+        }
+
+        Matrix toReturn = new Matrix(label, width, height);
+
+        ParallelKernels.addScaled(height, width,
+                                  this.entries, 0, this.stride,
+                                  m.entries, 0, m.stride, 1,
+                                  toReturn.entries, 0, toReturn.stride);
+
+        return toReturn;
+    }
+
+    /**
+     * Adds this matrix and the matrix provided in parallel.
+     * @param m The matrix to add.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the matrix passed is not the
+     * same size as this one.
+     */
+    public Matrix parallelAdd(Matrix m) throws IllegalArgumentException {
+        return parallelAdd(this.label, m);
+    }
+
+    /**
+     * Subtracts a provided matrix from this matrix, splitting the work
+     * across the common fork/join pool. Small matrices are subtracted on
+     * the calling thread, as are off-heap matrices. The result is identical
+     * to {@link #sub(String, Matrix)}.
+     * @param label The label for the new matrix.
+     * @param m The matrix to subtract.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the matrix passed is not the
+     * same size as this one.
+     */
+    public Matrix parallelSub(String label, Matrix m) throws IllegalArgumentException {
+        if(m.getWidth() != width || m.getHeight() != height) {
+            throw new IllegalArgumentException("Cannot subtract matrices of unequal size!");
+        }
+        if(offHeap != null || m.offHeap != null) {
+            return sub(label, m);
+        }
+
+        Matrix toReturn = new Matrix(label, width, height);
+
+        ParallelKernels.addScaled(height, width,
+                                  this.entries, 0, this.stride,
+                                  m.entries, 0, m.stride, -1,
+                                  toReturn.entries, 0, toReturn.stride);
+
+        return toReturn;
+    }
+
+    /**
+     * Subtracts a provided matrix from this matrix in parallel.
+     * @param m The matrix to subtract.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the matrix passed is not the
+     * same size as this one.
+     */
+    public Matrix parallelSub(Matrix m) throws IllegalArgumentException {
+        return parallelSub(this.label, m);
+    }
+
+    /**
+     * Performs matrix multiplication between this matrix and the matrix
+     * provided, computing blocks of the result on the common fork/join pool.
+     * Products below a size threshold, and products with an off-heap operand,
+     * are computed on the calling thread. The result matches
+     * {@link #mult(String, Matrix)} to within round-off.
+     * @param label The label for the new matrix.
+     * @param m The matrix to multiply by.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public Matrix parallelMult(String label, Matrix m) throws IllegalArgumentException {
+        if(m.getHeight() != width) {
+            throw new IllegalArgumentException("Cannot multiply these matrices!");
+        }
+        if(offHeap != null || m.offHeap != null) {
+            return mult(label, m);
+        }
+
+        Matrix toReturn = new Matrix(label, m.getWidth(), height);
+
+        ParallelKernels.multiply(height, m.width, width,
+                                 this.entries, 0, this.stride,
+                                 m.entries, 0, m.stride,
+                                 toReturn.entries, 0, toReturn.stride);
+
+        return toReturn;
+    }
+
+    /**
+     * Performs matrix multiplication between this matrix and the matrix
+     * provided in parallel.
+     * @param m The matrix to multiply by.
+     * @return The new matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public Matrix parallelMult(Matrix m) throws IllegalArgumentException {
+        return parallelMult(this.label, m);
+    }
+
+    /**
+     * Returns the transpose of this matrix, computed in parallel on the
+     * common fork/join pool. An off-heap matrix is transposed on the calling
+     * thread.
+     * @return The transpose of this matrix.
+     */
+    public Matrix parallelTranspose() {
+        if(offHeap != null) {
+            return transpose();
+        }
+
+        Matrix toReturn = new Matrix(label, height, width);
+
+        ParallelKernels.transpose(height, width,
+                                  this.entries, 0, this.stride,
+                                  toReturn.entries, 0, toReturn.stride);
+
+        return toReturn;
+    }
+
 /****************************************************************/
 /*                           Override                           */
 /****************************************************************/
 
+    /**
+     * Releases the direct memory of an off-heap matrix. The matrix can't be
+     * used afterwards, and must not be closed while another thread is using
+     * it. Closing a heap matrix, or closing a matrix twice, does nothing.
+     */
+    @Override
+    public void close() {
+        if(offHeap != null) {
+            offHeap.close();
+        }
+    }
+
     /**
      * Formats the entries of the matrix into a string prefixed by the matrix's label.
      * @return The formatted string.
@@ -483,11 +1259,13 @@ public class Matrix {
             sb.append("    ");
 
             for(int j = 0; j < width; j++) {
-                if(this.getEntry(j, i) != 0) {
-                    sb.append(String.format(ANSI_BLUE + "%10.3f" + ANSI_RESET, rowVectors[i].getEntry(j)));
+                double entry = getEntry(j, i);
+
+                if(entry != 0) {
+                    sb.append(String.format(ANSI_BLUE + "%10.3f" + ANSI_RESET, entry));
                 }
                 else {
-                    sb.append(String.format("%10.3f", rowVectors[i].getEntry(j)));
+                    sb.append(String.format("%10.3f", entry));
                 }
                 sb.append(" ");
             }
@@ -558,29 +1336,52 @@ public class Matrix {
 /****************************************************************/
 
     /*
-     * Swaps rows.
+     * Swaps rows. This and the other row operations are only used on heap
+     * matrices.
      */
     private void swapRows(int index1, int index2) {
-        Vector temp = rowVectors[index1];
-        rowVectors[index1] = rowVectors[index2];
-        rowVectors[index2] = temp;
+        if(index1 == index2) {
+            return;
+        }
+
+        int offset1 = index1 * stride;
+        int offset2 = index2 * stride;
+
+        for(int i = 0; i < width; i++) {
+            double temp = entries[offset1 + i];
+            entries[offset1 + i] = entries[offset2 + i];
+            entries[offset2 + i] = temp;
+        }
+    }
+
+    /*
+     * Returns the number of entries in a width by height matrix, throwing if
+     * they can't all be held in one array.
+     */
+    private static int entryCount(int width, int height) {
+        if((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix is too large!");
+        }
+
+        return width * height;
     }
 
     /*
      * Multiplies each entry in the row by the constant.
      */
     private void multRow(int index, double c) {
-        for(int i = 0; i < width; i++) {
-            this.setEntry(i, index, this.getEntry(i, index) * c);
-        }
+        ElementwiseKernels.INSTANCE.scale(c, entries, index * stride, width);
     }
 
     /*
      * Adds row 1 to row 2.
      */
     private void addRow(int index1, int index2) {
+        int offset1 = index1 * stride;
+        int offset2 = index2 * stride;
+
         for(int i = 0; i < width; i++) {
-            this.setEntry(i, index2, this.getEntry(i, index2) + this.getEntry(i ,index1));
+            entries[offset2 + i] += entries[offset1 + i];
         }
     }
 
@@ -588,8 +1389,24 @@ public class Matrix {
      * Subtracts row 1 from row 2.
      */
     private void subRow(int index1, int index2) {
+        int offset1 = index1 * stride;
+        int offset2 = index2 * stride;
+
         for(int i = 0; i < width; i++) {
-            this.setEntry(i, index2, this.getEntry(i, index2) - this.getEntry(i, index1));
+            entries[offset2 + i] -= entries[offset1 + i];
+        }
+    }
+
+    /*
+     * Sets every entry to the value provided.
+     */
+    private void fill(double value) {
+        for(int j = 0; j < height; j++) {
+            int offset = j * stride;
+
+            for(int i = 0; i < width; i++) {
+                entries[offset + i] = value;
+            }
         }
     }
 
@@ -598,13 +1415,176 @@ public class Matrix {
      */
     private Matrix cloneMatrix() {
         Matrix toReturn = new Matrix(this.label, this.width, this.height);
+        getTile(0, 0, height, width, toReturn.entries);
+
+        return toReturn;
+    }
+
+    /*
+     * Copies a rows by cols block starting at (x, y) into dest, packed with a
+     * stride of cols. Works for either kind of storage.
+     */
+    private void getTile(int y, int x, int rows, int cols, double[] dest) {
+        for(int r = 0; r < rows; r++) {
+            if(offHeap != null) {
+                offHeap.getRow(y + r, x, dest, r * cols, cols);
+            }
+            else {
+                System.arraycopy(entries, (y + r) * stride + x, dest, r * cols, cols);
+            }
+        }
+    }
 
-        for(int i = 0; i < this.width; i++) {
-            for(int j = 0; j < this.height; j++) {
-                toReturn.setEntry(i, j, this.getEntry(i, j));
+    /*
+     * Copies a rows by cols block packed with a stride of cols into this
+     * matrix, starting at (x, y). Works for either kind of storage.
+     */
+    private void putTile(int y, int x, int rows, int cols, double[] src) {
+        for(int r = 0; r < rows; r++) {
+            if(offHeap != null) {
+                offHeap.putRow(y + r, x, src, r * cols, cols);
+            }
+            else {
+                System.arraycopy(src, r * cols, entries, (y + r) * stride + x, cols);
             }
         }
+    }
 
-        return toReturn;
+    /*
+     * Returns the calling thread's scratch array in the slot provided, with
+     * room for at least size entries.
+     */
+    private static double[] scratch(int slot, int size) {
+        double[][] arrays = SCRATCH.get();
+        if(arrays[slot].length < size) {
+            arrays[slot] = new double[size];
+        }
+
+        return arrays[slot];
+    }
+
+    /*
+     * Computes dest = a + sign * b one TILE by TILE block at a time, for when
+     * any of the matrices is off-heap.
+     */
+    private static void addScaledTiles(Matrix a, Matrix b, double sign, Matrix dest) {
+        for(int y = 0; y < a.height; y += TILE) {
+            int rows = Math.min(TILE, a.height - y);
+
+            for(int x = 0; x < a.width; x += TILE) {
+                int cols = Math.min(TILE, a.width - x);
+                double[] tileA = scratch(0, rows * cols);
+                double[] tileB = scratch(1, rows * cols);
+
+                a.getTile(y, x, rows, cols, tileA);
+                b.getTile(y, x, rows, cols, tileB);
+
+                for(int i = 0; i < rows * cols; i++) {
+                    tileA[i] += sign * tileB[i];
+                }
+
+                dest.putTile(y, x, rows, cols, tileA);
+            }
+        }
+    }
+
+    /*
+     * Computes dest = ab one TILE by TILE block of dest at a time, for when any
+     * of the matrices is off-heap. Tiles of off-heap matrices are copied
+     * through scratch arrays; heap matrices are read and written in place.
+     */
+    private static void multiplyTiled(Matrix a, Matrix b, Matrix dest) {
+        int m = a.height;
+        int n = b.width;
+        int k = a.width;
+
+        // Each scratch array only needs to be as large as the biggest tile
+        int mt = Math.min(TILE, m);
+        int nt = Math.min(TILE, n);
+        int kt = Math.min(TILE, k);
+
+        double[] aTile = a.offHeap != null ? scratch(0, mt * kt) : null;
+        double[] bTile = b.offHeap != null ? scratch(1, kt * nt) : null;
+        double[] cTile = dest.offHeap != null ? scratch(2, mt * nt) : null;
+
+        for(int ic = 0; ic < m; ic += TILE) {
+            int mc = Math.min(TILE, m - ic);
+
+            for(int jc = 0; jc < n; jc += TILE) {
+                int nc = Math.min(TILE, n - jc);
+
+                double[] c = dest.entries;
+                int cOff = ic * dest.stride + jc;
+                int ldc = dest.stride;
+
+                if(cTile != null) {
+                    Arrays.fill(cTile, 0, mc * nc, 0);
+                    c = cTile;
+                    cOff = 0;
+                    ldc = nc;
+                }
+                else {
+                    for(int r = 0; r < mc; r++) {
+                        Arrays.fill(c, cOff + r * ldc, cOff + r * ldc + nc, 0);
+                    }
+                }
+
+                for(int pc = 0; pc < k; pc += TILE) {
+                    int kc = Math.min(TILE, k - pc);
+
+                    double[] aBlock = a.entries;
+                    int aOff = ic * a.stride + pc;
+                    int lda = a.stride;
+                    if(aTile != null) {
+                        a.getTile(ic, pc, mc, kc, aTile);
+                        aBlock = aTile;
+                        aOff = 0;
+                        lda = kc;
+                    }
+
+                    double[] bBlock = b.entries;
+                    int bOff = pc * b.stride + jc;
+                    int ldb = b.stride;
+                    if(bTile != null) {
+                        b.getTile(pc, jc, kc, nc, bTile);
+                        bBlock = bTile;
+                        bOff = 0;
+                        ldb = nc;
+                    }
+
+                    Gemm.multiply(mc, nc, kc, aBlock, aOff, lda, bBlock, bOff, ldb, c, cOff, ldc);
+                }
+
+                if(cTile != null) {
+                    dest.putTile(ic, jc, mc, nc, cTile);
+                }
+            }
+        }
+    }
+
+    /*
+     * Stores the transpose of m in dest one TILE by TILE block at a time, for
+     * when either matrix is off-heap.
+     */
+    private static void transposeTiled(Matrix m, Matrix dest) {
+        int size = Math.min(TILE, m.height) * Math.min(TILE, m.width);
+        double[] tile = scratch(0, size);
+        double[] transposed = scratch(1, size);
+
+        for(int y = 0; y < m.height; y += TILE) {
+            int rows = Math.min(TILE, m.height - y);
+
+            for(int x = 0; x < m.width; x += TILE) {
+                int cols = Math.min(TILE, m.width - x);
+
+                m.getTile(y, x, rows, cols, tile);
+                for(int r = 0; r < rows; r++) {
+                    for(int c = 0; c < cols; c++) {
+                        transposed[c * rows + r] = tile[r * cols + c];
+                    }
+                }
+                dest.putTile(x, y, cols, rows, transposed);
+            }
+        }
     }
 }
@@ -5,17 +5,61 @@
  * Date created: Feb 8 2018
  *
  * Stores and keeps track of the users variables.
+ *
+ * Each session gets its own instance, and an instance can be shared by any
+ * number of threads. Variables live in a ConcurrentHashMap, so reads never
+ * lock and writes to different labels rarely contend. store, replace and
+ * free are each atomic: two threads storing the same label can't both
+ * succeed, and a reader sees either the old variable or the new one.
+ *
+ * Only the index is thread-safe. The matrices and vectors themselves are
+ * not, so a variable that several threads modify should be replaced with
+ * a new object rather than changed in place.
+ *
+ * A memory can also be given a budget in bytes. Once the matrices and
+ * vectors it holds add up to more than that, the least recently used ones
+ * are written out to a spill file and dropped from the heap, and
+ * retrieveMatrix/retrieveVector page them back in when they are next
+ * asked for. A bounded memory serializes every operation on one lock, and
+ * since a spilled variable comes back as a new object, changes made in
+ * place to an old copy are lost; replace the variable instead.
 */
 
-import java.util.ArrayList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class Memory {
+public class Memory implements Closeable {
+
+    /*
+     * Every variable, indexed by its label. The entry records the variable's
+     * type alongside its data, so a single lookup answers every query.
+     * Entries are never modified once published; replace swaps in a new one.
+     * The exception is a bounded memory, which moves the data of its entries
+     * to and from the spill file while holding the lock.
+     */
+    private final ConcurrentHashMap<String, TypedEntry> entries = new ConcurrentHashMap<>();
 
-    private static ArrayList<MemoryEntry<EntryType>> identifiers = new ArrayList<>();
+    /*
+     * The most the resident matrices and vectors may add up to, in bytes, and
+     * the file the rest are paged out to. spill is null if there is no budget.
+     */
+    private final long budget;
+    private final SpillFile spill;
 
-    private static ArrayList<MemoryEntry<Matrix>> matrices = new ArrayList<>();
-    private static ArrayList<MemoryEntry<Vector>> vectors = new ArrayList<>();
-    private static ArrayList<MemoryEntry<Double>> constants = new ArrayList<>();
+    /*
+     * The resident matrices and vectors of a bounded memory in access order,
+     * least recently used first, and their total size. Also the lock for
+     * every operation on a bounded memory.
+     */
+    private final LinkedHashMap<String, TypedEntry> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
 
     /*
      * The different types of entries allowed. Used for variable retrieval.
@@ -27,38 +71,104 @@ public class Memory {
         NULL
     }
 
+    /*
+     * A memory entry tagged with the type of its data.
+     */
+    private static class TypedEntry extends MemoryEntry<Object> {
+
+        private final EntryType type;
+
+        /*
+         * The size of the matrix or vector's entries in bytes, 0 for anything
+         * that is never spilled. Off-heap matrices don't count against the
+         * budget, so they stay where they are.
+         */
+        private final long size;
+
+        /*
+         * Where the data is in the spill file while it is paged out, or -1,
+         * and how many bytes it takes up there.
+         */
+        private long position = -1;
+        private long length;
+
+        TypedEntry(String label, EntryType type, Object data) {
+            super(label, data);
+            this.type = type;
+
+            if(data instanceof Matrix && !((Matrix) data).isOffHeap()) {
+                this.size = 8L * ((Matrix) data).getWidth() * ((Matrix) data).getHeight();
+            }
+            else if(data instanceof Vector) {
+                this.size = 8L * ((Vector) data).getSize();
+            }
+            else {
+                this.size = 0;
+            }
+        }
+
+        boolean isSpilled() {
+            return position != -1;
+        }
+    }
+
+    /**
+     * Creates an empty memory with no size limit.
+     */
+    public Memory() {
+        this.budget = Long.MAX_VALUE;
+        this.spill = null;
+    }
+
+    /**
+     * Creates an empty memory that keeps at most the number of bytes provided
+     * of matrices and vectors on the heap, spilling the rest to a file in
+     * the system's temporary directory. A single variable larger than the
+     * budget stays resident while it is the most recently used.
+     * @param budget The most bytes of matrices and vectors to keep resident.
+     * @throws IllegalArgumentException if the budget is negative.
+     * @throws IOException if the spill file can't be created.
+     */
+    public Memory(long budget) throws IllegalArgumentException, IOException {
+        this(budget, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates an empty memory that keeps at most the number of bytes provided
+     * of matrices and vectors on the heap, spilling the rest to a file in
+     * the directory provided.
+     * @param budget The most bytes of matrices and vectors to keep resident.
+     * @param directory The directory to create the spill file in.
+     * @throws IllegalArgumentException if the budget is negative.
+     * @throws IOException if the spill file can't be created.
+     */
+    public Memory(long budget, Path directory) throws IllegalArgumentException, IOException {
+        if(budget < 0) {
+            throw new IllegalArgumentException("Budget cannot be negative!");
+        }
+
+        this.budget = budget;
+        this.spill = new SpillFile(directory);
+    }
+
     /**
      * Stores the provided Matrix in memory with the provided identifier.
      * @param label The identifier for the Matrix.
      * @param data  The Matrix.
      * @throws IllegalArgumentException if the identifier provided is already taken.
      */
-    public static void store(String label, Matrix data) throws IllegalArgumentException {
-        for(MemoryEntry<EntryType> entry : identifiers) {
-            if(label.equals(entry.getLabel())) {
-                throw new IllegalArgumentException("Identifier name taken!");
-            }
-        }
-
-        identifiers.add(new MemoryEntry<EntryType>(label, EntryType.MATRIX));
-        matrices.add(new MemoryEntry<Matrix>(label, data));
+    public void store(String label, Matrix data) throws IllegalArgumentException {
+        put(label, EntryType.MATRIX, data);
     }
 
-     /**
+    /**
      * Stores the provided Vector in memory with the provided identifier.
      * @param label The identifier for the Vector.
      * @param data  The Vector.
      * @throws IllegalArgumentException if the identifier provided is already taken.
      */
-   public static void store(String label, Vector data) throws IllegalArgumentException {
-        for(MemoryEntry<EntryType> entry : identifiers) {
-            if(label.equals(entry.getLabel())) {
-                throw new IllegalArgumentException("Identifier name taken!");
-            }
-        }
-
-        identifiers.add(new MemoryEntry<EntryType>(label, EntryType.VECTOR));
-        vectors.add(new MemoryEntry<Vector>(label, data));
+    public void store(String label, Vector data) throws IllegalArgumentException {
+        put(label, EntryType.VECTOR, data);
     }
 
     /**
@@ -67,15 +177,41 @@ public class Memory {
      * @param data  The constant.
      * @throws IllegalArgumentException if the identifier provided is already taken.
      */
-    public static void store(String label, Double data) throws IllegalArgumentException {
-        for(MemoryEntry<EntryType> entry : identifiers) {
-            if(label.equals(entry.getLabel())) {
-                throw new IllegalArgumentException("Identifier name taken!");
-            }
-        }
+    public void store(String label, Double data) throws IllegalArgumentException {
+        put(label, EntryType.CONSTANT, data);
+    }
+
+    /**
+     * Replaces the variable with the provided identifier with a Matrix. The
+     * old variable may be of any type.
+     * @param label The identifier of the variable to replace.
+     * @param data  The new Matrix.
+     * @throws IllegalArgumentException if there is no variable with that identifier.
+     */
+    public void replace(String label, Matrix data) throws IllegalArgumentException {
+        swap(label, EntryType.MATRIX, data);
+    }
+
+    /**
+     * Replaces the variable with the provided identifier with a Vector. The
+     * old variable may be of any type.
+     * @param label The identifier of the variable to replace.
+     * @param data  The new Vector.
+     * @throws IllegalArgumentException if there is no variable with that identifier.
+     */
+    public void replace(String label, Vector data) throws IllegalArgumentException {
+        swap(label, EntryType.VECTOR, data);
+    }
 
-        identifiers.add(new MemoryEntry<EntryType>(label, EntryType.CONSTANT));
-        constants.add(new MemoryEntry<Double>(label, data));
+    /**
+     * Replaces the variable with the provided identifier with a constant. The
+     * old variable may be of any type.
+     * @param label The identifier of the variable to replace.
+     * @param data  The new constant.
+     * @throws IllegalArgumentException if there is no variable with that identifier.
+     */
+    public void replace(String label, Double data) throws IllegalArgumentException {
+        swap(label, EntryType.CONSTANT, data);
     }
 
     /**
@@ -83,110 +219,303 @@ public class Memory {
      * @param label The identifier of the variable to search for.
      * @return The entry type of the variable. NULL if the variable does not exist.
      */
-    public static EntryType retrieveType(String label) {
-        for(MemoryEntry<EntryType> entry : identifiers) {
-            if(entry.getLabel() == label) {
-                return entry.getData();
-            }
+    public EntryType retrieveType(String label) {
+        TypedEntry entry = entries.get(label);
+
+        return entry == null ? EntryType.NULL : entry.type;
+    }
+
+    /**
+     * Gets the Matrix stored with the provided label, paging it back in if it
+     * was spilled.
+     * @param label The identifier of the Matrix.
+     * @return The Matrix. Null if there is no Matrix with that label.
+     * @throws UncheckedIOException if the spill file can't be read or written.
+     */
+    public Matrix retrieveMatrix(String label) {
+        return (Matrix) retrieve(label, EntryType.MATRIX);
+    }
+
+    /**
+     * Gets the Vector stored with the provided label, paging it back in if it
+     * was spilled.
+     * @param label The identifier of the Vector.
+     * @return The Vector. Null if there is no Vector with that label.
+     * @throws UncheckedIOException if the spill file can't be read or written.
+     */
+    public Vector retrieveVector(String label) {
+        return (Vector) retrieve(label, EntryType.VECTOR);
+    }
+
+    /**
+     * Gets the constant stored with the provided label.
+     * @param label The identifier of the constant.
+     * @return The constant. 0 if there is no constant with that label.
+     */
+    public double retrieveConstant(String label) {
+        Double data = (Double) retrieve(label, EntryType.CONSTANT);
+
+        return data == null ? 0 : data;
+    }
+
+    /**
+     * Removes the variable with the provided label from memory, if there is one.
+     * @param label The identifier of the variable to remove.
+     * @return Whether or not there was a variable to remove.
+     */
+    public boolean free(String label) {
+        if(spill == null) {
+            return entries.remove(label) != null;
+        }
+
+        synchronized(resident) {
+            TypedEntry old = entries.remove(label);
+            discard(old);
+            return old != null;
         }
-        return EntryType.NULL;
     }
 
-    public static Matrix retrieveMatrix(String label) {
-        for(MemoryEntry<Matrix> entry : matrices) {
-            if(entry.getLabel() == label) {
-                return entry.getData();
-            }
+    /**
+     * Gets the number of variables in memory.
+     * @return The number of variables.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of bytes of matrices and vectors held on the heap. For
+     * a bounded memory this is at most the budget, unless the most recently
+     * used variable is larger than the budget on its own.
+     * @return The resident size in bytes. Always 0 for an unbounded memory.
+     */
+    public long getResidentBytes() {
+        if(spill == null) {
+            return 0;
         }
 
-        return null;
+        synchronized(resident) {
+            return residentBytes;
+        }
     }
 
-    public static Vector retrieveVector(String label) {
-        for(MemoryEntry<Vector> entry : vectors) {
-            if(entry.getLabel() == label) {
-                return entry.getData();
-            }
+    /**
+     * Frees every variable and deletes the spill file, if there is one. A
+     * bounded memory can't be used once it is closed.
+     * @throws IOException if the spill file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if(spill == null) {
+            entries.clear();
+            return;
         }
 
-        return null;
+        synchronized(resident) {
+            entries.clear();
+            resident.clear();
+            residentBytes = 0;
+            spill.close();
+        }
     }
 
-    public static double retrieveConstant(String label) {
-        for(MemoryEntry<Double> entry : constants) {
-            if(entry.getLabel() == label) {
-                return entry.getData();
+/****************************************************************/
+/*                          Snapshots                           */
+/****************************************************************/
+
+    /**
+     * Writes every variable to a binary snapshot file, replacing the file if
+     * it exists. Variables stored or freed by other threads while the
+     * snapshot is being taken may or may not be included.
+     * @param file The file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public void snapshot(Path file) throws IOException {
+        Map<String, Object> variables = new LinkedHashMap<>();
+
+        if(spill == null) {
+            for(TypedEntry entry : entries.values()) {
+                variables.put(entry.getLabel(), entry.getData());
             }
+
+            MemorySnapshot.write(file, variables);
+            return;
         }
 
-        return 0;
-    }
-
-    public static void free(String label) {
-        MemoryEntry<EntryType> toRemove = null;
-
-        for(MemoryEntry<EntryType> entry : identifiers) {
-            if(label.equals(entry.getLabel())) {
-                switch(entry.getData()) {
-                    case MATRIX:
-                        freeMatrix(label);
-                        toRemove = entry;
-                        break;
-                    case VECTOR:
-                        freeVector(label);
-                        toRemove = entry;
-                        break;
-                    case CONSTANT:
-                        freeConstant(label);
-                        toRemove = entry;
-                        break;
-                }
+        // Spilled variables are read back for the snapshot without being
+        // paged in, so the snapshot doesn't disturb what is resident
+        synchronized(resident) {
+            for(TypedEntry entry : entries.values()) {
+                Object data = entry.isSpilled() ? spill.read(entry.position, entry.type == EntryType.MATRIX)
+                                                : entry.getData();
+                variables.put(entry.getLabel(), data);
             }
-        }
 
-        if(toRemove != null) {
-            System.out.println("Identifier removed: " + toRemove.getLabel());
-            identifiers.remove(toRemove);
+            MemorySnapshot.write(file, variables);
         }
     }
 
+    /**
+     * Creates a new memory holding the variables in a snapshot file written
+     * by {@link #snapshot(Path)}.
+     * @param file The file to read.
+     * @return The restored memory.
+     * @throws IOException if the file can't be read or is not a valid snapshot.
+     */
+    public static Memory restore(Path file) throws IOException {
+        Memory toReturn = new Memory();
+        MemorySnapshot.read(file, toReturn);
+
+        return toReturn;
+    }
+
 /****************************************************************/
 /*                        Helper methods                        */
 /****************************************************************/
 
-    private static void freeMatrix(String label) {
-        MemoryEntry<Matrix> toRemove = null;
-        for(MemoryEntry<Matrix> mat : matrices) {
-            if(mat.getLabel() == label) {
-                toRemove = mat;
-                break;
+    /*
+     * Adds a new entry, refusing to overwrite an existing one.
+     */
+    private void put(String label, EntryType type, Object data) throws IllegalArgumentException {
+        TypedEntry entry = new TypedEntry(label, type, data);
+
+        if(spill == null) {
+            if(entries.putIfAbsent(label, entry) != null) {
+                throw new IllegalArgumentException("Identifier name taken!");
             }
+            return;
         }
 
-        matrices.remove(toRemove);
+        synchronized(resident) {
+            if(entries.putIfAbsent(label, entry) != null) {
+                throw new IllegalArgumentException("Identifier name taken!");
+            }
+            admit(entry);
+        }
     }
 
-    private static void freeVector(String label) {
-        MemoryEntry<Vector> toRemove = null;
-        for(MemoryEntry<Vector> vec : vectors) {
-            if(vec.getLabel() == label) {
-                toRemove = vec;
-                break;
+    /*
+     * Replaces an existing entry, refusing to create a new one.
+     */
+    private void swap(String label, EntryType type, Object data) throws IllegalArgumentException {
+        TypedEntry entry = new TypedEntry(label, type, data);
+
+        if(spill == null) {
+            if(entries.replace(label, entry) == null) {
+                throw new IllegalArgumentException("No such identifier!");
             }
+            return;
         }
 
-        vectors.remove(toRemove);
+        synchronized(resident) {
+            TypedEntry old = entries.replace(label, entry);
+            if(old == null) {
+                throw new IllegalArgumentException("No such identifier!");
+            }
+            discard(old);
+            admit(entry);
+        }
     }
 
-    private static void freeConstant(String label) {
-        MemoryEntry<Double> toRemove = null;
-        for(MemoryEntry<Double> con : constants) {
-            if(con.getLabel() == label) {
-                toRemove = con;
-                break;
+    /*
+     * Returns the data stored with the label if it has the type provided,
+     * otherwise null.
+     */
+    private Object retrieve(String label, EntryType type) {
+        if(spill == null) {
+            TypedEntry entry = entries.get(label);
+
+            return entry != null && entry.type == type ? entry.getData() : null;
+        }
+
+        synchronized(resident) {
+            TypedEntry entry = entries.get(label);
+            if(entry == null || entry.type != type) {
+                return null;
             }
+
+            if(entry.isSpilled()) {
+                pageIn(entry);
+            }
+            else if(entry.size > 0) {
+                // Marks the entry as most recently used
+                resident.get(label);
+            }
+
+            return entry.getData();
+        }
+    }
+
+    /*
+     * Starts tracking a newly stored resident entry, spilling others if that
+     * puts the memory over budget. Must hold the lock.
+     */
+    private void admit(TypedEntry entry) {
+        if(entry.size == 0) {
+            return;
+        }
+
+        resident.put(entry.getLabel(), entry);
+        residentBytes += entry.size;
+        evict();
+    }
+
+    /*
+     * Stops tracking an entry that has been freed or replaced, releasing its
+     * space in the spill file if it has any. Must hold the lock.
+     */
+    private void discard(TypedEntry entry) {
+        if(entry == null || entry.size == 0) {
+            return;
         }
 
-        constants.remove(toRemove);
+        if(entry.isSpilled()) {
+            spill.release(entry.position, entry.length);
+        }
+        else {
+            resident.remove(entry.getLabel());
+            residentBytes -= entry.size;
+        }
+    }
+
+    /*
+     * Reads a spilled entry's data back in and makes it the most recently
+     * used. Must hold the lock.
+     */
+    private void pageIn(TypedEntry entry) {
+        try {
+            entry.setData(spill.read(entry.position, entry.type == EntryType.MATRIX));
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        spill.release(entry.position, entry.length);
+        entry.position = -1;
+        admit(entry);
+    }
+
+    /*
+     * Spills the least recently used entries until the memory is within its
+     * budget, never spilling the most recently used one. Must hold the lock.
+     */
+    private void evict() {
+        Iterator<TypedEntry> it = resident.values().iterator();
+
+        while(residentBytes > budget && resident.size() > 1) {
+            TypedEntry victim = it.next();
+
+            try {
+                victim.length = SpillFile.sizeOf(victim.getData());
+                victim.position = spill.write(victim.getData());
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            victim.setData(null);
+            it.remove();
+            residentBytes -= victim.size;
+        }
     }
 }
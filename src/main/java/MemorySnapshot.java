@@ -0,0 +1,265 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Writes the variables of a {@link Memory} to a compact binary file and
+ * reads them back. The file is little-endian and laid out as:
+ * <pre>
+ *     int    magic ("MUMS")
+ *     int    version
+ *     int    number of entries
+ *     int    reserved (0)
+ *     then for each entry:
+ *         byte   type (0 = constant, 1 = vector, 2 = matrix)
+ *         int    identifier length in bytes
+ *         byte[] identifier, UTF-8
+ *         constant:          double value
+ *         vector and matrix: padding to 8 bytes, then a {@link BinaryFormat}
+ *                            record
+ * </pre>
+ *
+ * Headers go through small heap buffers, but the doubles of each vector and
+ * matrix are copied in bulk between their backing arrays and a memory
+ * mapping of the file, so large payloads never pass through per-element
+ * code or an intermediate buffer.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+final class MemorySnapshot {
+
+    private static final int MAGIC = 0x534D554D;
+
+    /*
+     * Version 2 stores vectors and matrices as BinaryFormat records.
+     */
+    private static final int VERSION = 2;
+
+    private static final byte CONSTANT = 0;
+    private static final byte VECTOR = 1;
+    private static final byte MATRIX = 2;
+
+    /*
+     * The largest region mapped at once. A single mapping is limited to 2 GB,
+     * so larger payloads are copied through several.
+     */
+    private static final long MAP_CHUNK = 1L << 30;
+
+    private MemorySnapshot() {
+    }
+
+    /*
+     * Writes the variables provided, a map from identifier to Matrix, Vector
+     * or Double, to the file, replacing anything already there.
+     */
+    static void write(Path file, Map<String, Object> variables) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(variables.size());
+            header.putInt(0);
+            header.flip();
+            BinaryFormat.writeFully(channel, header);
+
+            for(Map.Entry<String, Object> variable : variables.entrySet()) {
+                writeEntry(channel, variable.getKey(), variable.getValue());
+            }
+
+            // Closing doesn't flush the page cache to disk
+            channel.force(true);
+        }
+    }
+
+    /*
+     * Reads every variable in the file into the memory provided.
+     */
+    static void read(Path file, Memory memory) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 16);
+            if(header.getInt() != MAGIC) {
+                throw new IOException("Not a memory snapshot!");
+            }
+
+            int version = header.getInt();
+            if(version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + "!");
+            }
+
+            int count = header.getInt();
+
+            for(int i = 0; i < count; i++) {
+                try {
+                    readEntry(channel, memory);
+                }
+                catch(IllegalArgumentException e) {
+                    // A snapshot never holds an identifier twice
+                    throw new IOException("Snapshot is corrupt!", e);
+                }
+            }
+        }
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Writes one entry at the channel's position.
+     */
+    private static void writeEntry(FileChannel channel, String identifier, Object data) throws IOException {
+        byte[] key = BinaryFormat.bytesOf(identifier);
+
+        // Room for the value of a constant, or the padding before a record
+        ByteBuffer header = ByteBuffer.allocate(1 + 4 + key.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+
+        if(data instanceof Double) {
+            header.put(CONSTANT);
+            header.putInt(key.length);
+            header.put(key);
+            header.putDouble((Double) data);
+            header.flip();
+            BinaryFormat.writeFully(channel, header);
+            return;
+        }
+
+        byte type;
+        ByteBuffer record;
+        BinaryFormat.EntrySource entries;
+        int length;
+
+        if(data instanceof Vector) {
+            Vector v = (Vector) data;
+            type = VECTOR;
+            record = BinaryFormat.vectorHeader(v.getLabel(), v.getSize());
+            entries = BinaryFormat.entriesOf(v);
+            length = v.getSize();
+        }
+        else if(data instanceof Matrix) {
+            Matrix m = (Matrix) data;
+            type = MATRIX;
+            record = BinaryFormat.matrixHeader(m.getLabel(), m.getHeight(), m.getWidth());
+            entries = m::copyTo;
+            length = m.getWidth() * m.getHeight();
+        }
+        else {
+            throw new IllegalArgumentException("Cannot snapshot a " + data.getClass().getSimpleName() + "!");
+        }
+
+        header.put(type);
+        header.putInt(key.length);
+        header.put(key);
+
+        // The record starts on an 8 byte boundary so its entries do too
+        header.position(header.position() + BinaryFormat.padding(channel.position() + header.position()));
+        header.flip();
+        BinaryFormat.writeFully(channel, header);
+        BinaryFormat.writeFully(channel, record);
+
+        channel.position(copyToFile(channel, entries, length, channel.position()));
+    }
+
+    /*
+     * Reads one entry at the channel's position into memory.
+     */
+    private static void readEntry(FileChannel channel, Memory memory) throws IOException {
+        ByteBuffer fixed = read(channel, 5);
+        byte type = fixed.get();
+        int keyLength = fixed.getInt();
+
+        if(keyLength < 0 || channel.position() + keyLength > channel.size()) {
+            throw new IOException("Snapshot is corrupt!");
+        }
+
+        byte[] key = new byte[keyLength];
+        read(channel, keyLength).get(key);
+        String identifier = new String(key, StandardCharsets.UTF_8);
+
+        if(type == CONSTANT) {
+            memory.store(identifier, read(channel, 8).getDouble());
+            return;
+        }
+        if(type != VECTOR && type != MATRIX) {
+            throw new IOException("Unknown entry type " + type + "!");
+        }
+
+        channel.position(channel.position() + BinaryFormat.padding(channel.position()));
+        BinaryFormat.Header header = BinaryFormat.checkArraySize(type == VECTOR ? BinaryFormat.readVectorHeader(channel)
+                                                                                 : BinaryFormat.readMatrixHeader(channel));
+
+        double[] entries = new double[header.height * header.width];
+        channel.position(copyFromFile(channel, entries, channel.position()));
+
+        if(type == VECTOR) {
+            memory.store(identifier, Vector.wrap(header.label, entries));
+        }
+        else {
+            memory.store(identifier, Matrix.wrap(header.label, header.width, header.height, entries));
+        }
+    }
+
+    /*
+     * Copies the entries into the file at position through memory mappings
+     * and returns the position after them.
+     */
+    private static long copyToFile(FileChannel channel, BinaryFormat.EntrySource entries, int length, long position) throws IOException {
+        int offset = 0;
+
+        while(offset < length) {
+            int count = (int) Math.min(length - offset, MAP_CHUNK / 8);
+
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, position, 8L * count);
+            entries.copyTo(offset, map.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer(), count);
+            map.force();
+
+            offset += count;
+            position += 8L * count;
+        }
+
+        return position;
+    }
+
+    /*
+     * Fills the array from the file at position through memory mappings and
+     * returns the position after it.
+     */
+    private static long copyFromFile(FileChannel channel, double[] entries, long position) throws IOException {
+        if(position + 8L * entries.length > channel.size()) {
+            throw new IOException("Snapshot is truncated!");
+        }
+
+        int offset = 0;
+
+        while(offset < entries.length) {
+            int count = (int) Math.min(entries.length - offset, MAP_CHUNK / 8);
+
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * count);
+            map.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(entries, offset, count);
+
+            offset += count;
+            position += 8L * count;
+        }
+
+        return position;
+    }
+
+    /*
+     * Reads length bytes at the channel's position.
+     */
+    private static ByteBuffer read(FileChannel channel, int length) throws IOException {
+        ByteBuffer toReturn = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryFormat.readFully(channel, toReturn);
+        toReturn.flip();
+
+        return toReturn;
+    }
+}
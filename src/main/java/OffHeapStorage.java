@@ -0,0 +1,189 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Row-major storage for the entries of an off-heap {@link Matrix} or a
+ * {@link MappedMatrix}, kept in direct or memory-mapped byte buffers
+ * outside the garbage collected heap. A single buffer holds at most 2 GB,
+ * so larger matrices are split into chunks of whole rows; a row never
+ * straddles two chunks, which keeps row copies to a single bulk transfer.
+ *
+ * Freeing the memory (or unmapping the file) explicitly relies on
+ * sun.misc.Unsafe.invokeCleaner, which is available from Java 9. On older
+ * runtimes close only detaches the buffers and the memory is returned once
+ * they are garbage collected.
+ * Either way the storage must not be used, by any thread, once it has been
+ * closed.
+ */
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+final class OffHeapStorage {
+
+    /*
+     * The most doubles that fit in one buffer.
+     */
+    private static final int MAX_CHUNK = Integer.MAX_VALUE / 8;
+
+    /*
+     * Unsafe and its invokeCleaner method, or null if the runtime doesn't
+     * have them.
+     */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            unsafe = field.get(null);
+        }
+        catch(ReflectiveOperationException | RuntimeException e) {
+            // Leave freeing to the garbage collector
+            invokeCleaner = null;
+        }
+
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private ByteBuffer[] buffers;
+    private DoubleBuffer[] chunks;
+    private final int rowsPerChunk;
+    private final int width;
+
+    /*
+     * Allocates zeroed storage for a width by height matrix.
+     */
+    OffHeapStorage(int width, int height) {
+        this.width = width;
+        this.rowsPerChunk = Math.max(1, MAX_CHUNK / width);
+
+        int count = (height + rowsPerChunk - 1) / rowsPerChunk;
+        this.buffers = new ByteBuffer[count];
+        this.chunks = new DoubleBuffer[count];
+
+        for(int i = 0; i < count; i++) {
+            int rows = Math.min(rowsPerChunk, height - i * rowsPerChunk);
+
+            buffers[i] = ByteBuffer.allocateDirect(8 * rows * width).order(ByteOrder.nativeOrder());
+            chunks[i] = buffers[i].asDoubleBuffer();
+        }
+    }
+
+    /*
+     * Maps the entries of a width by height matrix stored row-major and
+     * little-endian in the file, starting at the position provided. The file
+     * is extended if it is too short.
+     */
+    OffHeapStorage(FileChannel channel, long position, int width, int height) throws IOException {
+        this.width = width;
+        this.rowsPerChunk = Math.max(1, MAX_CHUNK / width);
+
+        int count = (height + rowsPerChunk - 1) / rowsPerChunk;
+        this.buffers = new ByteBuffer[count];
+        this.chunks = new DoubleBuffer[count];
+
+        for(int i = 0; i < count; i++) {
+            int rows = Math.min(rowsPerChunk, height - i * rowsPerChunk);
+            long offset = position + 8L * i * rowsPerChunk * width;
+
+            buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, 8L * rows * width)
+                                .order(ByteOrder.LITTLE_ENDIAN);
+            chunks[i] = buffers[i].asDoubleBuffer();
+        }
+    }
+
+    double get(int x, int y) {
+        return chunk(y).get((y % rowsPerChunk) * width + x);
+    }
+
+    void set(int x, int y, double value) {
+        chunk(y).put((y % rowsPerChunk) * width + x, value);
+    }
+
+    /*
+     * Copies length entries of row y, starting at column x, into dest.
+     */
+    void getRow(int y, int x, double[] dest, int destOff, int length) {
+        DoubleBuffer view = chunk(y).duplicate();
+        view.position((y % rowsPerChunk) * width + x);
+        view.get(dest, destOff, length);
+    }
+
+    /*
+     * Copies length entries from src into row y, starting at column x.
+     */
+    void putRow(int y, int x, double[] src, int srcOff, int length) {
+        DoubleBuffer view = chunk(y).duplicate();
+        view.position((y % rowsPerChunk) * width + x);
+        view.put(src, srcOff, length);
+    }
+
+    /*
+     * Copies count entries, in row-major order starting from the index
+     * provided, into dest.
+     */
+    void copyTo(int index, DoubleBuffer dest, int count) {
+        while(count > 0) {
+            int y = index / width;
+            int offset = (y % rowsPerChunk) * width + index % width;
+
+            DoubleBuffer view = chunk(y).duplicate();
+            int n = Math.min(count, view.capacity() - offset);
+            view.position(offset).limit(offset + n);
+            dest.put(view);
+
+            index += n;
+            count -= n;
+        }
+    }
+
+    /*
+     * Releases the memory. Does nothing if it has already been released.
+     */
+    void close() {
+        if(chunks == null) {
+            return;
+        }
+
+        ByteBuffer[] toFree = buffers;
+        chunks = null;
+        buffers = null;
+
+        if(INVOKE_CLEANER != null) {
+            for(ByteBuffer buffer : toFree) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                }
+                catch(ReflectiveOperationException e) {
+                    // The garbage collector will get to it instead
+                }
+            }
+        }
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    private DoubleBuffer chunk(int y) {
+        if(chunks == null) {
+            throw new IllegalStateException("Matrix has been closed!");
+        }
+
+        return chunks[y / rowsPerChunk];
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Fork/join versions of the dense matrix kernels. Each operation recursively
+ * splits its output into disjoint blocks until a block is small enough to be
+ * worth computing on a single thread, so no two tasks ever write to the same
+ * entry and no locking is needed.
+ *
+ * Work below the thresholds is done on the calling thread without touching
+ * the pool at all.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+final class ParallelKernels {
+
+    /*
+     * Products with fewer multiply-adds than this are computed sequentially.
+     */
+    static final long MULT_THRESHOLD = 128L * 128 * 128;
+
+    /*
+     * Element-wise operations touching fewer entries than this are computed
+     * sequentially.
+     */
+    static final long ELEMENTWISE_THRESHOLD = 1L << 16;
+
+    private ParallelKernels() {}
+
+    /**
+     * Computes C += A * B, splitting C into blocks that are computed in
+     * parallel with {@link Gemm}. See {@link Gemm#multiply} for the meaning
+     * of the parameters.
+     */
+    static void multiply(int m, int n, int k,
+                         double[] a, int aOff, int lda,
+                         double[] b, int bOff, int ldb,
+                         double[] c, int cOff, int ldc) {
+        MultiplyTask task = new MultiplyTask(m, n, k, a, aOff, lda, b, bOff, ldb, c, cOff, ldc);
+
+        if((long) m * n * k <= MULT_THRESHOLD) {
+            task.compute();
+        }
+        else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * Computes C = A + sign * B element-wise for rows by cols matrices.
+     * Passing a sign of -1 gives exactly the same result as subtraction.
+     */
+    static void addScaled(int rows, int cols,
+                          double[] a, int aOff, int lda,
+                          double[] b, int bOff, int ldb, double sign,
+                          double[] c, int cOff, int ldc) {
+        AddTask task = new AddTask(0, rows, cols, a, aOff, lda, b, bOff, ldb, sign, c, cOff, ldc);
+
+        if((long) rows * cols <= ELEMENTWISE_THRESHOLD) {
+            task.compute();
+        }
+        else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * Writes the transpose of the rows by cols matrix A into C, which must
+     * be cols by rows.
+     */
+    static void transpose(int rows, int cols,
+                          double[] a, int aOff, int lda,
+                          double[] c, int cOff, int ldc) {
+        TransposeTask task = new TransposeTask(0, rows, cols, a, aOff, lda, c, cOff, ldc);
+
+        if((long) rows * cols <= ELEMENTWISE_THRESHOLD) {
+            task.compute();
+        }
+        else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+/****************************************************************/
+/*                            Tasks                             */
+/****************************************************************/
+
+    /*
+     * Splits C along its longer dimension until the block is below the
+     * threshold, then hands the block to the blocked sequential kernel.
+     */
+    @SuppressWarnings("serial")
+    private static final class MultiplyTask extends RecursiveAction {
+        private final int m, n, k;
+        private final double[] a, b, c;
+        private final int aOff, lda, bOff, ldb, cOff, ldc;
+
+        MultiplyTask(int m, int n, int k,
+                     double[] a, int aOff, int lda,
+                     double[] b, int bOff, int ldb,
+                     double[] c, int cOff, int ldc) {
+            this.m = m;
+            this.n = n;
+            this.k = k;
+            this.a = a;
+            this.aOff = aOff;
+            this.lda = lda;
+            this.b = b;
+            this.bOff = bOff;
+            this.ldb = ldb;
+            this.c = c;
+            this.cOff = cOff;
+            this.ldc = ldc;
+        }
+
+        @Override
+        protected void compute() {
+            if((long) m * n * k <= MULT_THRESHOLD || (m <= Gemm.MC && n <= Gemm.NC)) {
+                Gemm.multiply(m, n, k, a, aOff, lda, b, bOff, ldb, c, cOff, ldc);
+                return;
+            }
+
+            if(m >= n) {
+                int half = m / 2;
+                invokeAll(new MultiplyTask(half, n, k, a, aOff, lda, b, bOff, ldb, c, cOff, ldc),
+                          new MultiplyTask(m - half, n, k,
+                                           a, aOff + half * lda, lda,
+                                           b, bOff, ldb,
+                                           c, cOff + half * ldc, ldc));
+            }
+            else {
+                int half = n / 2;
+                invokeAll(new MultiplyTask(m, half, k, a, aOff, lda, b, bOff, ldb, c, cOff, ldc),
+                          new MultiplyTask(m, n - half, k,
+                                           a, aOff, lda,
+                                           b, bOff + half, ldb,
+                                           c, cOff + half, ldc));
+            }
+        }
+    }
+
+    /*
+     * Splits the rows [from, to) in half until the block is small enough.
+     */
+    @SuppressWarnings("serial")
+    private static final class AddTask extends RecursiveAction {
+        private final int from, to, cols;
+        private final double[] a, b, c;
+        private final int aOff, lda, bOff, ldb, cOff, ldc;
+        private final double sign;
+
+        AddTask(int from, int to, int cols,
+                double[] a, int aOff, int lda,
+                double[] b, int bOff, int ldb, double sign,
+                double[] c, int cOff, int ldc) {
+            this.from = from;
+            this.to = to;
+            this.cols = cols;
+            this.a = a;
+            this.aOff = aOff;
+            this.lda = lda;
+            this.b = b;
+            this.bOff = bOff;
+            this.ldb = ldb;
+            this.sign = sign;
+            this.c = c;
+            this.cOff = cOff;
+            this.ldc = ldc;
+        }
+
+        @Override
+        protected void compute() {
+            if((long) (to - from) * cols <= ELEMENTWISE_THRESHOLD || to - from == 1) {
+                for(int j = from; j < to; j++) {
+                    int aRow = aOff + j * lda;
+                    int bRow = bOff + j * ldb;
+                    int cRow = cOff + j * ldc;
+
+                    for(int i = 0; i < cols; i++) {
+                        c[cRow + i] = a[aRow + i] + sign * b[bRow + i];
+                    }
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new AddTask(from, mid, cols, a, aOff, lda, b, bOff, ldb, sign, c, cOff, ldc),
+                      new AddTask(mid, to, cols, a, aOff, lda, b, bOff, ldb, sign, c, cOff, ldc));
+        }
+    }
+
+    /*
+     * Splits the source rows [from, to) in half until the block is small
+     * enough. Each block writes to a disjoint set of columns of C.
+     */
+    @SuppressWarnings("serial")
+    private static final class TransposeTask extends RecursiveAction {
+        private static final int TILE = 32;
+
+        private final int from, to, cols;
+        private final double[] a, c;
+        private final int aOff, lda, cOff, ldc;
+
+        TransposeTask(int from, int to, int cols,
+                      double[] a, int aOff, int lda,
+                      double[] c, int cOff, int ldc) {
+            this.from = from;
+            this.to = to;
+            this.cols = cols;
+            this.a = a;
+            this.aOff = aOff;
+            this.lda = lda;
+            this.c = c;
+            this.cOff = cOff;
+            this.ldc = ldc;
+        }
+
+        @Override
+        protected void compute() {
+            if((long) (to - from) * cols <= ELEMENTWISE_THRESHOLD || to - from <= TILE) {
+                // Work in square tiles so both the reads and the writes stay in cache
+                for(int jj = from; jj < to; jj += TILE) {
+                    int jEnd = Math.min(jj + TILE, to);
+
+                    for(int ii = 0; ii < cols; ii += TILE) {
+                        int iEnd = Math.min(ii + TILE, cols);
+
+                        for(int j = jj; j < jEnd; j++) {
+                            int aRow = aOff + j * lda;
+
+                            for(int i = ii; i < iEnd; i++) {
+                                c[cOff + i * ldc + j] = a[aRow + i];
+                            }
+                        }
+                    }
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new TransposeTask(from, mid, cols, a, aOff, lda, c, cOff, ldc),
+                      new TransposeTask(mid, to, cols, a, aOff, lda, c, cOff, ldc));
+        }
+    }
+}
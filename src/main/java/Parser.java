@@ -0,0 +1,296 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * Compiles a statement into a {@link Plan}, looking up the type of every
+ * identifier in a {@link Memory}. The grammar is
+ * <pre>
+ *     statement := [identifier '='] expression
+ *     expression := term (('+' | '-') term)*
+ *     term := unary (('*' | '/') unary)*
+ *     unary := '-' unary | primary
+ *     primary := number | identifier | '(' expression ')'
+ * </pre>
+ * where identifiers start with a letter or an underscore and numbers are
+ * decimals with an optional exponent.
+ *
+ * Every node is type checked as it is built. Matrices, vectors and
+ * constants can each be added to and subtracted from their own kind,
+ * anything can be multiplied or divided by a constant, and matrices can
+ * be multiplied by matrices and vectors. Subexpressions made up only of
+ * numbers are folded into a single constant.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+final class Parser {
+
+    private final String source;
+    private final Memory memory;
+    private int position;
+
+    /*
+     * The identifiers in the order they first appear, and their types.
+     */
+    private final List<String> identifiers = new ArrayList<>();
+    private final List<Memory.EntryType> types = new ArrayList<>();
+
+    Parser(String source, Memory memory) {
+        this.source = source;
+        this.memory = memory;
+    }
+
+    /*
+     * Parses and type checks the whole statement.
+     */
+    Plan parse() throws IllegalArgumentException {
+        String target = null;
+
+        // An assignment starts with an identifier followed by '='
+        int start = position;
+        skipWhitespace();
+        if(position < source.length() && isIdentifierStart(source.charAt(position))) {
+            String name = identifier();
+            if(accept('=')) {
+                target = name;
+            }
+            else {
+                position = start;
+            }
+        }
+
+        Plan.Node root = expression();
+
+        skipWhitespace();
+        if(position < source.length()) {
+            throw error("Unexpected '" + source.charAt(position) + "'");
+        }
+
+        return new Plan(target, identifiers, types, root);
+    }
+
+/****************************************************************/
+/*                           Grammar                            */
+/****************************************************************/
+
+    private Plan.Node expression() {
+        Plan.Node toReturn = term();
+
+        while(true) {
+            if(accept('+')) {
+                toReturn = binary('+', toReturn, term());
+            }
+            else if(accept('-')) {
+                toReturn = binary('-', toReturn, term());
+            }
+            else {
+                return toReturn;
+            }
+        }
+    }
+
+    private Plan.Node term() {
+        Plan.Node toReturn = unary();
+
+        while(true) {
+            if(accept('*')) {
+                toReturn = binary('*', toReturn, unary());
+            }
+            else if(accept('/')) {
+                toReturn = binary('/', toReturn, unary());
+            }
+            else {
+                return toReturn;
+            }
+        }
+    }
+
+    private Plan.Node unary() {
+        if(accept('-')) {
+            Plan.Node operand = unary();
+
+            if(operand instanceof Plan.Constant) {
+                return new Plan.Constant(-((Plan.Constant) operand).value());
+            }
+            if(operand.isScalar()) {
+                return new Plan.Negate((Plan.ScalarNode) operand);
+            }
+
+            return new Plan.Scale((Plan.TensorNode) operand, new Plan.Constant(-1.0), false);
+        }
+
+        return primary();
+    }
+
+    private Plan.Node primary() {
+        skipWhitespace();
+
+        if(position >= source.length()) {
+            throw error("Unexpected end of expression");
+        }
+
+        char c = source.charAt(position);
+
+        if(accept('(')) {
+            Plan.Node toReturn = expression();
+            if(!accept(')')) {
+                throw error("Expected ')'");
+            }
+            return toReturn;
+        }
+        if(Character.isDigit(c) || c == '.') {
+            return new Plan.Constant(number());
+        }
+        if(isIdentifierStart(c)) {
+            return variable(identifier());
+        }
+
+        throw error("Unexpected '" + c + "'");
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Builds a binary node, checking that the operator applies to the types
+     * of its operands. The checks decide which side is a scalar, so the
+     * casts below always hold.
+     */
+    private Plan.Node binary(char op, Plan.Node left, Plan.Node right) {
+        if(left.isScalar() && right.isScalar()) {
+            if(left instanceof Plan.Constant && right instanceof Plan.Constant) {
+                double a = ((Plan.Constant) left).value();
+                double b = ((Plan.Constant) right).value();
+                return new Plan.Constant(Plan.Arithmetic.apply(op, a, b));
+            }
+            return new Plan.Arithmetic(op, (Plan.ScalarNode) left, (Plan.ScalarNode) right);
+        }
+        if(op == '+' || op == '-') {
+            if(left.type != right.type) {
+                throw error("Cannot " + (op == '+' ? "add" : "subtract") + " a " + name(left.type)
+                            + " and a " + name(right.type));
+            }
+            return new Plan.Sum(op, (Plan.TensorNode) left, (Plan.TensorNode) right);
+        }
+        if(op == '/') {
+            if(!right.isScalar()) {
+                throw error("Cannot divide by a " + name(right.type));
+            }
+            return new Plan.Scale((Plan.TensorNode) left, (Plan.ScalarNode) right, true);
+        }
+        if(left.isScalar()) {
+            return new Plan.Scale((Plan.TensorNode) right, (Plan.ScalarNode) left, false);
+        }
+        if(right.isScalar()) {
+            return new Plan.Scale((Plan.TensorNode) left, (Plan.ScalarNode) right, false);
+        }
+        if(left.type == Memory.EntryType.MATRIX) {
+            return new Plan.Product((Plan.TensorNode) left, (Plan.TensorNode) right);
+        }
+
+        throw error("Cannot multiply a " + name(left.type) + " by a " + name(right.type));
+    }
+
+    /*
+     * Resolves an identifier, giving repeated uses the same index.
+     */
+    private Plan.Node variable(String name) {
+        int index = identifiers.indexOf(name);
+
+        if(index == -1) {
+            Memory.EntryType type = memory.retrieveType(name);
+            if(type == Memory.EntryType.NULL) {
+                throw new IllegalArgumentException("Unknown identifier: " + name);
+            }
+
+            index = identifiers.size();
+            identifiers.add(name);
+            types.add(type);
+        }
+
+        if(types.get(index) == Memory.EntryType.CONSTANT) {
+            return new Plan.ScalarVariable(index);
+        }
+
+        return new Plan.TensorVariable(types.get(index), index);
+    }
+
+    private String identifier() {
+        int start = position;
+        while(position < source.length() && isIdentifierPart(source.charAt(position))) {
+            position++;
+        }
+
+        return source.substring(start, position);
+    }
+
+    private double number() {
+        int start = position;
+        while(position < source.length() && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+            position++;
+        }
+
+        // An exponent, if the e is followed by digits
+        if(position < source.length() && (source.charAt(position) == 'e' || source.charAt(position) == 'E')) {
+            int mark = position++;
+            if(position < source.length() && (source.charAt(position) == '+' || source.charAt(position) == '-')) {
+                position++;
+            }
+            if(position < source.length() && Character.isDigit(source.charAt(position))) {
+                while(position < source.length() && Character.isDigit(source.charAt(position))) {
+                    position++;
+                }
+            }
+            else {
+                position = mark;
+            }
+        }
+
+        try {
+            return Double.parseDouble(source.substring(start, position));
+        }
+        catch(NumberFormatException e) {
+            position = start;
+            throw error("Invalid number");
+        }
+    }
+
+    /*
+     * Consumes the character provided if it is next, ignoring whitespace.
+     */
+    private boolean accept(char c) {
+        skipWhitespace();
+
+        if(position < source.length() && source.charAt(position) == c) {
+            position++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while(position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static String name(Memory.EntryType type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + ": " + source);
+    }
+}
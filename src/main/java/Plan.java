@@ -0,0 +1,351 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * A compiled statement, ready to be run against a {@link Memory}. Produced
+ * by {@link Parser} and cached by {@link Interpreter}, so that running the
+ * same statement again skips parsing and type checking.
+ *
+ * The plan records the type every identifier had when it was compiled and
+ * is only valid while the variables still have those types; see
+ * {@link #matches(Memory)}. Matrices and vectors are combined through an
+ * {@link Expression}, so the whole right-hand side is evaluated in as few
+ * passes as possible. Sizes are checked when the plan is run, since they
+ * can change without the types changing.
+ *
+ * Plans are immutable and can be run by several threads at once.
+ */
+
+import java.util.List;
+
+final class Plan {
+
+    private final String target;
+    private final String[] identifiers;
+    private final Memory.EntryType[] types;
+    private final Node root;
+
+    /*
+     * Creates a plan that evaluates root and, if target is not null, stores
+     * the result under that label. Variable nodes refer to the identifiers
+     * by index.
+     */
+    Plan(String target, List<String> identifiers, List<Memory.EntryType> types, Node root) {
+        this.target = target;
+        this.identifiers = identifiers.toArray(new String[0]);
+        this.types = types.toArray(new Memory.EntryType[0]);
+        this.root = root;
+    }
+
+    /*
+     * Returns the type of the result.
+     */
+    Memory.EntryType getType() {
+        return root.type;
+    }
+
+    /*
+     * Checks whether every identifier still has the type it was compiled
+     * with.
+     */
+    boolean matches(Memory memory) {
+        for(int i = 0; i < identifiers.length; i++) {
+            if(memory.retrieveType(identifiers[i]) != types[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Runs the plan and returns the result, a Matrix, Vector or Double. The
+     * result is also stored in memory if the statement is an assignment.
+     */
+    Object execute(Memory memory) {
+        Expression[] tensors = new Expression[identifiers.length];
+        double[] scalars = new double[identifiers.length];
+
+        // Each variable is retrieved once and shares one leaf, so repeated
+        // uses are merged when the expression is evaluated
+        for(int i = 0; i < identifiers.length; i++) {
+            switch(types[i]) {
+                case MATRIX:
+                    Matrix m = memory.retrieveMatrix(identifiers[i]);
+                    if(m == null) {
+                        throw new IllegalArgumentException("Unknown identifier: " + identifiers[i]);
+                    }
+                    tensors[i] = Expression.of(m);
+                    break;
+                case VECTOR:
+                    Vector v = memory.retrieveVector(identifiers[i]);
+                    if(v == null) {
+                        throw new IllegalArgumentException("Unknown identifier: " + identifiers[i]);
+                    }
+                    tensors[i] = Expression.of(v);
+                    break;
+                default:
+                    scalars[i] = memory.retrieveConstant(identifiers[i]);
+            }
+        }
+
+        Object toReturn = root.evaluate(tensors, scalars, target == null ? "" : target);
+
+        if(target != null) {
+            assign(memory, toReturn);
+        }
+
+        return toReturn;
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Stores the result under the target label, replacing whatever was there.
+     */
+    private void assign(Memory memory, Object result) {
+        try {
+            if(result instanceof Matrix) {
+                memory.store(target, (Matrix) result);
+            }
+            else if(result instanceof Vector) {
+                memory.store(target, (Vector) result);
+            }
+            else {
+                memory.store(target, (Double) result);
+            }
+        }
+        catch(IllegalArgumentException e) {
+            // The label is taken
+            if(result instanceof Matrix) {
+                memory.replace(target, (Matrix) result);
+            }
+            else if(result instanceof Vector) {
+                memory.replace(target, (Vector) result);
+            }
+            else {
+                memory.replace(target, (Double) result);
+            }
+        }
+    }
+
+/****************************************************************/
+/*                            Nodes                             */
+/****************************************************************/
+
+    /*
+     * A node of the compiled expression. Its type is fixed when it is
+     * compiled: constant nodes are ScalarNodes and evaluate to a double,
+     * matrix and vector nodes are TensorNodes and evaluate to an Expression.
+     */
+    abstract static class Node {
+        final Memory.EntryType type;
+
+        Node(Memory.EntryType type) {
+            this.type = type;
+        }
+
+        boolean isScalar() {
+            return type == Memory.EntryType.CONSTANT;
+        }
+
+        /*
+         * Evaluates the node as the root of a plan, returning a Matrix,
+         * Vector or Double. Tensor results are given the label provided.
+         */
+        abstract Object evaluate(Expression[] tensors, double[] scalars, String label);
+    }
+
+    abstract static class ScalarNode extends Node {
+        ScalarNode() {
+            super(Memory.EntryType.CONSTANT);
+        }
+
+        abstract double scalar(Expression[] tensors, double[] scalars);
+
+        @Override
+        final Object evaluate(Expression[] tensors, double[] scalars, String label) {
+            return scalar(tensors, scalars);
+        }
+    }
+
+    abstract static class TensorNode extends Node {
+        TensorNode(Memory.EntryType type) {
+            super(type);
+        }
+
+        abstract Expression tensor(Expression[] tensors, double[] scalars);
+
+        @Override
+        final Object evaluate(Expression[] tensors, double[] scalars, String label) {
+            Expression result = tensor(tensors, scalars);
+            return type == Memory.EntryType.MATRIX ? result.toMatrix(label) : result.toVector(label);
+        }
+    }
+
+    /*
+     * A number, or a scalar subexpression folded at compile time.
+     */
+    static final class Constant extends ScalarNode {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        double value() {
+            return value;
+        }
+
+        @Override
+        double scalar(Expression[] tensors, double[] scalars) {
+            return value;
+        }
+    }
+
+    /*
+     * A constant variable, by its index in the plan's identifiers.
+     */
+    static final class ScalarVariable extends ScalarNode {
+        private final int index;
+
+        ScalarVariable(int index) {
+            this.index = index;
+        }
+
+        @Override
+        double scalar(Expression[] tensors, double[] scalars) {
+            return scalars[index];
+        }
+    }
+
+    /*
+     * A matrix or vector variable, by its index in the plan's identifiers.
+     */
+    static final class TensorVariable extends TensorNode {
+        private final int index;
+
+        TensorVariable(Memory.EntryType type, int index) {
+            super(type);
+            this.index = index;
+        }
+
+        @Override
+        Expression tensor(Expression[] tensors, double[] scalars) {
+            return tensors[index];
+        }
+    }
+
+    /*
+     * Unary minus on a scalar. Negated tensors are scaled by -1 instead.
+     */
+    static final class Negate extends ScalarNode {
+        private final ScalarNode operand;
+
+        Negate(ScalarNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double scalar(Expression[] tensors, double[] scalars) {
+            return -operand.scalar(tensors, scalars);
+        }
+    }
+
+    /*
+     * One of + - * / on two scalars.
+     */
+    static final class Arithmetic extends ScalarNode {
+        private final char op;
+        private final ScalarNode left, right;
+
+        Arithmetic(char op, ScalarNode left, ScalarNode right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        /*
+         * Applies the operator, so the parser can fold constants the same
+         * way the plan would compute them.
+         */
+        static double apply(char op, double a, double b) {
+            switch(op) {
+                case '+': return a + b;
+                case '-': return a - b;
+                case '*': return a * b;
+                default:  return a / b;
+            }
+        }
+
+        @Override
+        double scalar(Expression[] tensors, double[] scalars) {
+            return apply(op, left.scalar(tensors, scalars), right.scalar(tensors, scalars));
+        }
+    }
+
+    /*
+     * The sum or difference of two matrices or two vectors.
+     */
+    static final class Sum extends TensorNode {
+        private final char op;
+        private final TensorNode left, right;
+
+        Sum(char op, TensorNode left, TensorNode right) {
+            super(left.type);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Expression tensor(Expression[] tensors, double[] scalars) {
+            Expression a = left.tensor(tensors, scalars);
+            Expression b = right.tensor(tensors, scalars);
+
+            return op == '+' ? a.add(b) : a.sub(b);
+        }
+    }
+
+    /*
+     * A matrix or vector multiplied or divided by a scalar.
+     */
+    static final class Scale extends TensorNode {
+        private final TensorNode operand;
+        private final ScalarNode factor;
+        private final boolean divide;
+
+        Scale(TensorNode operand, ScalarNode factor, boolean divide) {
+            super(operand.type);
+            this.operand = operand;
+            this.factor = factor;
+            this.divide = divide;
+        }
+
+        @Override
+        Expression tensor(Expression[] tensors, double[] scalars) {
+            double c = factor.scalar(tensors, scalars);
+            return operand.tensor(tensors, scalars).mult(divide ? 1 / c : c);
+        }
+    }
+
+    /*
+     * A matrix multiplied by a matrix or a vector.
+     */
+    static final class Product extends TensorNode {
+        private final TensorNode left, right;
+
+        Product(TensorNode left, TensorNode right) {
+            super(right.type);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Expression tensor(Expression[] tensors, double[] scalars) {
+            return left.tensor(tensors, scalars).mult(right.tensor(tensors, scalars));
+        }
+    }
+}
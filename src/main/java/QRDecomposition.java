@@ -0,0 +1,344 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The QR decomposition of an m by n matrix A with m &gt;= n, computed with
+ * Householder reflections, such that A = QR where Q has orthonormal columns
+ * and R is upper triangular.
+ *
+ * The factorization is blocked: the reflectors for each panel of columns are
+ * accumulated into the compact form I - V T V^T, which is then applied to
+ * the rest of the matrix with the GEMM kernel.
+ */
+
+public class QRDecomposition {
+
+    /*
+     * The transpose of A, overwritten by the factorization. Column j of A is
+     * row j of this array, so Householder vectors and columns of R are both
+     * contiguous. R[i][j] (i <= j) is stored at qrt[j * m + i], and the part
+     * of Householder vector k below its implicit leading 1 at qrt[k * m + i]
+     * for i > k.
+     */
+    private final double[] qrt;
+    private final double[] tau;
+    private final int m, n;
+
+    /*
+     * The number of columns in each panel of the blocked factorization.
+     */
+    private static final int BLOCK = 32;
+
+    /*
+     * Machine epsilon for doubles, used to decide when R is rank deficient.
+     */
+    private static final double EPSILON = Math.ulp(1.0);
+
+    /**
+     * Computes the QR decomposition of the matrix provided. The matrix itself
+     * is not modified.
+     * @param a The matrix to decompose.
+     * @throws UnsupportedOperationException if the matrix is wider than it is high.
+     */
+    public QRDecomposition(Matrix a) throws UnsupportedOperationException {
+        if(a.getWidth() > a.getHeight()) {
+            throw new UnsupportedOperationException("Cannot take the QR decomposition of a matrix wider than it is high!");
+        }
+
+        this.m = a.getHeight();
+        this.n = a.getWidth();
+        this.qrt = a.toTransposedArray();
+        this.tau = new double[n];
+
+        for(int k0 = 0; k0 < n; k0 += BLOCK) {
+            int k1 = Math.min(k0 + BLOCK, n);
+
+            factorPanel(k0, k1);
+
+            if(k1 < n) {
+                applyBlockReflector(k0, k1);
+            }
+        }
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Checks whether the decomposed matrix has linearly independent columns,
+     * i.e. whether every diagonal entry of R is significantly different from
+     * zero relative to the largest one.
+     * @return Whether or not the matrix has full column rank.
+     */
+    public boolean isFullRank() {
+        double max = 0;
+        for(int j = 0; j < n; j++) {
+            max = Math.max(max, Math.abs(qrt[j * m + j]));
+        }
+
+        double tolerance = max * m * EPSILON;
+        for(int j = 0; j < n; j++) {
+            if(Math.abs(qrt[j * m + j]) <= tolerance) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the n by n upper triangular factor R.
+     * @return R.
+     */
+    public Matrix getR() {
+        double[] toReturn = new double[n * n];
+
+        for(int j = 0; j < n; j++) {
+            for(int i = 0; i <= j; i++) {
+                toReturn[i * n + j] = qrt[j * m + i];
+            }
+        }
+
+        return Matrix.wrap("R", n, n, toReturn);
+    }
+
+    /**
+     * Returns the m by n factor Q, whose columns are orthonormal.
+     * @return Q.
+     */
+    public Matrix getQ() {
+        double[] qt = getQTransposed();
+        double[] toReturn = new double[m * n];
+        for(int c = 0; c < n; c++) {
+            for(int i = 0; i < m; i++) {
+                toReturn[i * n + c] = qt[c * m + i];
+            }
+        }
+
+        return Matrix.wrap("Q", n, m, toReturn);
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Finds the vector x which minimizes the length of Ax - b, where A is
+     * the decomposed matrix, by solving Rx = Q^T b.
+     * @param b The right-hand side. Must have one entry per row of A.
+     * @return The least-squares solution, with one entry per column of A.
+     * @throws IllegalArgumentException if b is the wrong size.
+     * @throws ArithmeticException if the columns of A are linearly dependent.
+     */
+    public Vector leastSquares(Vector b) throws IllegalArgumentException, ArithmeticException {
+        if(b.getSize() != m) {
+            throw new IllegalArgumentException("Right-hand side is the wrong size!");
+        }
+        if(!isFullRank()) {
+            throw new ArithmeticException("Matrix is rank deficient!");
+        }
+
+        double[] y = b.toArray();
+
+        for(int k = 0; k < n; k++) {
+            reflect(k, y, 0);
+        }
+
+        // Back substitution with R, a column at a time since columns of R
+        // are contiguous.
+        double[] x = new double[n];
+        System.arraycopy(y, 0, x, 0, n);
+
+        for(int j = n - 1; j >= 0; j--) {
+            int col = j * m;
+            x[j] /= qrt[col + j];
+
+            double xj = x[j];
+            for(int i = 0; i < j; i++) {
+                x[i] -= xj * qrt[col + i];
+            }
+        }
+
+        return Vector.wrap(b.getLabel(), x);
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Returns the transpose of Q as an n by m row-major array, i.e. with the
+     * columns of Q as its rows. It is built one column of Q at a time by
+     * applying the reflectors in reverse order to the columns of the identity.
+     */
+    double[] getQTransposed() {
+        double[] qt = new double[n * m];
+
+        for(int c = 0; c < n; c++) {
+            int row = c * m;
+            qt[row + c] = 1;
+
+            for(int k = c; k >= 0; k--) {
+                reflect(k, qt, row);
+            }
+        }
+
+        return qt;
+    }
+
+    /*
+     * Computes the reflectors for columns [k0, k1), applying each one only to
+     * the remaining columns of the panel.
+     */
+    private void factorPanel(int k0, int k1) {
+        for(int k = k0; k < k1; k++) {
+            int col = k * m;
+
+            double sum = 0;
+            for(int i = k; i < m; i++) {
+                sum += qrt[col + i] * qrt[col + i];
+            }
+            double norm = Math.sqrt(sum);
+
+            if(norm == 0) {
+                tau[k] = 0;
+                continue;
+            }
+
+            double alpha = qrt[col + k];
+            double beta = alpha > 0 ? -norm : norm;
+            double scale = 1.0 / (alpha - beta);
+
+            for(int i = k + 1; i < m; i++) {
+                qrt[col + i] *= scale;
+            }
+
+            tau[k] = (beta - alpha) / beta;
+            qrt[col + k] = beta;
+
+            for(int j = k + 1; j < k1; j++) {
+                reflect(k, qrt, j * m);
+            }
+        }
+    }
+
+    /*
+     * Applies reflector k to the length m vector stored at x[off].
+     */
+    private void reflect(int k, double[] x, int off) {
+        double t = tau[k];
+        if(t == 0) {
+            return;
+        }
+
+        int col = k * m;
+        double dot = x[off + k];
+        for(int i = k + 1; i < m; i++) {
+            dot += qrt[col + i] * x[off + i];
+        }
+
+        dot *= t;
+        x[off + k] -= dot;
+        for(int i = k + 1; i < m; i++) {
+            x[off + i] -= dot * qrt[col + i];
+        }
+    }
+
+    /*
+     * Applies the transpose of the product of reflectors [k0, k1) to the
+     * columns to the right of the panel. With Q = I - V T V^T, the trailing
+     * columns C become C - V T^T V^T C. Stored transposed, that is
+     * C^T - (C^T V) T V^T, which is two GEMMs and a small triangular product.
+     */
+    private void applyBlockReflector(int k0, int k1) {
+        int nb = k1 - k0;
+        int rows = m - k0;
+        int cols = n - k1;
+
+        // V is rows by nb with a unit diagonal and zeros above it
+        double[] v = new double[rows * nb];
+        double[] vt = new double[nb * rows];
+
+        for(int c = 0; c < nb; c++) {
+            int col = (k0 + c) * m + k0;
+            v[c * nb + c] = 1;
+            vt[c * rows + c] = 1;
+
+            for(int i = c + 1; i < rows; i++) {
+                v[i * nb + c] = qrt[col + i];
+                vt[c * rows + i] = qrt[col + i];
+            }
+        }
+
+        double[] t = triangularFactor(k0, nb, v, rows);
+
+        // W = C^T V
+        double[] w = new double[cols * nb];
+        Gemm.multiply(cols, nb, rows,
+                      qrt, k1 * m + k0, m,
+                      v, 0, nb,
+                      w, 0, nb);
+
+        // W = W T, row by row since T is upper triangular
+        double[] temp = new double[nb];
+        for(int r = 0; r < cols; r++) {
+            int row = r * nb;
+
+            for(int j = 0; j < nb; j++) {
+                double sum = 0;
+                for(int i = 0; i <= j; i++) {
+                    sum += w[row + i] * t[i * nb + j];
+                }
+                temp[j] = sum;
+            }
+
+            System.arraycopy(temp, 0, w, row, nb);
+        }
+
+        // C^T -= W V^T
+        Gemm.multiply(-1, cols, rows, nb,
+                      w, 0, nb,
+                      vt, 0, rows,
+                      qrt, k1 * m + k0, m);
+    }
+
+    /*
+     * Builds the nb by nb upper triangular T such that the product of the
+     * reflectors starting at k0 is I - V T V^T.
+     */
+    private double[] triangularFactor(int k0, int nb, double[] v, int rows) {
+        double[] t = new double[nb * nb];
+
+        for(int j = 0; j < nb; j++) {
+            double tj = tau[k0 + j];
+            t[j * nb + j] = tj;
+
+            if(tj == 0) {
+                continue;
+            }
+
+            // z = V[:, 0:j]^T v_j
+            double[] z = new double[j];
+            for(int i = j; i < rows; i++) {
+                double vij = v[i * nb + j];
+                int row = i * nb;
+
+                for(int c = 0; c < j; c++) {
+                    z[c] += v[row + c] * vij;
+                }
+            }
+
+            // T[0:j, j] = -tau_j T[0:j, 0:j] z
+            for(int r = 0; r < j; r++) {
+                double sum = 0;
+                for(int c = r; c < j; c++) {
+                    sum += t[r * nb + c] * z[c];
+                }
+                t[r * nb + j] = -tj * sum;
+            }
+        }
+
+        return t;
+    }
+}
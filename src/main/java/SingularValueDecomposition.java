@@ -0,0 +1,403 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The singular value decomposition of an m by n matrix, such that
+ * A = U S V^T where U and V have orthonormal columns and S is diagonal and
+ * holds the singular values in descending order.
+ *
+ * In thin mode, which is the default, U is m by min(m, n) and V is
+ * n by min(m, n), so a tall matrix never needs an m by m U. In full mode U
+ * is m by m and V is n by n.
+ *
+ * Tall (or wide) matrices are first reduced to a small square triangular
+ * matrix with a QR decomposition, whose SVD is then found with one-sided
+ * Jacobi rotations. Jacobi is slower than bidiagonalization for large square
+ * matrices but computes even the small singular values to high relative
+ * accuracy, which is what rank and condition number estimates depend on.
+ */
+
+public class SingularValueDecomposition {
+
+    private final int m, n;
+
+    /*
+     * The singular values, in descending order.
+     */
+    private final double[] sigma;
+
+    /*
+     * The columns of U and V stored as rows, so U^T and V^T in row-major
+     * order. uCols and vCols are the number of columns of each.
+     */
+    private final double[] ut;
+    private final double[] vt;
+    private final int uCols, vCols;
+
+    private final int rank;
+
+    /*
+     * The maximum number of Jacobi sweeps before giving up.
+     */
+    private static final int MAX_SWEEPS = 60;
+
+    private static final double EPSILON = Math.ulp(1.0);
+
+    /**
+     * Computes the thin singular value decomposition of the matrix provided.
+     * The matrix itself is not modified.
+     * @param a The matrix to decompose.
+     * @throws ArithmeticException if the iteration fails to converge.
+     */
+    public SingularValueDecomposition(Matrix a) throws ArithmeticException {
+        this(a, true);
+    }
+
+    /**
+     * Computes the singular value decomposition of the matrix provided. The
+     * matrix itself is not modified.
+     * @param a The matrix to decompose.
+     * @param thin Whether to compute only the leading min(m, n) columns of
+     * U and V.
+     * @throws ArithmeticException if the iteration fails to converge.
+     */
+    public SingularValueDecomposition(Matrix a, boolean thin) throws ArithmeticException {
+        this.m = a.getHeight();
+        this.n = a.getWidth();
+
+        // Work with B = A or B = A^T so that B is p by q with p >= q
+        boolean transposed = m < n;
+        Matrix b = transposed ? a.transpose() : a;
+        int p = Math.max(m, n);
+        int q = Math.min(m, n);
+
+        // w holds the columns of the square matrix to orthogonalize as rows
+        double[] w;
+        double[] qt = null;
+
+        if(p > q) {
+            QRDecomposition qr = new QRDecomposition(b);
+            w = qr.getR().toTransposedArray();
+            qt = qr.getQTransposed();
+        }
+        else {
+            w = b.toTransposedArray();
+        }
+
+        double[] right = new double[q * q];
+        for(int i = 0; i < q; i++) {
+            right[i * q + i] = 1;
+        }
+
+        jacobi(w, right, q);
+
+        this.sigma = new double[q];
+        for(int k = 0; k < q; k++) {
+            sigma[k] = Math.sqrt(dot(w, k * q, w, k * q, q));
+        }
+
+        sort(sigma, w, right, q);
+
+        double tolerance = p * EPSILON * sigma[0];
+        int r = 0;
+        while(r < q && sigma[r] > tolerance) {
+            r++;
+        }
+        this.rank = r;
+
+        // The left singular vectors of the square matrix are the normalized
+        // columns. Those belonging to zero singular values are filled in later.
+        for(int k = 0; k < r; k++) {
+            double scale = 1.0 / sigma[k];
+            for(int i = 0; i < q; i++) {
+                w[k * q + i] *= scale;
+            }
+        }
+
+        int leftCols = thin ? q : p;
+        double[] left = new double[leftCols * p];
+
+        if(qt != null) {
+            // U = Q U_R, or transposed, U^T = U_R^T Q^T
+            Gemm.multiply(r, p, q,
+                          w, 0, q,
+                          qt, 0, p,
+                          left, 0, p);
+        }
+        else {
+            System.arraycopy(w, 0, left, 0, r * q);
+        }
+
+        completeBasis(left, r, leftCols, p);
+
+        // Undo the transpose: A = V_B S U_B^T
+        if(transposed) {
+            this.ut = right;
+            this.uCols = q;
+            this.vt = left;
+            this.vCols = leftCols;
+        }
+        else {
+            this.ut = left;
+            this.uCols = leftCols;
+            this.vt = right;
+            this.vCols = q;
+        }
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Returns the singular values in descending order.
+     * @return The min(m, n) singular values.
+     */
+    public Vector getSingularValues() {
+        return Vector.wrap("", sigma.clone());
+    }
+
+    /**
+     * Returns the left singular vectors as the columns of U.
+     * @return U.
+     */
+    public Matrix getU() {
+        return Matrix.wrap("U", m, uCols, ut.clone()).transpose();
+    }
+
+    /**
+     * Returns the right singular vectors as the columns of V.
+     * @return V.
+     */
+    public Matrix getV() {
+        return Matrix.wrap("V", n, vCols, vt.clone()).transpose();
+    }
+
+    /**
+     * Returns the numerical rank of the matrix, i.e. the number of singular
+     * values greater than max(m, n) * eps * the largest singular value.
+     * @return The rank.
+     */
+    public int rank() {
+        return rank;
+    }
+
+    /**
+     * Returns the 2-norm condition number of the matrix, which is the ratio
+     * of the largest and smallest singular values.
+     * @return The condition number. Infinite if the matrix is rank deficient
+     * according to {@link #rank()}.
+     */
+    public double conditionNumber() {
+        if(rank < sigma.length) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return sigma[0] / sigma[sigma.length - 1];
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Computes the Moore-Penrose pseudo-inverse, V S^+ U^T, where S^+ inverts
+     * only the singular values counted by {@link #rank()}.
+     * @return The n by m pseudo-inverse.
+     */
+    public Matrix pseudoInverse() {
+        // Scale the first rank columns of V by the reciprocal singular values
+        double[] scaled = new double[n * Math.max(rank, 1)];
+        for(int k = 0; k < rank; k++) {
+            double scale = 1.0 / sigma[k];
+            for(int i = 0; i < n; i++) {
+                scaled[i * rank + k] = vt[k * n + i] * scale;
+            }
+        }
+
+        double[] toReturn = new double[n * m];
+        Gemm.multiply(n, m, rank,
+                      scaled, 0, rank,
+                      ut, 0, m,
+                      toReturn, 0, m);
+
+        return Matrix.wrap("", m, n, toReturn);
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Orthogonalizes the q rows of w against each other with one-sided
+     * Jacobi rotations, applying the same rotations to the rows of v. A pair
+     * of rows is left alone once the cosine of the angle between them is
+     * below q * eps, since rounding keeps a stricter test from ever passing.
+     */
+    private static void jacobi(double[] w, double[] v, int q) throws ArithmeticException {
+        double tolerance = q * EPSILON;
+
+        // Rows that are this small are zero to working precision, and only
+        // contribute rounding noise to the angle test
+        double negligible = dot(w, 0, w, 0, q * q) * EPSILON * EPSILON;
+
+        double[] norms = new double[q];
+
+        for(int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            boolean rotated = false;
+
+            // The squared row lengths are updated along with each rotation,
+            // and recomputed every sweep so rounding can't build up
+            for(int i = 0; i < q; i++) {
+                norms[i] = dot(w, i * q, w, i * q, q);
+            }
+
+            for(int i = 0; i < q - 1; i++) {
+                for(int j = i + 1; j < q; j++) {
+                    double alpha = norms[i];
+                    double beta = norms[j];
+
+                    if(alpha <= negligible || beta <= negligible) {
+                        continue;
+                    }
+
+                    double gamma = dot(w, i * q, w, j * q, q);
+                    if(gamma == 0 || Math.abs(gamma) <= tolerance * Math.sqrt(alpha * beta)) {
+                        continue;
+                    }
+
+                    rotated = true;
+
+                    double zeta = (beta - alpha) / (2 * gamma);
+                    double t = Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+                    if(zeta == 0) {
+                        t = 1;
+                    }
+                    double c = 1 / Math.sqrt(1 + t * t);
+                    double s = c * t;
+
+                    rotate(w, i * q, j * q, q, c, s);
+                    rotate(v, i * q, j * q, q, c, s);
+
+                    norms[i] = alpha - t * gamma;
+                    norms[j] = beta + t * gamma;
+                }
+            }
+
+            if(!rotated) {
+                return;
+            }
+        }
+
+        throw new ArithmeticException("Singular value iteration did not converge!");
+    }
+
+    /*
+     * Rotates the length len rows of a starting at i and j.
+     */
+    private static void rotate(double[] a, int i, int j, int len, double c, double s) {
+        for(int k = 0; k < len; k++) {
+            double x = a[i + k];
+            double y = a[j + k];
+            a[i + k] = c * x - s * y;
+            a[j + k] = s * x + c * y;
+        }
+    }
+
+    /*
+     * Sorts the singular values into descending order, moving the rows of w
+     * and v along with them.
+     */
+    private static void sort(double[] sigma, double[] w, double[] v, int q) {
+        for(int i = 0; i < q - 1; i++) {
+            int k = i;
+            for(int j = i + 1; j < q; j++) {
+                if(sigma[j] > sigma[k]) {
+                    k = j;
+                }
+            }
+
+            if(k != i) {
+                double temp = sigma[i];
+                sigma[i] = sigma[k];
+                sigma[k] = temp;
+                swapRows(w, i, k, q);
+                swapRows(v, i, k, q);
+            }
+        }
+    }
+
+    /*
+     * Fills rows [from, to) of the row-major array a, whose rows have length
+     * len and whose first from rows are orthonormal, with further orthonormal
+     * vectors. Each one starts from the standard basis vector which sticks
+     * out furthest from the span of the rows so far, i.e. the column of a
+     * with the smallest sum of squares, and is orthogonalized against the
+     * existing rows twice with modified Gram-Schmidt.
+     */
+    private static void completeBasis(double[] a, int from, int to, int len) {
+        double[] covered = new double[len];
+        for(int k = 0; k < from; k++) {
+            for(int i = 0; i < len; i++) {
+                covered[i] += a[k * len + i] * a[k * len + i];
+            }
+        }
+
+        for(int count = from; count < to; count++) {
+            int row = count * len;
+
+            int e = 0;
+            for(int i = 1; i < len; i++) {
+                if(covered[i] < covered[e]) {
+                    e = i;
+                }
+            }
+
+            for(int i = 0; i < len; i++) {
+                a[row + i] = 0;
+            }
+            a[row + e] = 1;
+
+            for(int pass = 0; pass < 2; pass++) {
+                for(int k = 0; k < count; k++) {
+                    double d = dot(a, k * len, a, row, len);
+                    for(int i = 0; i < len; i++) {
+                        a[row + i] -= d * a[k * len + i];
+                    }
+                }
+            }
+
+            double norm = Math.sqrt(dot(a, row, a, row, len));
+            for(int i = 0; i < len; i++) {
+                a[row + i] /= norm;
+                covered[i] += a[row + i] * a[row + i];
+            }
+        }
+    }
+
+    /*
+     * Computes the dot product of the length len runs of a and b starting at
+     * aOff and bOff.
+     */
+    private static double dot(double[] a, int aOff, double[] b, int bOff, int len) {
+        double sum = 0;
+        for(int i = 0; i < len; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+        return sum;
+    }
+
+    /*
+     * Swaps two length len rows of a row-major array.
+     */
+    private static void swapRows(double[] a, int index1, int index2, int len) {
+        int offset1 = index1 * len;
+        int offset2 = index2 * len;
+
+        for(int i = 0; i < len; i++) {
+            double temp = a[offset1 + i];
+            a[offset1 + i] = a[offset2 + i];
+            a[offset2 + i] = temp;
+        }
+    }
+}
@@ -0,0 +1,647 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * An m by n matrix stored in compressed sparse row (CSR) form, so that memory
+ * and the cost of every operation scale with the number of nonzero entries
+ * rather than with the size of the matrix.
+ *
+ * The nonzeros of row y are values[rowPointers[y] .. rowPointers[y + 1]),
+ * sorted by column, with their columns in the same positions of columns.
+ * Sparse matrices are immutable; they are assembled with a {@link Builder}:
+ * <pre>
+ *     SparseMatrix a = new SparseMatrix.Builder("A", 3, 3)
+ *         .add(0, 0, 4).add(1, 0, -1)
+ *         .add(0, 1, -1).add(1, 1, 4)
+ *         .add(2, 2, 2)
+ *         .build();
+ * </pre>
+ */
+
+import java.util.Arrays;
+import java.util.Objects;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+public class SparseMatrix {
+
+    private final int[] rowPointers;
+    private final int[] columns;
+    private final double[] values;
+    private String label;
+
+    private final int width, height;
+
+    private static final double COMPARE_PRECISION = 1e-2;
+
+    /**
+     * Assembles a sparse matrix one entry at a time. Entries may be added in
+     * any order, and entries added more than once at the same position are
+     * summed, which is how stiffness-style matrices are normally assembled.
+     */
+    public static class Builder {
+
+        private final String label;
+        private final int width, height;
+
+        private int[] xs = new int[16];
+        private int[] ys = new int[16];
+        private double[] vs = new double[16];
+        private int size;
+
+        /**
+         * Starts building a new sparse matrix with the width and height provided.
+         * @param label The label for the matrix.
+         * @param width The width of the matrix.
+         * @param height The height of the matrix.
+         * @throws IllegalArgumentException if the size of the matrix is too small.
+         */
+        public Builder(String label, int width, int height) throws IllegalArgumentException {
+            if(width <= 1 || height <= 1) {
+                throw new IllegalArgumentException("The minimum size for a matrix is 2x2.");
+            }
+
+            this.label = label;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Adds a value to the entry in the position provided.
+         * @param x The x index.
+         * @param y The y index.
+         * @param value The value to add.
+         * @return This builder.
+         * @throws IndexOutOfBoundsException if the x or y indices provided are
+         * out of range.
+         */
+        public Builder add(int x, int y, double value) throws IndexOutOfBoundsException {
+            if(x >= width || x < 0 || y >= height || y < 0) {
+                throw new IndexOutOfBoundsException("Index out of bounds!");
+            }
+
+            if(size == xs.length) {
+                int capacity = size * 2;
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                vs = Arrays.copyOf(vs, capacity);
+            }
+
+            xs[size] = x;
+            ys[size] = y;
+            vs[size] = value;
+            size++;
+
+            return this;
+        }
+
+        /**
+         * Builds the sparse matrix from the entries added so far. Entries
+         * which sum to exactly zero are not stored. The builder can still be
+         * used afterwards.
+         * @return The new sparse matrix.
+         */
+        public SparseMatrix build() {
+            // Counting sort by column, then a stable counting sort by row,
+            // leaves every row sorted by column in O(nonzeros + width + height)
+            int[] byColumn = new int[size];
+            int[] counts = new int[width + 1];
+            for(int i = 0; i < size; i++) {
+                counts[xs[i] + 1]++;
+            }
+            for(int i = 0; i < width; i++) {
+                counts[i + 1] += counts[i];
+            }
+            for(int i = 0; i < size; i++) {
+                byColumn[counts[xs[i]]++] = i;
+            }
+
+            int[] rowPointers = new int[height + 1];
+            for(int i = 0; i < size; i++) {
+                rowPointers[ys[i] + 1]++;
+            }
+            for(int i = 0; i < height; i++) {
+                rowPointers[i + 1] += rowPointers[i];
+            }
+
+            int[] next = Arrays.copyOf(rowPointers, height);
+            int[] order = new int[size];
+            for(int i = 0; i < size; i++) {
+                int entry = byColumn[i];
+                order[next[ys[entry]]++] = entry;
+            }
+
+            // Merge duplicates and drop zeros, compacting as we go
+            int[] columns = new int[size];
+            double[] values = new double[size];
+            int count = 0;
+
+            for(int y = 0; y < height; y++) {
+                int start = rowPointers[y];
+                int end = rowPointers[y + 1];
+                rowPointers[y] = count;
+
+                int p = start;
+                while(p < end) {
+                    int x = xs[order[p]];
+                    double sum = 0;
+
+                    while(p < end && xs[order[p]] == x) {
+                        sum += vs[order[p]];
+                        p++;
+                    }
+
+                    if(sum != 0) {
+                        columns[count] = x;
+                        values[count] = sum;
+                        count++;
+                    }
+                }
+            }
+            rowPointers[height] = count;
+
+            return new SparseMatrix(label, width, height, rowPointers,
+                                    Arrays.copyOf(columns, count),
+                                    Arrays.copyOf(values, count));
+        }
+    }
+
+    /**
+     * Creates a sparse copy of the dense matrix provided, keeping only its
+     * nonzero entries.
+     * @param m The matrix to copy.
+     */
+    public SparseMatrix(Matrix m) {
+        this.label = m.getLabel();
+        this.width = m.getWidth();
+        this.height = m.getHeight();
+        this.rowPointers = new int[height + 1];
+
+        double[] entries = m.toArray();
+        int count = 0;
+        for(double entry : entries) {
+            if(entry != 0) {
+                count++;
+            }
+        }
+
+        this.columns = new int[count];
+        this.values = new double[count];
+
+        count = 0;
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                double entry = entries[y * width + x];
+
+                if(entry != 0) {
+                    columns[count] = x;
+                    values[count] = entry;
+                    count++;
+                }
+            }
+            rowPointers[y + 1] = count;
+        }
+    }
+
+    private SparseMatrix(String label, int width, int height, int[] rowPointers, int[] columns, double[] values) {
+        this.label = label;
+        this.width = width;
+        this.height = height;
+        this.rowPointers = rowPointers;
+        this.columns = columns;
+        this.values = values;
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Gets the width of the matrix.
+     * @return The width of the matrix.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Gets the height of the matrix.
+     * @return The height of the matrix.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Gets the number of entries actually stored, i.e. the nonzeros.
+     * @return The number of nonzero entries.
+     */
+    public int getNonZeros() {
+        return values.length;
+    }
+
+    /**
+     * Returns the value of the entry in the position provided. Takes time
+     * logarithmic in the number of nonzeros in the row.
+     * @param x The x index.
+     * @param y The y index.
+     * @return The value at the specified index.
+     * @throws IndexOutOfBoundsException if the x or y indices provided are
+     * out of range.
+     */
+    public double getEntry(int x, int y) throws IndexOutOfBoundsException {
+        if(x >= width || x < 0 || y >= height || y < 0) {
+            throw new IndexOutOfBoundsException("Index out of bounds!");
+        }
+
+        int index = Arrays.binarySearch(columns, rowPointers[y], rowPointers[y + 1], x);
+
+        return index >= 0 ? values[index] : 0;
+    }
+
+    /**
+     * Returns the label of the matrix.
+     * @return The label of the matrix.
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Sets the label of the matrix.
+     * @param label The new label.
+     */
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns whether the matrix is square or not.
+     * @return Whether the matrix is square or not.
+     */
+    public boolean isSquare() {
+        return width == height;
+    }
+
+    /**
+     * Returns a dense copy of this matrix. Note that this allocates the full
+     * width * height entries.
+     * @return The dense matrix.
+     */
+    public Matrix toMatrix() {
+        double[] entries = new double[width * height];
+
+        for(int y = 0; y < height; y++) {
+            for(int p = rowPointers[y]; p < rowPointers[y + 1]; p++) {
+                entries[y * width + columns[p]] = values[p];
+            }
+        }
+
+        return Matrix.wrap(label, width, height, entries);
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Multiplies this matrix by the vector provided.
+     * @param label The label for the new vector.
+     * @param v The vector to multiply by.
+     * @return The new vector, with one entry per row of this matrix.
+     * @throws IllegalArgumentException if the size of the vector is not equal
+     * to the width of this matrix.
+     */
+    public Vector mult(String label, Vector v) throws IllegalArgumentException {
+        if(v.getSize() != width) {
+            throw new IllegalArgumentException("Cannot multiply this matrix and vector!");
+        }
+
+        double[] toReturn = new double[height];
+        multInto(v.toArray(), toReturn);
+
+        return Vector.wrap(label, toReturn);
+    }
+
+    /**
+     * Multiplies this matrix by the vector provided.
+     * @param v The vector to multiply by.
+     * @return The new vector, with one entry per row of this matrix.
+     * @throws IllegalArgumentException if the size of the vector is not equal
+     * to the width of this matrix.
+     */
+    public Vector mult(Vector v) throws IllegalArgumentException {
+        return mult(this.label, v);
+    }
+
+    /**
+     * Multiplies this matrix by the dense matrix provided. Each nonzero adds
+     * a multiple of one row of m to one row of the result.
+     * @param label The label for the new matrix.
+     * @param m The matrix to multiply by.
+     * @return The new dense matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public Matrix mult(String label, Matrix m) throws IllegalArgumentException {
+        if(m.getHeight() != width) {
+            throw new IllegalArgumentException("Cannot multiply these matrices!");
+        }
+
+        int cols = m.getWidth();
+        double[] b = m.toArray();
+        double[] toReturn = new double[height * cols];
+
+        for(int y = 0; y < height; y++) {
+            int row = y * cols;
+
+            for(int p = rowPointers[y]; p < rowPointers[y + 1]; p++) {
+                double value = values[p];
+                int bRow = columns[p] * cols;
+
+                for(int x = 0; x < cols; x++) {
+                    toReturn[row + x] += value * b[bRow + x];
+                }
+            }
+        }
+
+        return Matrix.wrap(label, cols, height, toReturn);
+    }
+
+    /**
+     * Multiplies this matrix by the dense matrix provided.
+     * @param m The matrix to multiply by.
+     * @return The new dense matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public Matrix mult(Matrix m) throws IllegalArgumentException {
+        return mult(this.label, m);
+    }
+
+    /**
+     * Multiplies this matrix by the sparse matrix provided, using Gustavson's
+     * row-by-row algorithm. The work is proportional to the number of
+     * multiplications actually performed, not to the size of the matrices.
+     * @param label The label for the new matrix.
+     * @param m The matrix to multiply by.
+     * @return The new sparse matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public SparseMatrix mult(String label, SparseMatrix m) throws IllegalArgumentException {
+        if(m.height != width) {
+            throw new IllegalArgumentException("Cannot multiply these matrices!");
+        }
+
+        int cols = m.width;
+        int[] resultPointers = new int[height + 1];
+        int[] resultColumns = new int[Math.max(values.length, 16)];
+        double[] resultValues = new double[resultColumns.length];
+        int count = 0;
+
+        // A dense accumulator for the current row, with marker[x] == y when
+        // column x has already been touched in row y
+        double[] accumulator = new double[cols];
+        int[] marker = new int[cols];
+        Arrays.fill(marker, -1);
+        int[] touched = new int[cols];
+
+        for(int y = 0; y < height; y++) {
+            int touchedCount = 0;
+
+            for(int p = rowPointers[y]; p < rowPointers[y + 1]; p++) {
+                double value = values[p];
+                int k = columns[p];
+
+                for(int q = m.rowPointers[k]; q < m.rowPointers[k + 1]; q++) {
+                    int x = m.columns[q];
+
+                    if(marker[x] != y) {
+                        marker[x] = y;
+                        accumulator[x] = 0;
+                        touched[touchedCount++] = x;
+                    }
+                    accumulator[x] += value * m.values[q];
+                }
+            }
+
+            Arrays.sort(touched, 0, touchedCount);
+
+            if(count + touchedCount > resultColumns.length) {
+                int capacity = Math.max(resultColumns.length * 2, count + touchedCount);
+                resultColumns = Arrays.copyOf(resultColumns, capacity);
+                resultValues = Arrays.copyOf(resultValues, capacity);
+            }
+
+            for(int i = 0; i < touchedCount; i++) {
+                int x = touched[i];
+
+                if(accumulator[x] != 0) {
+                    resultColumns[count] = x;
+                    resultValues[count] = accumulator[x];
+                    count++;
+                }
+            }
+
+            resultPointers[y + 1] = count;
+        }
+
+        return new SparseMatrix(label, cols, height, resultPointers,
+                                Arrays.copyOf(resultColumns, count),
+                                Arrays.copyOf(resultValues, count));
+    }
+
+    /**
+     * Multiplies this matrix by the sparse matrix provided.
+     * @param m The matrix to multiply by.
+     * @return The new sparse matrix.
+     * @throws IllegalArgumentException if the height of the matrix provided is
+     * not equal to the width of this matrix.
+     */
+    public SparseMatrix mult(SparseMatrix m) throws IllegalArgumentException {
+        return mult(this.label, m);
+    }
+
+    /**
+     * Returns the transpose of this matrix, which is also sparse. Takes time
+     * proportional to the number of nonzeros plus the width.
+     * @return The transpose of this matrix.
+     */
+    public SparseMatrix transpose() {
+        int[] transposedPointers = new int[width + 1];
+        int[] transposedRows = new int[values.length];
+        double[] transposedValues = new double[values.length];
+
+        for(int p = 0; p < values.length; p++) {
+            transposedPointers[columns[p] + 1]++;
+        }
+        for(int x = 0; x < width; x++) {
+            transposedPointers[x + 1] += transposedPointers[x];
+        }
+
+        // Walking the rows in order keeps each new row sorted
+        int[] next = Arrays.copyOf(transposedPointers, width);
+        for(int y = 0; y < height; y++) {
+            for(int p = rowPointers[y]; p < rowPointers[y + 1]; p++) {
+                int index = next[columns[p]]++;
+                transposedRows[index] = y;
+                transposedValues[index] = values[p];
+            }
+        }
+
+        return new SparseMatrix(label, height, width, transposedPointers, transposedRows, transposedValues);
+    }
+
+/****************************************************************/
+/*                           Override                           */
+/****************************************************************/
+
+    /**
+     * Formats the nonzero entries of the matrix into a string prefixed by
+     * the matrix's label, one "(x, y) value" per line.
+     * @return The formatted string.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(label);
+        sb.append(": ");
+        sb.append(width);
+        sb.append("x");
+        sb.append(height);
+        sb.append(", ");
+        sb.append(values.length);
+        sb.append(" nonzeros\n\n");
+
+        for(int y = 0; y < height; y++) {
+            for(int p = rowPointers[y]; p < rowPointers[y + 1]; p++) {
+                sb.append(String.format("    (%d, %d) %10.3f\n", columns[p], y, values[p]));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Tests whether this matrix is equal to the object provided.
+     * Will fail if the matrices are not the same size, if their labels
+     * are not the same, or if any of their entries differ. Will also
+     * fail if the object passed is null or not a SparseMatrix.
+     * @param obj The object to compare to.
+     * @return Whether or not the object passed is equal to this one.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if(!(obj instanceof SparseMatrix)) {
+            return false;
+        }
+
+        if(obj == this) return true;
+
+        SparseMatrix m = (SparseMatrix) obj;
+
+        if(m.width != this.width || m.height != this.height || !Objects.equals(m.label, this.label)) {
+            return false;
+        }
+
+        // Walk both rows at once; a column missing from one side is a zero
+        for(int y = 0; y < height; y++) {
+            int p = rowPointers[y];
+            int q = m.rowPointers[y];
+            int pEnd = rowPointers[y + 1];
+            int qEnd = m.rowPointers[y + 1];
+
+            while(p < pEnd || q < qEnd) {
+                int xp = p < pEnd ? columns[p] : width;
+                int xq = q < qEnd ? m.columns[q] : width;
+
+                double a = xp <= xq ? values[p] : 0;
+                double b = xq <= xp ? m.values[q] : 0;
+
+                if(Math.abs(a - b) > COMPARE_PRECISION) {
+                    return false;
+                }
+
+                if(xp <= xq) p++;
+                if(xq <= xp) q++;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the hash code for this object. Overridden to
+     * ensure that the contract for <code>hashCode()</code> is not
+     * broken as a result of overriding <code>equals()</code>.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        HashCodeBuilder hb = new HashCodeBuilder(17, 31);
+
+        hb.append(label);
+        hb.append(width);
+        hb.append(height);
+        return hb.toHashCode();
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * The raw CSR arrays, for the preconditioners. They are not copied and
+     * must not be modified.
+     */
+    int[] getRowPointers() {
+        return rowPointers;
+    }
+
+    int[] getColumns() {
+        return columns;
+    }
+
+    double[] getValues() {
+        return values;
+    }
+
+    /*
+     * Computes y = Ax for plain arrays, where x has one entry per column and
+     * y one entry per row.
+     */
+    void multInto(double[] x, double[] y) {
+        for(int row = 0; row < height; row++) {
+            double sum = 0;
+            for(int p = rowPointers[row]; p < rowPointers[row + 1]; p++) {
+                sum += values[p] * x[columns[p]];
+            }
+            y[row] = sum;
+        }
+    }
+
+    /*
+     * Computes C += AS for plain row-major arrays, where A has rows rows and
+     * one column per row of this matrix, and C has one column per column of
+     * this matrix. Row k of this matrix is added to row i of C scaled by
+     * A[i][k], so zeros in A are skipped entirely.
+     */
+    void leftMultInto(double[] a, int rows, double[] c) {
+        for(int i = 0; i < rows; i++) {
+            int aRow = i * height;
+            int cRow = i * width;
+
+            for(int k = 0; k < height; k++) {
+                double factor = a[aRow + k];
+                if(factor == 0) {
+                    continue;
+                }
+
+                for(int p = rowPointers[k]; p < rowPointers[k + 1]; p++) {
+                    c[cRow + columns[p]] += factor * values[p];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,503 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * An n-dimensional vector which only stores its nonzero entries, as a sorted
+ * array of indices and a matching array of values. Memory and the cost of
+ * every operation scale with the number of nonzeros rather than with n.
+ *
+ * Operations between two sparse vectors merge their index arrays, and produce
+ * a sparse vector. Operations with a dense {@link Vector} only visit the
+ * nonzeros of the sparse one, but adding or subtracting produces a dense
+ * vector since the result is generally dense.
+ */
+
+import java.util.Arrays;
+import java.util.Objects;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+public class SparseVector {
+
+    private final int[] indices;
+    private final double[] values;
+    private final int size;
+    private String label;
+
+    /**
+     * Creates a new sparse vector from the nonzero entries provided. The
+     * indices may be in any order, but must not repeat. Zero values are
+     * dropped. The arrays are copied.
+     * @param label The label for the vector.
+     * @param size The size of the vector.
+     * @param indices The indices of the nonzero entries.
+     * @param values The values of the nonzero entries.
+     * @throws IllegalArgumentException if the size is 0, if the arrays are not
+     * the same length, or if an index repeats.
+     * @throws IndexOutOfBoundsException if an index is out of range.
+     */
+    public SparseVector(String label, int size, int[] indices, double[] values) throws IllegalArgumentException, IndexOutOfBoundsException {
+        if(size < 1) {
+            throw new IllegalArgumentException("Size of vector cannot be 0!");
+        }
+        if(indices.length != values.length) {
+            throw new IllegalArgumentException("Index and value arrays are not the same length!");
+        }
+
+        // Sort the positions of the entries by index
+        Integer[] order = new Integer[indices.length];
+        for(int i = 0; i < order.length; i++) {
+            if(indices[i] >= size || indices[i] < 0) {
+                throw new IndexOutOfBoundsException("Index out of bounds!");
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(indices[a], indices[b]));
+
+        int[] sortedIndices = new int[indices.length];
+        double[] sortedValues = new double[indices.length];
+        int count = 0;
+
+        for(int i = 0; i < order.length; i++) {
+            int index = indices[order[i]];
+
+            if(i > 0 && index == indices[order[i - 1]]) {
+                throw new IllegalArgumentException("Index " + index + " appears more than once!");
+            }
+
+            if(values[order[i]] != 0) {
+                sortedIndices[count] = index;
+                sortedValues[count] = values[order[i]];
+                count++;
+            }
+        }
+
+        this.label = label;
+        this.size = size;
+        this.indices = Arrays.copyOf(sortedIndices, count);
+        this.values = Arrays.copyOf(sortedValues, count);
+    }
+
+    /**
+     * Creates a sparse copy of the dense vector provided, keeping only its
+     * nonzero entries.
+     * @param v The vector to copy.
+     */
+    public SparseVector(Vector v) {
+        double[] entries = v.toArray();
+
+        int count = 0;
+        for(double entry : entries) {
+            if(entry != 0) {
+                count++;
+            }
+        }
+
+        this.label = v.getLabel();
+        this.size = entries.length;
+        this.indices = new int[count];
+        this.values = new double[count];
+
+        count = 0;
+        for(int i = 0; i < entries.length; i++) {
+            if(entries[i] != 0) {
+                indices[count] = i;
+                values[count] = entries[i];
+                count++;
+            }
+        }
+    }
+
+    /*
+     * Wraps the sorted, zero-free arrays provided without copying them.
+     */
+    private SparseVector(String label, int size, int[] indices, double[] values, int count) {
+        this.label = label;
+        this.size = size;
+        this.indices = count == indices.length ? indices : Arrays.copyOf(indices, count);
+        this.values = count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+/****************************************************************/
+/*                      Getters / setters                       */
+/****************************************************************/
+
+    /**
+     * Gets the number of entries in the vector, including zeros.
+     * @return The size of the vector.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of entries actually stored, i.e. the nonzeros.
+     * @return The number of nonzero entries.
+     */
+    public int getNonZeros() {
+        return values.length;
+    }
+
+    /**
+     * Computes the magnitude of the vector.
+     * @return The magnitude of the vector.
+     */
+    public double getMagnitude() {
+        double sum = 0;
+
+        for(double i : values) {
+            sum += i*i;
+        }
+
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Gets the value of the vector's entry at the index provided. Takes time
+     * logarithmic in the number of nonzeros.
+     * @param index The index of the entry to return.
+     * @return The value of the entry.
+     * @throws IndexOutOfBoundsException if the index is greater than the size of the vector.
+     */
+    public double getEntry(int index) throws IndexOutOfBoundsException {
+        if(index >= size || index < 0) {
+            throw new IndexOutOfBoundsException("Index out of bounds!");
+        }
+
+        int position = Arrays.binarySearch(indices, index);
+
+        return position >= 0 ? values[position] : 0;
+    }
+
+    /**
+     * Returns the label of the vector.
+     * @return The label of the vector.
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Sets the label of the vector.
+     * @param label The new label.
+     */
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns a dense copy of this vector.
+     * @return The dense vector.
+     */
+    public Vector toVector() {
+        double[] entries = new double[size];
+
+        for(int i = 0; i < indices.length; i++) {
+            entries[indices[i]] = values[i];
+        }
+
+        return Vector.wrap(label, entries);
+    }
+
+/****************************************************************/
+/*                          Arithmetic                          */
+/****************************************************************/
+
+    /**
+     * Adds a sparse vector of equal size to this vector.
+     * @param label The label for the new vector.
+     * @param a     The vector to add.
+     * @return The new sparse vector.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public SparseVector add(String label, SparseVector a) throws IllegalArgumentException {
+        if(a.size != this.size) {
+            throw new IllegalArgumentException("Cannot add vectors of unequal size!");
+        }
+
+        return merge(label, a, 1);
+    }
+
+    /**
+     * Adds a sparse vector of equal size to this vector.
+     * @param a     The vector to add.
+     * @return The new sparse vector.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public SparseVector add(SparseVector a) throws IllegalArgumentException {
+        return add(this.label, a);
+    }
+
+    /**
+     * Adds a dense vector of equal size to this vector.
+     * @param label The label for the new vector.
+     * @param a     The vector to add.
+     * @return The new dense vector.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public Vector add(String label, Vector a) throws IllegalArgumentException {
+        if(a.getSize() != this.size) {
+            throw new IllegalArgumentException("Cannot add vectors of unequal size!");
+        }
+
+        double[] toReturn = a.toArray();
+        scatter(toReturn, 1);
+
+        return Vector.wrap(label, toReturn);
+    }
+
+    /**
+     * Adds a dense vector of equal size to this vector.
+     * @param a     The vector to add.
+     * @return The new dense vector.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public Vector add(Vector a) throws IllegalArgumentException {
+        return add(this.label, a);
+    }
+
+    /**
+     * Subtracts a sparse vector from this vector.
+     * @param label The label for the new vector.
+     * @param a     Vector to subtract.
+     * @return The new sparse vector.
+     * @throws IllegalArgumentException if the vectors are not equal size.
+     */
+    public SparseVector sub(String label, SparseVector a) throws IllegalArgumentException {
+        if(a.size != this.size) {
+            throw new IllegalArgumentException("Cannot subtract vectors of unequal size!");
+        }
+
+        return merge(label, a, -1);
+    }
+
+    /**
+     * Subtracts a sparse vector from this vector.
+     * @param a     Vector to subtract.
+     * @return The new sparse vector.
+     * @throws IllegalArgumentException if the vectors are not equal size.
+     */
+    public SparseVector sub(SparseVector a) throws IllegalArgumentException {
+        return sub(this.label, a);
+    }
+
+    /**
+     * Subtracts a dense vector from this vector.
+     * @param label The label for the new vector.
+     * @param a     Vector to subtract.
+     * @return The new dense vector.
+     * @throws IllegalArgumentException if the vectors are not equal size.
+     */
+    public Vector sub(String label, Vector a) throws IllegalArgumentException {
+        if(a.getSize() != this.size) {
+            throw new IllegalArgumentException("Cannot subtract vectors of unequal size!");
+        }
+
+        double[] toReturn = a.toArray();
+        for(int i = 0; i < toReturn.length; i++) {
+            toReturn[i] = -toReturn[i];
+        }
+        scatter(toReturn, 1);
+
+        return Vector.wrap(label, toReturn);
+    }
+
+    /**
+     * Subtracts a dense vector from this vector.
+     * @param a     Vector to subtract.
+     * @return The new dense vector.
+     * @throws IllegalArgumentException if the vectors are not equal size.
+     */
+    public Vector sub(Vector a) throws IllegalArgumentException {
+        return sub(this.label, a);
+    }
+
+    /**
+     * Multiplies each entry in this vector by a constant, returning a new
+     * vector.
+     * @param c The constant by which to multiply.
+     * @return The new sparse vector.
+     */
+    public SparseVector mult(double c) {
+        if(c == 0) {
+            return new SparseVector(label, size, new int[0], new double[0], 0);
+        }
+
+        double[] toReturn = new double[values.length];
+        for(int i = 0; i < values.length; i++) {
+            toReturn[i] = values[i] * c;
+        }
+
+        return new SparseVector(label, size, indices, toReturn, values.length);
+    }
+
+    /**
+     * Computes the dot product between this vector and another sparse vector
+     * by walking both index arrays at once.
+     * @param a The vector to dot with.
+     * @return The dot product.
+     * @throws IllegalArgumentException if the vectors are not the same size.
+     */
+    public double dot(SparseVector a) throws IllegalArgumentException {
+        if(a.size != this.size) {
+            throw new IllegalArgumentException("Cannot take the dot product of vectors with unequal size!");
+        }
+
+        double sum = 0;
+        int i = 0, j = 0;
+
+        while(i < indices.length && j < a.indices.length) {
+            if(indices[i] < a.indices[j]) {
+                i++;
+            }
+            else if(indices[i] > a.indices[j]) {
+                j++;
+            }
+            else {
+                sum += values[i++] * a.values[j++];
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Computes the dot product between this vector and a dense vector,
+     * visiting only the nonzeros of this one.
+     * @param a The vector to dot with.
+     * @return The dot product.
+     * @throws IllegalArgumentException if the vectors are not the same size.
+     */
+    public double dot(Vector a) throws IllegalArgumentException {
+        if(a.getSize() != this.size) {
+            throw new IllegalArgumentException("Cannot take the dot product of vectors with unequal size!");
+        }
+
+        double sum = 0;
+
+        for(int i = 0; i < indices.length; i++) {
+            sum += values[i] * a.getEntry(indices[i]);
+        }
+
+        return sum;
+    }
+
+/****************************************************************/
+/*                           Override                           */
+/****************************************************************/
+
+    /**
+     * Formats the nonzero entries of the vector into a string prefixed by the
+     * vector's label, one "index: value" per line.
+     * @return The formatted string.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(label);
+        sb.append(": \n\n");
+
+        for(int i = 0; i < indices.length; i++) {
+            sb.append("    ");
+            sb.append(indices[i]);
+            sb.append(": ");
+            sb.append(values[i]);
+            sb.append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Test for equality between this vector and another sparse vector.
+     * Will fail if the vectors are not the same size, if they do not
+     * have the same label, or if their entries are not all identical.
+     * Will also fail if the object passed is null or not a SparseVector.
+     * @param obj The object to compare to.
+     * @return Whether or not the object passed is equal to this one.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if(!(obj instanceof SparseVector)) {
+            return false;
+        }
+
+        if(obj == this) return true;
+
+        SparseVector v = (SparseVector) obj;
+
+        if(v.size != this.size) return false;
+        if(!Objects.equals(v.label, label)) return false;
+
+        // Zeros are never stored, so equal vectors store identical arrays
+        return Arrays.equals(v.indices, indices) && Arrays.equals(v.values, values);
+    }
+
+    /**
+     * Returns the hash code for this object. Overridden to
+     * ensure that the contract for <code>hashCode()</code> is not
+     * broken as a result of overriding <code>equals()</code>.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        HashCodeBuilder hb = new HashCodeBuilder(17, 31);
+
+        hb.append(indices);
+        hb.append(values);
+        hb.append(size);
+        hb.append(label);
+        return hb.toHashCode();
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Adds sign times this vector to the dense array provided, touching only
+     * the nonzero positions.
+     */
+    void scatter(double[] dest, double sign) {
+        for(int i = 0; i < indices.length; i++) {
+            dest[indices[i]] += sign * values[i];
+        }
+    }
+
+    /*
+     * Computes this + sign * a by merging the two index arrays. Entries that
+     * cancel out are dropped.
+     */
+    private SparseVector merge(String label, SparseVector a, double sign) {
+        int[] mergedIndices = new int[indices.length + a.indices.length];
+        double[] mergedValues = new double[mergedIndices.length];
+        int count = 0;
+        int i = 0, j = 0;
+
+        while(i < indices.length || j < a.indices.length) {
+            int index;
+            double value;
+
+            if(j == a.indices.length || (i < indices.length && indices[i] < a.indices[j])) {
+                index = indices[i];
+                value = values[i++];
+            }
+            else if(i == indices.length || indices[i] > a.indices[j]) {
+                index = a.indices[j];
+                value = sign * a.values[j++];
+            }
+            else {
+                index = indices[i];
+                value = values[i++] + sign * a.values[j++];
+            }
+
+            if(value != 0) {
+                mergedIndices[count] = index;
+                mergedValues[count] = value;
+                count++;
+            }
+        }
+
+        return new SparseVector(label, size, mergedIndices, mergedValues, count);
+    }
+}
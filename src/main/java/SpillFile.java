@@ -0,0 +1,150 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * A scratch file that a size-bounded {@link Memory} pages matrices and
+ * vectors out to. Each variable is written as a single {@link BinaryFormat}
+ * record. Space freed when a variable is paged back in or removed is kept
+ * in a free list and reused first-fit, with neighbouring holes merged, so
+ * the file only grows when no hole is big enough.
+ *
+ * The file is deleted when it is closed (and, on a best-effort basis, if the
+ * JVM exits first). It is not thread-safe; Memory only uses it while
+ * holding its lock.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+final class SpillFile implements Closeable {
+
+    private final FileChannel channel;
+
+    /*
+     * The holes in the file, from position to length. Holes never touch each
+     * other or the end of the file.
+     */
+    private final TreeMap<Long, Long> holes = new TreeMap<>();
+
+    /*
+     * The end of the last record in the file.
+     */
+    private long end;
+
+    /*
+     * Creates a new spill file in the directory provided.
+     */
+    SpillFile(Path directory) throws IOException {
+        Path file = Files.createTempFile(directory, "memory", ".spill");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                        StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /*
+     * Returns the number of bytes a Matrix or Vector takes up in the file.
+     */
+    static long sizeOf(Object data) {
+        return data instanceof Matrix ? BinaryFormat.sizeOf((Matrix) data) : BinaryFormat.sizeOf((Vector) data);
+    }
+
+    /*
+     * Writes a Matrix or Vector to the file and returns its position.
+     */
+    long write(Object data) throws IOException {
+        long position = allocate(sizeOf(data));
+
+        try {
+            channel.position(position);
+            if(data instanceof Matrix) {
+                BinaryFormat.write((Matrix) data, channel);
+            }
+            else {
+                BinaryFormat.write((Vector) data, channel);
+            }
+        }
+        catch(IOException e) {
+            release(position, sizeOf(data));
+            throw e;
+        }
+
+        return position;
+    }
+
+    /*
+     * Reads back the Matrix (or Vector) written at the position provided.
+     */
+    Object read(long position, boolean matrix) throws IOException {
+        channel.position(position);
+
+        return matrix ? BinaryFormat.readMatrix(channel) : BinaryFormat.readVector(channel);
+    }
+
+    /*
+     * Frees the space taken up by a record so it can be reused.
+     */
+    void release(long position, long length) {
+        long start = position;
+        long stop = position + length;
+
+        // Merge with the holes on either side
+        Map.Entry<Long, Long> before = holes.floorEntry(start);
+        if(before != null && before.getKey() + before.getValue() == start) {
+            start = before.getKey();
+            holes.remove(start);
+        }
+
+        Long after = holes.ceilingKey(stop);
+        if(after != null && after == stop) {
+            stop += holes.remove(after);
+        }
+
+        if(stop == end) {
+            end = start;
+        }
+        else {
+            holes.put(start, stop - start);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+/****************************************************************/
+/*                        Helper methods                        */
+/****************************************************************/
+
+    /*
+     * Finds room for a record, taking the first hole that is big enough or
+     * else appending it.
+     */
+    private long allocate(long length) {
+        Iterator<Map.Entry<Long, Long>> it = holes.entrySet().iterator();
+
+        while(it.hasNext()) {
+            Map.Entry<Long, Long> hole = it.next();
+            long position = hole.getKey();
+            long size = hole.getValue();
+
+            if(size >= length) {
+                it.remove();
+                if(size > length) {
+                    holes.put(position + length, size - length);
+                }
+                return position;
+            }
+        }
+
+        long position = end;
+        end += length;
+        return position;
+    }
+}
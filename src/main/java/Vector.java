@@ -47,6 +47,22 @@ public class Vector {
         this.label = label;
     }
 
+    /*
+     * Wraps the array provided without copying it.
+     */
+    static Vector wrap(String label, double[] entries) {
+        if(entries.length == 0) {
+            throw new IllegalArgumentException("Size of vector cannot be 0!");
+        }
+
+        return new Vector(entries, label);
+    }
+
+    private Vector(double[] entries, String label) {
+        this.entries = entries;
+        this.label = label;
+    }
+
 /****************************************************************/
 /*                      Getters / setters                       */
 /****************************************************************/
@@ -64,13 +80,7 @@ public class Vector {
      * @return The magnitude of the vector.
      */
     public double getMagnitude() {
-        double sum = 0;
-
-        for(double i : entries) {
-            sum += i*i;
-        }
-
-        return Math.sqrt(sum);
+        return Math.sqrt(ElementwiseKernels.INSTANCE.sumOfSquares(entries, 0, entries.length));
     }
 
     /**
@@ -121,6 +131,20 @@ public class Vector {
         setRand(0, 10);
     }
 
+    /*
+     * Returns a copy of the entries.
+     */
+    double[] toArray() {
+        return entries.clone();
+    }
+
+    /*
+     * Returns the backing array itself, not a copy, for bulk I/O.
+     */
+    double[] getEntries() {
+        return entries;
+    }
+
     /**
      * Returns the vector's label.
      * @return The string containing the vector's label.
@@ -133,6 +157,15 @@ public class Vector {
 /*                          Arithmetic                          */
 /****************************************************************/
 
+    /**
+     * Starts a lazy expression with this vector, so that a chain of
+     * operations is evaluated in as few passes as possible. See {@link Expression}.
+     * @return The expression.
+     */
+    public Expression lazy() {
+        return Expression.of(this);
+    }
+
     /**
      * Adds a vector of equal size to this vector.
      * @param label The label for the new vector.
@@ -146,10 +179,7 @@ public class Vector {
         }
 
         Vector toReturn = new Vector(label, this.getSize());
-
-        for(int i = 0; i < a.getSize(); i++) {
-            toReturn.setEntry(i, a.getEntry(i) + this.getEntry(i));
-        }
+        addInto(this, a, toReturn);
 
         return toReturn;
     }
@@ -176,10 +206,7 @@ public class Vector {
             throw new IllegalArgumentException("Cannot subtract vectors of unequal size!");
         }
         Vector toReturn = new Vector(label, this.getSize());
-
-        for(int i = 0; i < a.getSize(); i++) {
-            toReturn.setEntry(i, this.getEntry(i) - a.getEntry(i));
-        }
+        subInto(this, a, toReturn);
 
         return toReturn;
     }
@@ -194,6 +221,64 @@ public class Vector {
         return sub(this.label, a);
     }
 
+    /**
+     * Adds a sparse vector of equal size to this vector. Only the nonzeros of
+     * the sparse vector are visited after the copy.
+     * @param label The label for the new vector.
+     * @param a     The vector to add.
+     * @return The new vector.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public Vector add(String label, SparseVector a) throws IllegalArgumentException {
+        if(a.getSize() != this.getSize()) {
+            throw new IllegalArgumentException("Cannot add vectors of unequal size!");
+        }
+
+        double[] toReturn = entries.clone();
+        a.scatter(toReturn, 1);
+
+        return new Vector(toReturn, label);
+    }
+
+    /**
+     * Adds a sparse vector of equal size to this vector.
+     * @param a     The vector to add.
+     * @return The new vector.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public Vector add(SparseVector a) throws IllegalArgumentException {
+        return add(this.label, a);
+    }
+
+    /**
+     * Subtracts a sparse vector from this vector. Only the nonzeros of the
+     * sparse vector are visited after the copy.
+     * @param label The label for the new vector.
+     * @param a     Vector to subtract.
+     * @return The new vector.
+     * @throws IllegalArgumentException if the vectors are not equal size.
+     */
+    public Vector sub(String label, SparseVector a) throws IllegalArgumentException {
+        if(a.getSize() != this.getSize()) {
+            throw new IllegalArgumentException("Cannot subtract vectors of unequal size!");
+        }
+
+        double[] toReturn = entries.clone();
+        a.scatter(toReturn, -1);
+
+        return new Vector(toReturn, label);
+    }
+
+    /**
+     * Subtracts a sparse vector from this vector.
+     * @param a     Vector to subtract.
+     * @return The new vector.
+     * @throws IllegalArgumentException if the vectors are not equal size.
+     */
+    public Vector sub(SparseVector a) throws IllegalArgumentException {
+        return sub(this.label, a);
+    }
+
     /**
      * Computes the cross product between this vector and another vector.
      * @param label The label for the new vector.
@@ -234,13 +319,118 @@ public class Vector {
             throw new IllegalArgumentException("Cannot take the dot product of vectors with unequal size!");
         }
 
-        double sum = 0;
+        return ElementwiseKernels.INSTANCE.dot(a.entries, 0, this.entries, 0, entries.length);
+    }
+
+    /**
+     * Computes the dot product between this vector and a sparse vector,
+     * visiting only the nonzeros of the sparse one.
+     * @param a The vector to dot with.
+     * @return The dot product.
+     * @throws IllegalArgumentException if the vectors are not the same size.
+     */
+    public double dot(SparseVector a) throws IllegalArgumentException {
+        return a.dot(this);
+    }
 
-        for(int i = 0; i < a.getSize(); i++) {
-            sum += a.getEntry(i) * this.getEntry(i);
+/****************************************************************/
+/*                     In-place arithmetic                      */
+/****************************************************************/
+
+    /**
+     * Adds a vector of equal size to this vector, overwriting this vector's
+     * entries with the result. Does not allocate.
+     * @param a The vector to add.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public void addInPlace(Vector a) throws IllegalArgumentException {
+        addInto(this, a, this);
+    }
+
+    /**
+     * Subtracts a vector from this vector, overwriting this vector's entries
+     * with the result. Does not allocate.
+     * @param a The vector to subtract.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public void subInPlace(Vector a) throws IllegalArgumentException {
+        subInto(this, a, this);
+    }
+
+    /**
+     * Adds a sparse vector of equal size to this vector, overwriting this
+     * vector's entries with the result. Only the nonzeros of the sparse
+     * vector are visited. Does not allocate.
+     * @param a The vector to add.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public void addInPlace(SparseVector a) throws IllegalArgumentException {
+        if(a.getSize() != this.getSize()) {
+            throw new IllegalArgumentException("Cannot add vectors of unequal size!");
+        }
+
+        a.scatter(entries, 1);
+    }
+
+    /**
+     * Subtracts a sparse vector from this vector, overwriting this vector's
+     * entries with the result. Only the nonzeros of the sparse vector are
+     * visited. Does not allocate.
+     * @param a The vector to subtract.
+     * @throws IllegalArgumentException if the two vectors are not equal size.
+     */
+    public void subInPlace(SparseVector a) throws IllegalArgumentException {
+        if(a.getSize() != this.getSize()) {
+            throw new IllegalArgumentException("Cannot subtract vectors of unequal size!");
+        }
+
+        a.scatter(entries, -1);
+    }
+
+    /**
+     * Multiplies each entry in this vector by a constant. Does not allocate.
+     * @param c The constant by which to multiply.
+     */
+    public void scaleInPlace(double c) {
+        ElementwiseKernels.INSTANCE.scale(c, entries, 0, entries.length);
+    }
+
+    /**
+     * Computes {@code a + b} and stores the result in {@code dest}. The
+     * destination may be one of the operands. Does not allocate.
+     * @param a    The first vector.
+     * @param b    The vector to add to the first.
+     * @param dest The vector to store the result in.
+     * @throws IllegalArgumentException if the vectors are not all the same size.
+     */
+    public static void addInto(Vector a, Vector b, Vector dest) throws IllegalArgumentException {
+        if(b.entries.length != a.entries.length) {
+            throw new IllegalArgumentException("Cannot add vectors of unequal size!");
+        }
+        if(dest.entries.length != a.entries.length) {
+            throw new IllegalArgumentException("Destination vector is the wrong size!");
+        }
+
+        ElementwiseKernels.INSTANCE.add(a.entries, 0, b.entries, 0, dest.entries, 0, a.entries.length);
+    }
+
+    /**
+     * Computes {@code a - b} and stores the result in {@code dest}. The
+     * destination may be one of the operands. Does not allocate.
+     * @param a    The first vector.
+     * @param b    The vector to subtract from the first.
+     * @param dest The vector to store the result in.
+     * @throws IllegalArgumentException if the vectors are not all the same size.
+     */
+    public static void subInto(Vector a, Vector b, Vector dest) throws IllegalArgumentException {
+        if(b.entries.length != a.entries.length) {
+            throw new IllegalArgumentException("Cannot subtract vectors of unequal size!");
+        }
+        if(dest.entries.length != a.entries.length) {
+            throw new IllegalArgumentException("Destination vector is the wrong size!");
         }
 
-        return sum;
+        ElementwiseKernels.INSTANCE.sub(a.entries, 0, b.entries, 0, dest.entries, 0, a.entries.length);
     }
 
 /****************************************************************/
@@ -0,0 +1,109 @@
+/**
+ * @author Jayden Chan
+ * @version 1
+ *
+ * The {@link ElementwiseKernels} written with the Java Vector API, using
+ * the widest double vectors the CPU supports. The API is an incubator
+ * module, so this class needs JDK 16 or later with
+ * {@code --add-modules jdk.incubator.vector} both to compile and to run.
+ * It is loaded reflectively and never referenced directly, so the rest of
+ * the library still builds and runs on Java 8.
+ *
+ * Each kernel processes whole vectors up to the last multiple of the
+ * vector length and finishes the remaining entries one at a time. The
+ * reductions keep two vector accumulators to hide the latency of the
+ * additions.
+ */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class SimdKernels extends ElementwiseKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /*
+     * Refuses to load when vectors hold a single double, where the scalar
+     * kernels are at least as fast.
+     */
+    SimdKernels() {
+        if(SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No SIMD support for doubles!");
+        }
+    }
+
+    @Override
+    double dot(double[] a, int aOff, double[] b, int bOff, int n) {
+        int step = SPECIES.length();
+        DoubleVector acc0 = DoubleVector.zero(SPECIES);
+        DoubleVector acc1 = DoubleVector.zero(SPECIES);
+        int i = 0;
+
+        for(; i <= n - 2 * step; i += 2 * step) {
+            DoubleVector a0 = DoubleVector.fromArray(SPECIES, a, aOff + i);
+            DoubleVector b0 = DoubleVector.fromArray(SPECIES, b, bOff + i);
+            DoubleVector a1 = DoubleVector.fromArray(SPECIES, a, aOff + i + step);
+            DoubleVector b1 = DoubleVector.fromArray(SPECIES, b, bOff + i + step);
+
+            acc0 = acc0.add(a0.mul(b0));
+            acc1 = acc1.add(a1.mul(b1));
+        }
+        for(; i <= n - step; i += step) {
+            DoubleVector a0 = DoubleVector.fromArray(SPECIES, a, aOff + i);
+            DoubleVector b0 = DoubleVector.fromArray(SPECIES, b, bOff + i);
+
+            acc0 = acc0.add(a0.mul(b0));
+        }
+
+        double sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for(; i < n; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    void add(double[] a, int aOff, double[] b, int bOff, double[] dest, int dOff, int n) {
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+
+        for(; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, aOff + i)
+                        .add(DoubleVector.fromArray(SPECIES, b, bOff + i))
+                        .intoArray(dest, dOff + i);
+        }
+        for(; i < n; i++) {
+            dest[dOff + i] = a[aOff + i] + b[bOff + i];
+        }
+    }
+
+    @Override
+    void sub(double[] a, int aOff, double[] b, int bOff, double[] dest, int dOff, int n) {
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+
+        for(; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, aOff + i)
+                        .sub(DoubleVector.fromArray(SPECIES, b, bOff + i))
+                        .intoArray(dest, dOff + i);
+        }
+        for(; i < n; i++) {
+            dest[dOff + i] = a[aOff + i] - b[bOff + i];
+        }
+    }
+
+    @Override
+    void scale(double c, double[] a, int off, int n) {
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+
+        for(; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, off + i).mul(c).intoArray(a, off + i);
+        }
+        for(; i < n; i++) {
+            a[off + i] *= c;
+        }
+    }
+}
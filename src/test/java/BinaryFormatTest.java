@@ -0,0 +1,201 @@
+import org.junit.Test;
+import org.junit.Before;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+public class BinaryFormatTest {
+
+    private Matrix m;
+    private Vector v;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        m = new Matrix("m\u00e9", 3, 2);
+        m.setRand(-10, 10);
+        v = new Vector("vector", 1.5, -2.0, 3.25, 4.0, 5.0);
+    }
+
+    @Test
+    public void testBufferRoundTrip() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (BinaryFormat.sizeOf(m) + BinaryFormat.sizeOf(v)));
+        BinaryFormat.write(m, buffer);
+        BinaryFormat.write(v, buffer);
+
+        assertFalse(buffer.hasRemaining());
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+
+        buffer.flip();
+        checkEquals(m, BinaryFormat.readMatrix(buffer));
+        checkEquals(v, BinaryFormat.readVector(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testColumnRoundTrip() throws IOException {
+        // Matrices built from vectors of size 1 are a single column wide
+        Matrix column = new Matrix("column", new Vector("", 1.5), new Vector("", -2.0));
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) BinaryFormat.sizeOf(column));
+        BinaryFormat.write(column, buffer);
+        buffer.flip();
+        checkEquals(column, BinaryFormat.readMatrix(buffer));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFormat.write(column, Channels.newChannel(out));
+        checkEquals(column, BinaryFormat.readMatrix(Channels.newChannel(new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    @Test
+    public void testNullLabel() throws IOException {
+        Matrix unlabelled = new Matrix(null, 2, 2);
+        Matrix empty = new Matrix("", 2, 2);
+        Vector vector = new Vector(null, 1.0, 2.0);
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (BinaryFormat.sizeOf(unlabelled) + BinaryFormat.sizeOf(empty)
+                                                       + BinaryFormat.sizeOf(vector)));
+        BinaryFormat.write(unlabelled, buffer);
+        BinaryFormat.write(empty, buffer);
+        BinaryFormat.write(vector, buffer);
+        buffer.flip();
+
+        // A null label and an empty one are told apart
+        assertNull(BinaryFormat.readMatrix(buffer).getLabel());
+        assertEquals("", BinaryFormat.readMatrix(buffer).getLabel());
+        assertNull(BinaryFormat.readVector(buffer).getLabel());
+    }
+
+    @Test
+    public void testChannelRoundTrip() throws IOException {
+        // Large enough to span several chunks
+        Matrix big = new Matrix("big", 300, 200);
+        big.setRand(-10, 10);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        BinaryFormat.write(big, channel);
+        BinaryFormat.write(v, channel);
+        BinaryFormat.write(m, channel);
+
+        byte[] bytes = out.toByteArray();
+        assertEquals(BinaryFormat.sizeOf(big) + BinaryFormat.sizeOf(v) + BinaryFormat.sizeOf(m), bytes.length);
+
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(bytes));
+        checkEquals(big, BinaryFormat.readMatrix(in));
+        checkEquals(v, BinaryFormat.readVector(in));
+        checkEquals(m, BinaryFormat.readMatrix(in));
+    }
+
+    @Test
+    public void testOffHeap() throws IOException {
+        try(Matrix off = MatrixTest.offHeapCopy(m)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) BinaryFormat.sizeOf(off));
+            BinaryFormat.write(off, buffer);
+            buffer.flip();
+            checkEquals(m, BinaryFormat.readMatrix(buffer));
+        }
+    }
+
+    @Test
+    public void testChunkBytes() {
+        assertEquals(24, BinaryFormat.chunkBytes(3));
+        assertEquals(BinaryFormat.CHUNK, BinaryFormat.chunkBytes(BinaryFormat.CHUNK / 8));
+
+        // Records of 2GB and up, where 8 * length overflows an int
+        assertEquals(BinaryFormat.CHUNK, BinaryFormat.chunkBytes(16384 * 16384));
+        assertEquals(BinaryFormat.CHUNK, BinaryFormat.chunkBytes(1 << 29));
+        assertEquals(BinaryFormat.CHUNK, BinaryFormat.chunkBytes(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testLayout() {
+        ByteBuffer buffer = ByteBuffer.allocate((int) BinaryFormat.sizeOf(v));
+        BinaryFormat.write(v, buffer);
+        buffer.flip().order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(0x4642554D, buffer.getInt(0));
+        assertEquals(BinaryFormat.VERSION, buffer.getShort(4));
+        assertEquals(5, buffer.getInt(8));
+        assertEquals(1, buffer.getInt(12));
+        assertEquals(6, buffer.getInt(16));
+
+        // The entries start on an 8 byte boundary after the label
+        assertEquals(32 + 5 * 8, buffer.limit());
+        assertEquals(1.5, buffer.getDouble(32), 0);
+        assertEquals(5.0, buffer.getDouble(64), 0);
+    }
+
+    @Test
+    public void testBufferTooSmall() {
+        ByteBuffer buffer = ByteBuffer.allocate((int) BinaryFormat.sizeOf(m) - 1);
+
+        try {
+            BinaryFormat.write(m, buffer);
+            fail();
+        }
+        catch(BufferOverflowException e) {
+            // Nothing is written
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void testWrongKind() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) BinaryFormat.sizeOf(v));
+        BinaryFormat.write(v, buffer);
+        buffer.flip();
+
+        thrown.expect(IOException.class);
+        BinaryFormat.readMatrix(buffer);
+    }
+
+    @Test
+    public void testBadMagic() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) BinaryFormat.sizeOf(v));
+        BinaryFormat.write(v, buffer);
+        buffer.flip();
+        buffer.put(0, (byte) 0);
+
+        thrown.expect(IOException.class);
+        BinaryFormat.readVector(buffer);
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) BinaryFormat.sizeOf(m));
+        BinaryFormat.write(m, buffer);
+        byte[] bytes = new byte[buffer.capacity() - 8];
+        buffer.flip();
+        buffer.get(bytes);
+
+        thrown.expect(EOFException.class);
+        BinaryFormat.readMatrix(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    private static void checkEquals(Matrix expected, Matrix actual) {
+        assertEquals(expected.getLabel(), actual.getLabel());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertArrayEquals(expected.toArray(), actual.toArray(), 0);
+    }
+
+    private static void checkEquals(Vector expected, Vector actual) {
+        assertEquals(expected.getLabel(), actual.getLabel());
+        assertArrayEquals(expected.toArray(), actual.toArray(), 0);
+    }
+}
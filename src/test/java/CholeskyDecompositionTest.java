@@ -0,0 +1,80 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class CholeskyDecompositionTest {
+    private static final double THRESH = 1e-9;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testConstructor() {
+        thrown.expect(UnsupportedOperationException.class);
+        new CholeskyDecomposition(new Matrix("", 3, 4));
+    }
+
+    @Test
+    public void testFactor() {
+        Matrix a = new Matrix("", new Vector("", 4, 12, -16),
+                                  new Vector("", 12, 37, -43),
+                                  new Vector("", -16, -43, 98));
+
+        CholeskyDecomposition c = a.cholesky();
+        Matrix l = c.getL();
+
+        assertEquals(true, c.isSPD());
+        assertEquals(2, l.getEntry(0, 0), THRESH);
+        assertEquals(6, l.getEntry(0, 1), THRESH);
+        assertEquals(1, l.getEntry(1, 1), THRESH);
+        assertEquals(-8, l.getEntry(0, 2), THRESH);
+        assertEquals(5, l.getEntry(1, 2), THRESH);
+        assertEquals(3, l.getEntry(2, 2), THRESH);
+        assertEquals(0, l.getEntry(2, 0), THRESH);
+        assertEquals(36, c.determinant(), THRESH);
+    }
+
+    @Test
+    public void testSolve() {
+        // A Gram matrix large enough to use more than one panel
+        Matrix b = new Matrix("", 150, 160);
+        b.setRand(-10, 10);
+        Matrix a = b.transpose().mult(b);
+
+        Matrix rhs = new Matrix("", 3, 150);
+        rhs.setRand(-10, 10);
+
+        CholeskyDecomposition c = a.cholesky();
+        assertEquals(true, c.isSPD());
+
+        Matrix x = c.solve(rhs);
+        Matrix ax = a.mult(x);
+        Vector x0 = c.solve(rhs.getColumnVector(0));
+
+        for(int j = 0; j < rhs.getHeight(); j++) {
+            for(int i = 0; i < rhs.getWidth(); i++) {
+                assertEquals(rhs.getEntry(i, j), ax.getEntry(i, j), 1e-6);
+            }
+            assertEquals(x.getEntry(0, j), x0.getEntry(j), THRESH);
+        }
+    }
+
+    @Test
+    public void testNotSPD() {
+        Matrix indefinite = new Matrix("", new Vector("", 1, 2),
+                                           new Vector("", 2, 1));
+
+        Matrix asymmetric = new Matrix("", new Vector("", 4, 1),
+                                           new Vector("", 2, 4));
+
+        assertEquals(false, indefinite.cholesky().isSPD());
+        assertEquals(false, asymmetric.cholesky().isSPD());
+
+        thrown.expect(ArithmeticException.class);
+        indefinite.cholesky().solve(new Vector("", 1, 2));
+    }
+}
@@ -0,0 +1,127 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class ConjugateGradientTest {
+    private static final double THRESH = 1e-6;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testSolve() {
+        SparseMatrix a = poisson(30);
+        Vector b = rightHandSide(a.getHeight());
+
+        ConjugateGradient cg = new ConjugateGradient();
+        Vector x = cg.solve(a::mult, b);
+
+        assertTrue(cg.getResidual() <= cg.getTolerance());
+        checkSolution(a, x, b);
+    }
+
+    @Test
+    public void testPreconditioned() {
+        // Badly scaled rows make plain CG slow, and Jacobi fixes that
+        SparseMatrix a = scaled(poisson(20));
+        Vector b = rightHandSide(a.getHeight());
+
+        ConjugateGradient plain = new ConjugateGradient();
+        plain.setMaxIterations(5000);
+        plain.solve(a::mult, b);
+
+        ConjugateGradient cg = new ConjugateGradient();
+        cg.setPreconditioner(new JacobiPreconditioner(a));
+        Vector x = cg.solve(a::mult, b);
+
+        assertTrue(cg.getIterations() < plain.getIterations());
+        checkSolution(a, x, b);
+    }
+
+    @Test
+    public void testDense() {
+        Matrix a = new Matrix("", new Vector("", 4, 1, 0),
+                                  new Vector("", 1, 3, 1),
+                                  new Vector("", 0, 1, 2));
+        Vector b = new Vector("", 1, 2, 3);
+
+        Vector x = new ConjugateGradient().solve(a::mult, b);
+        Vector expected = a.solve(b);
+
+        for(int i = 0; i < 3; i++) {
+            assertEquals(expected.getEntry(i), x.getEntry(i), THRESH);
+        }
+    }
+
+    @Test
+    public void testMaxIterations() {
+        SparseMatrix a = poisson(30);
+        ConjugateGradient cg = new ConjugateGradient();
+        cg.setMaxIterations(3);
+
+        thrown.expect(ArithmeticException.class);
+        cg.solve(a::mult, rightHandSide(a.getHeight()));
+    }
+
+    @Test
+    public void testNotPositiveDefinite() {
+        Matrix a = new Matrix("", new Vector("", 1, 0),
+                                  new Vector("", 0, -1));
+
+        thrown.expect(ArithmeticException.class);
+        new ConjugateGradient().solve(a::mult, new Vector("", 1, 1));
+    }
+
+    /*
+     * The 5-point Laplacian on a k by k grid, which is SPD.
+     */
+    static SparseMatrix poisson(int k) {
+        int n = k * k;
+        SparseMatrix.Builder builder = new SparseMatrix.Builder("", n, n);
+
+        for(int i = 0; i < k; i++) {
+            for(int j = 0; j < k; j++) {
+                int row = i * k + j;
+                builder.add(row, row, 4);
+
+                if(i > 0) builder.add(row - k, row, -1);
+                if(i < k - 1) builder.add(row + k, row, -1);
+                if(j > 0) builder.add(row - 1, row, -1);
+                if(j < k - 1) builder.add(row + 1, row, -1);
+            }
+        }
+
+        return builder.build();
+    }
+
+    static Vector rightHandSide(int n) {
+        Vector b = new Vector("", n);
+        for(int i = 0; i < n; i++) {
+            b.setEntry(i, Math.sin(i));
+        }
+        return b;
+    }
+
+    static void checkSolution(SparseMatrix a, Vector x, Vector b) {
+        Vector residual = a.mult(x).sub(b);
+        assertEquals(0, residual.getMagnitude() / b.getMagnitude(), THRESH);
+    }
+
+    /*
+     * Computes DAD for a diagonal D with wildly varying entries, which stays SPD.
+     */
+    private static SparseMatrix scaled(SparseMatrix a) {
+        int n = a.getHeight();
+        Matrix d = new Matrix("", n, n);
+        for(int i = 0; i < n; i++) {
+            d.setEntry(i, i, Math.pow(10, (i % 3) - 1));
+        }
+
+        SparseMatrix s = new SparseMatrix(d);
+        return s.mult(a).mult(s);
+    }
+}
@@ -0,0 +1,79 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class EigenDecompositionTest {
+    private static final double THRESH = 1e-9;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testConstructor() {
+        Matrix m = new Matrix("", new Vector("", 1, 2),
+                                  new Vector("", 3, 4));
+
+        thrown.expect(UnsupportedOperationException.class);
+        new EigenDecomposition(m);
+    }
+
+    @Test
+    public void testEigenvalues() {
+        Matrix m = new Matrix("", new Vector("", 2, -1, 0),
+                                  new Vector("", -1, 2, -1),
+                                  new Vector("", 0, -1, 2));
+
+        Vector values = m.eigenvalues();
+
+        assertEquals(2 - Math.sqrt(2), values.getEntry(0), THRESH);
+        assertEquals(2, values.getEntry(1), THRESH);
+        assertEquals(2 + Math.sqrt(2), values.getEntry(2), THRESH);
+    }
+
+    @Test
+    public void testEigenvectors() {
+        Matrix b = new Matrix("", 40, 40);
+        b.setRand(-10, 10);
+        Matrix m = b.add(b.transpose());
+
+        EigenDecomposition eig = m.eigen();
+        Vector values = eig.getEigenvalues();
+        Vector valuesOnly = m.eigenvalues();
+
+        for(int i = 0; i < 40; i++) {
+            Vector v = eig.getEigenvector(i);
+            assertEquals(1, v.getMagnitude(), THRESH);
+            assertEquals(values.getEntry(i), valuesOnly.getEntry(i), 1e-8);
+
+            if(i > 0) {
+                assertTrue(values.getEntry(i - 1) <= values.getEntry(i));
+                assertEquals(0, v.dot(eig.getEigenvector(i - 1)), THRESH);
+            }
+
+            // Check that Mv = lambda v
+            for(int j = 0; j < 40; j++) {
+                assertEquals(values.getEntry(i) * v.getEntry(j), m.getRowVector(j).dot(v), 1e-8);
+            }
+        }
+
+        Matrix v = eig.getV();
+        assertEquals(eig.getEigenvector(3).getEntry(5), v.getEntry(3, 5), THRESH);
+    }
+
+    @Test
+    public void testValuesOnly() {
+        Matrix m = new Matrix("", new Vector("", 2, 1),
+                                  new Vector("", 1, 2));
+
+        EigenDecomposition eig = new EigenDecomposition(m, false);
+        assertEquals(1, eig.getEigenvalues().getEntry(0), THRESH);
+        assertEquals(3, eig.getEigenvalues().getEntry(1), THRESH);
+
+        thrown.expect(UnsupportedOperationException.class);
+        eig.getV();
+    }
+}
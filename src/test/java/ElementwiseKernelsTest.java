@@ -0,0 +1,99 @@
+import org.junit.Test;
+import org.junit.Before;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class ElementwiseKernelsTest {
+    private static final double THRESH = 1e-9;
+
+    // Covers empty runs, runs shorter than a vector and ragged tails
+    private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 17, 64, 1001};
+
+    private double[] a, b;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        a = new double[1010];
+        b = new double[1010];
+
+        for(int i = 0; i < a.length; i++) {
+            a[i] = random.nextDouble() * 20 - 10;
+            b[i] = random.nextDouble() * 20 - 10;
+        }
+    }
+
+    @Test
+    public void testScalar() {
+        check(new ElementwiseKernels());
+    }
+
+    @Test
+    public void testSelected() {
+        // The SIMD kernels when they are available, the scalar ones otherwise
+        check(ElementwiseKernels.INSTANCE);
+    }
+
+    @Test
+    public void testLoaded() {
+        // Set by the build when the tests run against the SIMD kernels
+        if(Boolean.getBoolean("simd.expected")) {
+            assertEquals("SimdKernels", ElementwiseKernels.INSTANCE.getClass().getName());
+        }
+        else if(!Boolean.parseBoolean(System.getProperty("simd", "true"))) {
+            assertEquals(ElementwiseKernels.class, ElementwiseKernels.INSTANCE.getClass());
+        }
+    }
+
+    @Test
+    public void testInPlace() {
+        double[] expected = new double[100];
+        for(int i = 0; i < 100; i++) {
+            expected[i] = a[i] + b[i];
+        }
+
+        ElementwiseKernels.INSTANCE.add(a, 0, b, 0, a, 0, 100);
+
+        for(int i = 0; i < 100; i++) {
+            assertEquals(expected[i], a[i], 0);
+        }
+    }
+
+    private void check(ElementwiseKernels kernels) {
+        for(int n : LENGTHS) {
+            int aOff = 5;
+            int bOff = 2;
+
+            double dot = 0;
+            double squares = 0;
+            for(int i = 0; i < n; i++) {
+                dot += a[aOff + i] * b[bOff + i];
+                squares += a[aOff + i] * a[aOff + i];
+            }
+
+            assertEquals(dot, kernels.dot(a, aOff, b, bOff, n), THRESH);
+            assertEquals(squares, kernels.sumOfSquares(a, aOff, n), THRESH);
+
+            double[] sum = new double[n + 3];
+            double[] difference = new double[n + 3];
+            kernels.add(a, aOff, b, bOff, sum, 3, n);
+            kernels.sub(a, aOff, b, bOff, difference, 3, n);
+
+            double[] scaled = a.clone();
+            kernels.scale(-2.5, scaled, aOff, n);
+
+            for(int i = 0; i < n; i++) {
+                assertEquals(a[aOff + i] + b[bOff + i], sum[3 + i], 0);
+                assertEquals(a[aOff + i] - b[bOff + i], difference[3 + i], 0);
+                assertEquals(-2.5 * a[aOff + i], scaled[aOff + i], 0);
+            }
+
+            // Nothing outside the run is touched
+            assertEquals(0, sum[0], 0);
+            assertEquals(a[aOff - 1], scaled[aOff - 1], 0);
+            assertEquals(a[aOff + n], scaled[aOff + n], 0);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import org.junit.Test;
+import org.junit.Before;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class ExpressionTest {
+    private static final double THRESH = 1e-9;
+
+    private Matrix a, b, c;
+    private Vector v, w;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        a = new Matrix("a", 5, 4);
+        b = new Matrix("b", 5, 4);
+        c = new Matrix("c", 5, 4);
+        a.setRand(-10, 10);
+        b.setRand(-10, 10);
+        c.setRand(-10, 10);
+
+        v = new Vector("v", 1, -2, 3, 4, -5);
+        w = new Vector("w", 2, 0, -1, 7);
+    }
+
+    @Test
+    public void testElementWise() {
+        Matrix expected = a.add(b).sub(c);
+        expected.mult(2.0);
+
+        Matrix result = a.lazy().add(b).sub(c).mult(2.0).toMatrix("r");
+
+        assertEquals("r", result.getLabel());
+        assertEquals(5, result.getWidth());
+        assertEquals(4, result.getHeight());
+        assertArrayEquals(expected.toArray(), result.toArray(), THRESH);
+    }
+
+    @Test
+    public void testLargeElementWise() {
+        // Spans several blocks of the fused pass
+        Matrix x = new Matrix("x", 100, 70);
+        Matrix y = new Matrix("y", 100, 70);
+        x.setRand(-10, 10);
+        y.setRand(-10, 10);
+
+        Matrix expected = x.sub(y);
+        expected.mult(-0.5);
+
+        Matrix result = x.lazy().mult(-0.5).add(y.lazy().mult(0.5)).toMatrix("r");
+        assertArrayEquals(expected.toArray(), result.toArray(), THRESH);
+    }
+
+    @Test
+    public void testOperandsNotModified() {
+        double[] before = a.toArray();
+        a.lazy().add(a).mult(3).sub(b).toMatrix("r");
+
+        assertArrayEquals(before, a.toArray(), 0);
+    }
+
+    @Test
+    public void testRepeatedTerm() {
+        Expression e = a.lazy();
+        Matrix result = e.add(e).add(a).sub(e.mult(3)).toMatrix("r");
+
+        assertArrayEquals(new double[20], result.toArray(), THRESH);
+    }
+
+    @Test
+    public void testMultAdd() {
+        Matrix t = new Matrix("t", 4, 5);
+        t.setRand(-10, 10);
+        Matrix s = new Matrix("s", 5, 5);
+        s.setRand(-10, 10);
+
+        Matrix expected = t.mult(a).add(s);
+        Matrix result = t.lazy().mult(a).add(s).toMatrix("r");
+        assertArrayEquals(expected.toArray(), result.toArray(), THRESH);
+
+        // Scaled and subtracted products are folded into the kernel
+        expected = s.sub(t.mult(a));
+        expected.mult(2);
+        result = s.lazy().sub(t.lazy().mult(a)).mult(2).toMatrix("r");
+        assertArrayEquals(expected.toArray(), result.toArray(), THRESH);
+    }
+
+    @Test
+    public void testSharedProduct() {
+        Matrix t = new Matrix("t", 4, 5);
+        t.setRand(-10, 10);
+
+        Expression p = t.lazy().mult(a.lazy().add(b));
+        Matrix product = t.mult(a.add(b));
+
+        Matrix expected = product.add(product.mult(product));
+        Matrix result = p.add(p.mult(p)).toMatrix("r");
+        assertArrayEquals(expected.toArray(), result.toArray(), 1e-6);
+    }
+
+    @Test
+    public void testDeepSharing() {
+        // Each step doubles the number of paths to a, so this only finishes
+        // if shared nodes are evaluated once
+        Expression e = a.lazy();
+        for(int i = 0; i < 60; i++) {
+            e = e.add(e).mult(0.5);
+        }
+
+        assertArrayEquals(a.toArray(), e.toMatrix("r").toArray(), THRESH);
+    }
+
+    @Test
+    public void testVector() {
+        Vector expected = a.mult(v).add(w);
+        Vector result = a.lazy().mult(v).add(w).toVector("r");
+
+        assertEquals("r", result.getLabel());
+        assertArrayEquals(expected.toArray(), result.toArray(), THRESH);
+
+        Vector sum = v.lazy().sub(v.lazy().mult(2)).toVector("r");
+        assertArrayEquals(new double[] {-1, 2, -3, -4, 5}, sum.toArray(), THRESH);
+    }
+
+    @Test
+    public void testLazy() {
+        Expression e = a.lazy().add(b);
+        a.setEntry(0, 0, 100);
+
+        assertEquals(100 + b.getEntry(0, 0), e.toMatrix("r").getEntry(0, 0), THRESH);
+    }
+
+    @Test
+    public void testOffHeap() {
+        try(Matrix off = MatrixTest.offHeapCopy(b)) {
+            Matrix result = a.lazy().add(off).toMatrix("r");
+            assertArrayEquals(a.add(b).toArray(), result.toArray(), THRESH);
+        }
+    }
+
+    @Test
+    public void testColumnMatrix() {
+        Matrix column = new Matrix("", new Vector("", 1.5), new Vector("", -2.0));
+
+        // A matrix one column wide is still a matrix
+        assertFalse(column.lazy().isVector());
+        assertArrayEquals(new double[] {3.0, -4.0}, column.lazy().add(column).toMatrix("r").toArray(), 0);
+
+        // So is the product of a matrix and one
+        Matrix square = new Matrix("", new Vector("", 1, 2), new Vector("", 3, 4));
+        Matrix product = square.lazy().mult(column).toMatrix("q");
+        assertEquals(1, product.getWidth());
+        assertArrayEquals(new double[] {1.5 - 4.0, 4.5 - 8.0}, product.toArray(), THRESH);
+    }
+
+    @Test
+    public void testShape() {
+        Expression e = a.lazy().mult(v);
+
+        assertEquals(1, e.getWidth());
+        assertEquals(4, e.getHeight());
+        assertTrue(e.isVector());
+        assertFalse(a.lazy().isVector());
+    }
+
+    @Test
+    public void testAddWrongSize() {
+        thrown.expect(IllegalArgumentException.class);
+        a.lazy().add(new Matrix("m", 4, 4));
+    }
+
+    @Test
+    public void testMultWrongSize() {
+        thrown.expect(IllegalArgumentException.class);
+        a.lazy().mult(b);
+    }
+
+    @Test
+    public void testToMatrixOfVector() {
+        thrown.expect(UnsupportedOperationException.class);
+        v.lazy().toMatrix("r");
+    }
+
+    @Test
+    public void testToVectorOfMatrix() {
+        thrown.expect(UnsupportedOperationException.class);
+        a.lazy().toVector("r");
+    }
+}
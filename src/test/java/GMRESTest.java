@@ -0,0 +1,107 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class GMRESTest {
+    private static final double THRESH = 1e-6;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testSolve() {
+        SparseMatrix a = convectionDiffusion(20);
+        Vector b = ConjugateGradientTest.rightHandSide(a.getHeight());
+
+        GMRES gmres = new GMRES();
+        Vector x = gmres.solve(a::mult, b);
+
+        assertTrue(gmres.getResidual() <= gmres.getTolerance());
+        ConjugateGradientTest.checkSolution(a, x, b);
+    }
+
+    @Test
+    public void testPreconditioned() {
+        SparseMatrix a = convectionDiffusion(20);
+        Vector b = ConjugateGradientTest.rightHandSide(a.getHeight());
+
+        GMRES plain = new GMRES(20);
+        plain.solve(a::mult, b);
+
+        GMRES jacobi = new GMRES(20);
+        jacobi.setPreconditioner(new JacobiPreconditioner(a));
+        Vector x = jacobi.solve(a::mult, b);
+        ConjugateGradientTest.checkSolution(a, x, b);
+
+        GMRES ilu = new GMRES(20);
+        ilu.setPreconditioner(new ILU0Preconditioner(a));
+        x = ilu.solve(a::mult, b);
+        ConjugateGradientTest.checkSolution(a, x, b);
+
+        assertTrue(ilu.getIterations() < plain.getIterations());
+    }
+
+    @Test
+    public void testSmall() {
+        // Fewer unknowns than the restart length, so one cycle is exact
+        Matrix a = new Matrix("", new Vector("", 2, 1, 0),
+                                  new Vector("", -1, 3, 1),
+                                  new Vector("", 0, 5, 2));
+        Vector b = new Vector("", 1, 2, 3);
+
+        GMRES gmres = new GMRES();
+        Vector x = gmres.solve(a::mult, b);
+        Vector expected = a.solve(b);
+
+        assertTrue(gmres.getIterations() <= 3);
+        for(int i = 0; i < 3; i++) {
+            assertEquals(expected.getEntry(i), x.getEntry(i), THRESH);
+        }
+    }
+
+    @Test
+    public void testInitialGuess() {
+        SparseMatrix a = convectionDiffusion(10);
+        Vector b = ConjugateGradientTest.rightHandSide(a.getHeight());
+
+        GMRES gmres = new GMRES();
+        Vector x = gmres.solve(a::mult, b);
+
+        // Starting from the answer takes no iterations
+        gmres.solve(a::mult, b, x);
+        assertEquals(0, gmres.getIterations());
+    }
+
+    @Test
+    public void testRestart() {
+        thrown.expect(IllegalArgumentException.class);
+        new GMRES(0);
+    }
+
+    /*
+     * A 5-point discretization of -laplacian(u) + c . grad(u) on a k by k
+     * grid, which is not symmetric.
+     */
+    private static SparseMatrix convectionDiffusion(int k) {
+        int n = k * k;
+        SparseMatrix.Builder builder = new SparseMatrix.Builder("", n, n);
+
+        for(int i = 0; i < k; i++) {
+            for(int j = 0; j < k; j++) {
+                int row = i * k + j;
+                builder.add(row, row, 4);
+
+                if(i > 0) builder.add(row - k, row, -1.4);
+                if(i < k - 1) builder.add(row + k, row, -0.6);
+                if(j > 0) builder.add(row - 1, row, -1.2);
+                if(j < k - 1) builder.add(row + 1, row, -0.8);
+            }
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,50 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class ILU0PreconditionerTest {
+    private static final double THRESH = 1e-9;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testExactForTridiagonal() {
+        // LU of a tridiagonal matrix has no fill-in, so ILU(0) is exact
+        int n = 50;
+        SparseMatrix.Builder builder = new SparseMatrix.Builder("", n, n);
+        for(int i = 0; i < n; i++) {
+            builder.add(i, i, 3);
+            if(i > 0) builder.add(i - 1, i, -1);
+            if(i < n - 1) builder.add(i + 1, i, -1.5);
+        }
+        SparseMatrix a = builder.build();
+
+        Vector b = ConjugateGradientTest.rightHandSide(n);
+        Vector x = new ILU0Preconditioner(a).apply(b);
+        Vector expected = a.toMatrix().solve(b);
+
+        for(int i = 0; i < n; i++) {
+            assertEquals(expected.getEntry(i), x.getEntry(i), THRESH);
+        }
+    }
+
+    @Test
+    public void testZeroPivot() {
+        Matrix a = new Matrix("", new Vector("", 0, 1),
+                                  new Vector("", 1, 0));
+
+        thrown.expect(ArithmeticException.class);
+        new ILU0Preconditioner(a);
+    }
+
+    @Test
+    public void testNonSquare() {
+        thrown.expect(UnsupportedOperationException.class);
+        new ILU0Preconditioner(new Matrix("", 3, 2));
+    }
+}
@@ -0,0 +1,188 @@
+import org.junit.Test;
+import org.junit.Before;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class InterpreterTest {
+    private static final double THRESH = 1e-9;
+
+    private Memory memory;
+    private Interpreter interpreter;
+    private Matrix a, b, d;
+    private Vector v;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        a = new Matrix("", 3, 4);
+        b = new Matrix("", 5, 3);
+        d = new Matrix("", 5, 4);
+        a.setRand(-10, 10);
+        b.setRand(-10, 10);
+        d.setRand(-10, 10);
+        v = new Vector("", 1, 2, 3);
+
+        memory = new Memory();
+        memory.store("A", a);
+        memory.store("B", b);
+        memory.store("D", d);
+        memory.store("v", v);
+        memory.store("k", 4.0);
+
+        interpreter = new Interpreter(memory);
+    }
+
+    @Test
+    public void testAssignment() {
+        Object result = interpreter.evaluate("C = A*B + 2*D");
+
+        Matrix twoD = d.add(d);
+        Matrix expected = a.mult(b).add(twoD);
+
+        assertSame(result, memory.retrieveMatrix("C"));
+        assertEquals("C", ((Matrix) result).getLabel());
+        assertArrayEquals(expected.toArray(), ((Matrix) result).toArray(), THRESH);
+
+        // Assigning again replaces the variable, even with a new type
+        interpreter.evaluate("C = k / 2");
+        assertEquals(Memory.EntryType.CONSTANT, memory.retrieveType("C"));
+        assertEquals(2.0, memory.retrieveConstant("C"), 0);
+    }
+
+    @Test
+    public void testConstants() {
+        assertEquals(7.0, interpreter.evaluateConstant("1 + 2 * 3"), 0);
+        assertEquals(9.0, interpreter.evaluateConstant("(1 + 2) * 3"), 0);
+        assertEquals(-1.0, interpreter.evaluateConstant("k - 5"), 0);
+        assertEquals(2.0, interpreter.evaluateConstant("-k / -2"), 0);
+        assertEquals(1.5e-3, interpreter.evaluateConstant("1.5e-3"), 0);
+        assertEquals(1.0, interpreter.evaluateConstant("8 - 4 - 3"), 0);
+    }
+
+    @Test
+    public void testVector() {
+        Vector result = interpreter.evaluateVector("A*v*2 - A*v/1");
+
+        assertArrayEquals(a.mult(v).toArray(), result.toArray(), THRESH);
+        assertEquals("", result.getLabel());
+    }
+
+    @Test
+    public void testColumnMatrix() {
+        memory.store("K", new Matrix("", new Vector("", 1.5), new Vector("", -2.0)));
+
+        Matrix result = interpreter.evaluateMatrix("K + K*2");
+        assertEquals(1, result.getWidth());
+        assertArrayEquals(new double[] {4.5, -6.0}, result.toArray(), THRESH);
+    }
+
+    @Test
+    public void testNegate() {
+        Matrix result = interpreter.evaluateMatrix("-(A - A) - A");
+
+        Matrix expected = a.add(a);
+        expected.mult(-0.5);
+        assertArrayEquals(expected.toArray(), result.toArray(), THRESH);
+    }
+
+    @Test
+    public void testSelfAssignment() {
+        interpreter.evaluate("A = A + A");
+
+        Matrix expected = a.add(a);
+        assertArrayEquals(expected.toArray(), memory.retrieveMatrix("A").toArray(), THRESH);
+    }
+
+    @Test
+    public void testCache() {
+        Plan plan = interpreter.compile("C = A*B + 2*D");
+
+        assertSame(plan, interpreter.compile("C = A*B + 2*D"));
+        assertEquals(1, interpreter.cacheSize());
+
+        // The plan reads the current values of its variables
+        memory.replace("D", new Matrix("", 5, 4));
+        Matrix result = interpreter.evaluateMatrix("C = A*B + 2*D");
+        assertEquals(1, interpreter.cacheSize());
+        assertArrayEquals(a.mult(b).toArray(), result.toArray(), THRESH);
+    }
+
+    @Test
+    public void testCacheTypeChange() {
+        memory.store("x", 3.0);
+        Plan plan = interpreter.compile("x + x");
+        assertEquals(6.0, interpreter.evaluate("x + x"));
+
+        memory.replace("x", v);
+        assertNotSame(plan, interpreter.compile("x + x"));
+        assertArrayEquals(new double[] {2, 4, 6}, interpreter.evaluateVector("x + x").toArray(), THRESH);
+
+        memory.replace("k", v);
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("multiply");
+        interpreter.evaluate("v * k");
+    }
+
+    @Test
+    public void testCacheEviction() {
+        for(int i = 0; i < Interpreter.CACHE_SIZE + 10; i++) {
+            interpreter.evaluate("k + " + i);
+        }
+
+        assertEquals(Interpreter.CACHE_SIZE, interpreter.cacheSize());
+    }
+
+    @Test
+    public void testUnknownIdentifier() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Unknown identifier: X");
+        interpreter.evaluate("A + X");
+    }
+
+    @Test
+    public void testTypeMismatch() {
+        thrown.expect(IllegalArgumentException.class);
+        interpreter.evaluate("A + k");
+    }
+
+    @Test
+    public void testVectorTimesMatrix() {
+        thrown.expect(IllegalArgumentException.class);
+        interpreter.evaluate("v * A");
+    }
+
+    @Test
+    public void testDivideByMatrix() {
+        thrown.expect(IllegalArgumentException.class);
+        interpreter.evaluate("k / A");
+    }
+
+    @Test
+    public void testWrongSize() {
+        thrown.expect(IllegalArgumentException.class);
+        interpreter.evaluate("A + D");
+    }
+
+    @Test
+    public void testSyntaxError() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("position");
+        interpreter.evaluate("C = (A + ");
+    }
+
+    @Test
+    public void testTrailingInput() {
+        thrown.expect(IllegalArgumentException.class);
+        interpreter.evaluate("A B");
+    }
+
+    @Test
+    public void testWrongResultType() {
+        thrown.expect(IllegalArgumentException.class);
+        interpreter.evaluateMatrix("A*v");
+    }
+}
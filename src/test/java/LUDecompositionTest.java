@@ -0,0 +1,116 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class LUDecompositionTest {
+    private static final double THRESH = 1e-9;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testConstructor() {
+        thrown.expect(UnsupportedOperationException.class);
+        new LUDecomposition(new Matrix("", 3, 4));
+    }
+
+    @Test
+    public void testFactors() {
+        Matrix a = new Matrix("", new Vector("", 0, 2, 1),
+                                  new Vector("", 4, 1, 3),
+                                  new Vector("", 2, 7, 5));
+
+        LUDecomposition lu = a.lu();
+        Matrix pa = lu.getP().mult(a);
+        Matrix product = lu.getL().mult(lu.getU());
+
+        for(int i = 0; i < 3; i++) {
+            for(int j = 0; j < 3; j++) {
+                assertEquals(pa.getEntry(i, j), product.getEntry(i, j), THRESH);
+            }
+            for(int j = 0; j < i; j++) {
+                assertEquals(0, lu.getU().getEntry(j, i), THRESH);
+            }
+        }
+    }
+
+    @Test
+    public void testDeterminant() {
+        Matrix a = new Matrix("", new Vector("", 7, 7, 0, 9),
+                                  new Vector("", 3, 2, 2, 5),
+                                  new Vector("", 9, 6, 7, 2),
+                                  new Vector("", 0, 1, 3, 2));
+
+        assertEquals(-477, a.lu().determinant(), THRESH);
+
+        Matrix s = new Matrix("", new Vector("", 1, 2),
+                                  new Vector("", 2, 4));
+
+        assertEquals(true, s.lu().isSingular());
+        assertEquals(0, s.lu().determinant(), THRESH);
+    }
+
+    @Test
+    public void testSolve() {
+        Matrix a = new Matrix("", new Vector("", 2, 1, -1),
+                                  new Vector("", -3, -1, 2),
+                                  new Vector("", -2, 1, 2));
+
+        Vector x = a.lu().solve(new Vector("", 8, -11, -3));
+
+        assertEquals(2, x.getEntry(0), THRESH);
+        assertEquals(3, x.getEntry(1), THRESH);
+        assertEquals(-1, x.getEntry(2), THRESH);
+
+        thrown.expect(IllegalArgumentException.class);
+        a.lu().solve(new Vector("", 1, 2));
+    }
+
+    @Test
+    public void testSolveMatrix() {
+        Matrix a = new Matrix("", 50, 50);
+        Matrix b = new Matrix("", 7, 50);
+        a.setRand(-10, 10);
+        b.setRand(-10, 10);
+
+        for(int i = 0; i < 50; i++) {
+            a.setEntry(i, i, a.getEntry(i, i) + 500);
+        }
+
+        Matrix x = a.lu().solve(b);
+        Matrix ax = a.mult(x);
+
+        for(int i = 0; i < b.getWidth(); i++) {
+            for(int j = 0; j < b.getHeight(); j++) {
+                assertEquals(b.getEntry(i, j), ax.getEntry(i, j), THRESH);
+            }
+        }
+    }
+
+    @Test
+    public void testInverse() {
+        Matrix a = new Matrix("", new Vector("", 4, 7),
+                                  new Vector("", 2, 6));
+
+        Matrix inv = a.lu().inverse();
+
+        assertEquals(0.6, inv.getEntry(0, 0), THRESH);
+        assertEquals(-0.7, inv.getEntry(1, 0), THRESH);
+        assertEquals(-0.2, inv.getEntry(0, 1), THRESH);
+        assertEquals(0.4, inv.getEntry(1, 1), THRESH);
+    }
+
+    @Test
+    public void testSingular() {
+        Matrix s = new Matrix("", new Vector("", 1, 2, 3),
+                                  new Vector("", 2, 4, 6),
+                                  new Vector("", 1, 0, 1));
+
+        thrown.expect(ArithmeticException.class);
+        s.lu().solve(new Vector("", 1, 2, 3));
+    }
+}
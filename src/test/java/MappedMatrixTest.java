@@ -0,0 +1,128 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class MappedMatrixTest {
+    private static final double MULT_THRESH = 1e-9;
+
+    private Path directory;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mapped");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try(java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for(Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testCreate() throws IOException {
+        Path file = directory.resolve("m");
+
+        try(MappedMatrix m = MappedMatrix.create(file, "m", 3, 4)) {
+            assertEquals(3, m.getWidth());
+            assertEquals(4, m.getHeight());
+            assertEquals(0, m.getEntry(2, 3), 0);
+            m.setEntry(2, 3, 7.5);
+            m.setEntry(0, 0, -1);
+        }
+
+        // The file is a plain binary record
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Matrix m = BinaryFormat.readMatrix(channel);
+            assertEquals("m", m.getLabel());
+            assertEquals(7.5, m.getEntry(2, 3), 0);
+            assertEquals(-1, m.getEntry(0, 0), 0);
+        }
+
+        try(MappedMatrix m = MappedMatrix.open(file)) {
+            assertEquals("m", m.getLabel());
+            assertEquals(7.5, m.getEntry(2, 3), 0);
+
+            thrown.expect(IndexOutOfBoundsException.class);
+            m.getEntry(3, 0);
+        }
+    }
+
+    @Test
+    public void testMult() throws IOException {
+        Matrix a = new Matrix("a", 37, 50);
+        Matrix b = new Matrix("b", 45, 37);
+        a.setRand(-10, 10);
+        b.setRand(-10, 10);
+        Matrix expected = a.mult(b);
+
+        try(MappedMatrix mappedA = MappedMatrix.open(write(a, "a"));
+            MappedMatrix mappedB = MappedMatrix.open(write(b, "b"))) {
+
+            // Buffers from a single tile up to several per dimension
+            for(int side : new int[] {2, 7, 16, 64}) {
+                Path file = directory.resolve("c" + side);
+
+                try(MappedMatrix c = MappedMatrix.create(file, "c", 45, 50)) {
+                    MappedMatrix.multInto(mappedA, mappedB, c, 3L * 8 * side * side);
+
+                    for(int y = 0; y < 50; y++) {
+                        for(int x = 0; x < 45; x++) {
+                            assertEquals(expected.getEntry(x, y), c.getEntry(x, y), MULT_THRESH);
+                        }
+                    }
+                }
+            }
+
+            try(MappedMatrix c = mappedA.mult("c", mappedB, directory.resolve("c"))) {
+                assertEquals(expected.getEntry(44, 49), c.getEntry(44, 49), MULT_THRESH);
+            }
+        }
+    }
+
+    @Test
+    public void testMultSize() throws IOException {
+        try(MappedMatrix a = MappedMatrix.create(directory.resolve("a"), "", 3, 4);
+            MappedMatrix b = MappedMatrix.create(directory.resolve("b"), "", 3, 4)) {
+
+            thrown.expect(IllegalArgumentException.class);
+            a.mult("", b, directory.resolve("c"));
+        }
+    }
+
+    @Test
+    public void testOpenInvalid() throws IOException {
+        Path file = directory.resolve("v");
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            BinaryFormat.write(new Vector("", 1, 2, 3), channel);
+        }
+
+        thrown.expect(IOException.class);
+        MappedMatrix.open(file);
+    }
+
+    private Path write(Matrix m, String name) throws IOException {
+        Path file = directory.resolve(name);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            BinaryFormat.write(m, channel);
+        }
+
+        return file;
+    }
+}
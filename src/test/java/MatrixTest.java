@@ -206,6 +206,109 @@ public class MatrixTest {
         w.mult(t);
     }
 
+    @Test
+    public void testMultBlocked() {
+        Matrix p = new Matrix("", 301, 67);
+        Matrix q = new Matrix("", 93, 301);
+        p.setRand(-10, 10);
+        q.setRand(-10, 10);
+
+        Matrix w = p.mult(q);
+
+        assertEquals(93, w.getWidth());
+        assertEquals(67, w.getHeight());
+
+        for(int i = 0; i < w.getWidth(); i++) {
+            for(int j = 0; j < w.getHeight(); j++) {
+                double sum = 0;
+                for(int k = 0; k < p.getWidth(); k++) {
+                    sum += p.getEntry(k, j) * q.getEntry(i, k);
+                }
+
+                assertEquals(sum, w.getEntry(i, j), MULT_THRESH);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelMult() {
+        Matrix p = new Matrix("", 400, 300);
+        Matrix q = new Matrix("", 250, 400);
+        p.setRand(-10, 10);
+        q.setRand(-10, 10);
+
+        Matrix w = p.parallelMult(q);
+
+        assertEquals(true, w.equals(p.mult(q)));
+
+        thrown.expect(IllegalArgumentException.class);
+        p.parallelMult(p);
+    }
+
+    @Test
+    public void testParallelAddSub() {
+        Matrix p = new Matrix("", 500, 300);
+        Matrix q = new Matrix("", 500, 300);
+        p.setRand(-10, 10);
+        q.setRand(-10, 10);
+
+        assertEquals(true, p.parallelAdd(q).equals(p.add(q)));
+        assertEquals(true, p.parallelSub(q).equals(p.sub(q)));
+
+        thrown.expect(IllegalArgumentException.class);
+        p.parallelAdd(new Matrix("", 3, 3));
+    }
+
+    @Test
+    public void testParallelTranspose() {
+        Matrix p = new Matrix("", 700, 301);
+        p.setRand(-10, 10);
+
+        assertEquals(true, p.parallelTranspose().equals(p.transpose()));
+    }
+
+    @Test
+    public void testInPlace() {
+        Matrix m = new Matrix("TestEquals", new Vector("", 2, 8, 3),
+                                            new Vector("", 9, 2, 6));
+
+        Matrix p = new Matrix("TestEquals", new Vector("", 1, 1, 1),
+                                            new Vector("", 2, 2, 2));
+
+        Matrix q = new Matrix("TestEquals", new Vector("", 6, 18, 8),
+                                            new Vector("", 22, 8, 16));
+
+        m.addInPlace(p);
+        m.scaleInPlace(2);
+        assertEquals(true, m.equals(q));
+
+        m.subInPlace(q);
+        assertEquals(true, m.equals(new Matrix("TestEquals", 3, 2)));
+
+        thrown.expect(IllegalArgumentException.class);
+        m.addInPlace(new Matrix("", 3, 3));
+    }
+
+    @Test
+    public void testMultInto() {
+        Matrix p = new Matrix("", 40, 50);
+        Matrix q = new Matrix("", 60, 40);
+        Matrix dest = new Matrix("", 60, 50);
+        p.setRand(-10, 10);
+        q.setRand(-10, 10);
+        dest.setRand(-10, 10);
+
+        Matrix.multInto(p, q, dest);
+        assertEquals(true, dest.equals(p.mult(q)));
+
+        Matrix t = new Matrix("", 50, 40);
+        Matrix.transposeInto(p, t);
+        assertEquals(true, t.equals(p.transpose()));
+
+        thrown.expect(IllegalArgumentException.class);
+        Matrix.multInto(p, q, p);
+    }
+
     @Test
     public void testMultConst() {
         Matrix m = new Matrix("TestEquals", new Vector("", 2, 8, 3),
@@ -279,6 +382,27 @@ public class MatrixTest {
         w.getRowVector(-1);
     }
 
+    @Test
+    public void testGetRowVectorCopy() {
+        Matrix w = new Matrix("", new Vector("", 7, 7, 0),
+                                  new Vector("", 3, 2, 2));
+
+        w.getRowVector(0).setEntry(1, 100);
+        assertEquals(7, w.getEntry(1, 0), ADD_THRESH);
+    }
+
+    @Test
+    public void testSetRand() {
+        Matrix m = new Matrix("", 7, 3);
+        m.setRand(1, 5);
+
+        for(int i = 0; i < m.getWidth(); i++) {
+            for(int j = 0; j < m.getHeight(); j++) {
+                assertTrue(m.getEntry(i, j) >= 1 && m.getEntry(i, j) < 5);
+            }
+        }
+    }
+
     @Test
     public void testGetColumnVector() {
         Matrix w = new Matrix("", new Vector("", 7, 7, 0, 9),
@@ -295,6 +419,101 @@ public class MatrixTest {
         w.getColumnVector(-1);
     }
 
+    @Test
+    public void testMultVector() {
+        Matrix a = new Matrix("a", new Vector("", 2, 1, -1),
+                                   new Vector("", -3, -1, 2));
+
+        // Like the other overloads, the result takes this matrix's label
+        Vector product = a.mult(new Vector("v", 2, 3, -1));
+        assertEquals("a", product.getLabel());
+        assertEquals(2, product.getSize());
+        assertEquals(8, product.getEntry(0), MULT_THRESH);
+        assertEquals(-11, product.getEntry(1), MULT_THRESH);
+
+        thrown.expect(IllegalArgumentException.class);
+        a.mult(new Vector("", 1, 2));
+    }
+
+    @Test
+    public void testSolve() {
+        Matrix a = new Matrix("", new Vector("", 2, 1, -1),
+                                  new Vector("", -3, -1, 2),
+                                  new Vector("", -2, 1, 2));
+
+        Vector x = a.solve(new Vector("", 8, -11, -3));
+        assertEquals(2, x.getEntry(0), MULT_THRESH);
+        assertEquals(3, x.getEntry(1), MULT_THRESH);
+        assertEquals(-1, x.getEntry(2), MULT_THRESH);
+
+        Matrix k = new Matrix("", 150, 150);
+        Matrix b = new Matrix("", 300, 150);
+        k.setRand(-10, 10);
+        b.setRand(-10, 10);
+
+        for(int i = 0; i < k.getWidth(); i++) {
+            k.setEntry(i, i, k.getEntry(i, i) + 1500);
+        }
+
+        Matrix w = k.solve(b);
+        Matrix kw = k.mult(w);
+
+        for(int i = 0; i < b.getWidth(); i++) {
+            Vector column = k.solve(b.getColumnVector(i));
+
+            for(int j = 0; j < b.getHeight(); j++) {
+                assertEquals(b.getEntry(i, j), kw.getEntry(i, j), MULT_THRESH);
+                assertEquals(column.getEntry(j), w.getEntry(i, j), MULT_THRESH);
+            }
+        }
+
+        thrown.expect(UnsupportedOperationException.class);
+        b.solve(k);
+    }
+
+    @Test
+    public void testDeterminant() {
+        Matrix w = new Matrix("", new Vector("", 7, 7, 0, 9),
+                                  new Vector("", 3, 2, 2, 5),
+                                  new Vector("", 9, 6, 7, 2),
+                                  new Vector("", 0, 1, 3, 2));
+
+        assertEquals(-477, w.determinant(), MULT_THRESH);
+
+        thrown.expect(UnsupportedOperationException.class);
+        new Matrix("", 3, 7).determinant();
+    }
+
+    @Test
+    public void testInverse() {
+        Matrix w = new Matrix("", 120, 120);
+        w.setRand(-10, 10);
+
+        for(int i = 0; i < w.getWidth(); i++) {
+            w.setEntry(i, i, w.getEntry(i, i) + 100);
+        }
+
+        Matrix inv = w.inverse();
+        Matrix product = w.mult(inv);
+
+        for(int i = 0; i < w.getWidth(); i++) {
+            for(int j = 0; j < w.getHeight(); j++) {
+                assertEquals(i == j ? 1 : 0, product.getEntry(i, j), MULT_THRESH);
+            }
+        }
+
+        assertEquals(true, inv.equals(w.lu().inverse()));
+
+        w.invertInPlace();
+        assertEquals(true, w.equals(inv));
+
+        Matrix s = new Matrix("", new Vector("", 1, 2),
+                                  new Vector("", 2, 4));
+
+        thrown.expect(ArithmeticException.class);
+        s.inverse();
+    }
+
     @Test
     public void testRREF() {
         Matrix w = new Matrix("", new Vector("", 7, 7, 0, 9),
@@ -309,4 +528,86 @@ public class MatrixTest {
 
         assertEquals(true, w.reducedRowEchelon().equals(r));
     }
+
+    @Test
+    public void testOffHeap() {
+        Matrix heap = new Matrix("", 7, 5);
+        heap.setRand(-10, 10);
+
+        try(Matrix m = offHeapCopy(heap)) {
+            assertTrue(m.isOffHeap());
+            assertFalse(heap.isOffHeap());
+            assertEquals(true, m.equals(heap));
+
+            m.setEntry(3, 2, 42);
+            assertEquals(42, m.getEntry(3, 2), 0);
+            heap.setEntry(3, 2, 42);
+
+            assertEquals(true, m.transpose().equals(heap.transpose()));
+            assertEquals(true, m.add(heap).equals(heap.add(heap)));
+            assertEquals(true, m.getRowVector(2).equals(heap.getRowVector(2)));
+            assertEquals(true, m.mult(new Vector("", 1, 2, 3, 4, 5, 6, 7))
+                                .equals(heap.mult(new Vector("", 1, 2, 3, 4, 5, 6, 7))));
+
+            m.scaleInPlace(2);
+            heap.scaleInPlace(2);
+            assertEquals(true, m.equals(heap));
+            assertEquals(heap.toString(), m.toString());
+        }
+    }
+
+    @Test
+    public void testOffHeapMult() {
+        // Large enough to span several tiles in every dimension
+        Matrix a = new Matrix("", 530, 600);
+        Matrix b = new Matrix("", 700, 530);
+        a.setRand(-10, 10);
+        b.setRand(-10, 10);
+        Matrix expected = a.mult(b);
+
+        try(Matrix offA = offHeapCopy(a); Matrix offB = offHeapCopy(b);
+            Matrix dest = Matrix.offHeap("", 700, 600)) {
+            assertArrayEquals(expected.toArray(), offA.mult(b).toArray(), MULT_THRESH);
+            assertArrayEquals(expected.toArray(), a.mult(offB).toArray(), MULT_THRESH);
+
+            Matrix.multInto(offA, offB, dest);
+            assertTrue(dest.isOffHeap());
+            assertArrayEquals(expected.toArray(), dest.toArray(), MULT_THRESH);
+
+            Matrix transposed = new Matrix("", 600, 700);
+            Matrix.transposeInto(dest, transposed);
+            assertArrayEquals(expected.transpose().toArray(), transposed.toArray(), MULT_THRESH);
+
+            // Element-wise operations also go a tile at a time
+            Matrix.addInto(dest, expected, dest);
+            dest.scaleInPlace(0.5);
+            Matrix.subInto(dest, expected, dest);
+            assertArrayEquals(new double[700 * 600], dest.toArray(), MULT_THRESH);
+        }
+    }
+
+    @Test
+    public void testTooLarge() {
+        // 50000 * 50000 entries would overflow an int
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Matrix is too large!");
+        new Matrix("", 50000, 50000);
+    }
+
+    @Test
+    public void testOffHeapClosed() {
+        Matrix m = Matrix.offHeap("", 3, 3);
+        m.close();
+        m.close();
+
+        thrown.expect(IllegalStateException.class);
+        m.getEntry(0, 0);
+    }
+
+    static Matrix offHeapCopy(Matrix m) {
+        Matrix toReturn = Matrix.offHeap(m.getLabel(), m.getWidth(), m.getHeight());
+        Matrix.addInto(m, new Matrix("", m.getWidth(), m.getHeight()), toReturn);
+
+        return toReturn;
+    }
 }
@@ -6,53 +6,363 @@ import org.junit.Rule;
 import org.junit.rules.ExpectedException;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class MemoryTest {
 
+    private Memory memory;
+
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
+    @Before
+    public void setUp() {
+        memory = new Memory();
+
+        memory.store("A", 9.0);
+        memory.store("B", new Vector("", 1.0, 2.0, 3.0));
+        memory.store("C", new Matrix("", 5, 5));
+    }
+
     @Test
     public void testStore() {
-        Memory.store("A", 9.0);
-        Memory.store("B", new Vector("", 1.0, 2.0, 3.0));
-        Memory.store("C", new Matrix("", 5, 5));
+        assertEquals(3, memory.size());
+
+        thrown.expect(IllegalArgumentException.class);
+        memory.store("A", 1.0);
     }
 
     @Test
     public void testRetrieveType() {
-        Memory.store("D", 9.0);
-        Memory.store("E", new Vector("", 1.0, 2.0, 3.0));
-        Memory.store("F", new Matrix("", 5, 5));
-
-        assertEquals("CONSTANT", Memory.retrieveType("D").toString());
-        assertEquals("VECTOR", Memory.retrieveType("E").toString());
-        assertEquals("MATRIX", Memory.retrieveType("F").toString());
-        assertEquals("NULL", Memory.retrieveType("K").toString());
-
-        Memory.free("D");
-        Memory.free("E");
-        Memory.free("F");
+        assertEquals("CONSTANT", memory.retrieveType("A").toString());
+        assertEquals("VECTOR", memory.retrieveType("B").toString());
+        assertEquals("MATRIX", memory.retrieveType("C").toString());
+        assertEquals("NULL", memory.retrieveType("K").toString());
     }
 
     @Test
     public void testFree() {
-        Memory.free("A");
-        Memory.free("B");
-        Memory.free("C");
+        assertTrue(memory.free("A"));
+        assertTrue(memory.free("B"));
+        assertTrue(memory.free("C"));
+        assertFalse(memory.free("C"));
+
+        assertEquals("NULL", memory.retrieveType("A").toString());
+        assertEquals(0, memory.size());
 
-        Memory.store("A", 9.0);
-        Memory.store("B", new Vector("", 1.0, 2.0, 3.0));
-        Memory.store("C", new Matrix("", 5, 5));
+        memory.store("A", 9.0);
+        memory.store("B", new Vector("", 1.0, 2.0, 3.0));
+        memory.store("C", new Matrix("", 5, 5));
     }
 
     @Test
     public void testRetrieve() {
-        double a = Memory.retrieveConstant("A");
-        Vector b = Memory.retrieveVector("B");
-        Matrix c = Memory.retrieveMatrix("C");
+        double a = memory.retrieveConstant("A");
+        Vector b = memory.retrieveVector("B");
+        Matrix c = memory.retrieveMatrix("C");
 
         assertEquals(9.0, a, 1e-4);
         assertEquals(new Vector("", 1.0, 2.0, 3.0), b);
         assertEquals(new Matrix("", 5, 5), c);
+
+        // Asking for the wrong type finds nothing
+        assertNull(memory.retrieveMatrix("A"));
+        assertNull(memory.retrieveVector("C"));
+        assertEquals(0, memory.retrieveConstant("B"), 0);
+    }
+
+    @Test
+    public void testReplace() {
+        Vector v = new Vector("", 4.0, 5.0);
+
+        memory.replace("A", v);
+        assertEquals("VECTOR", memory.retrieveType("A").toString());
+        assertSame(v, memory.retrieveVector("A"));
+
+        memory.replace("A", 2.0);
+        assertEquals(2.0, memory.retrieveConstant("A"), 0);
+
+        thrown.expect(IllegalArgumentException.class);
+        memory.replace("K", 1.0);
+    }
+
+    @Test
+    public void testSessions() {
+        Memory other = new Memory();
+
+        assertEquals("NULL", other.retrieveType("A").toString());
+        other.store("A", 1.0);
+
+        assertEquals(9.0, memory.retrieveConstant("A"), 0);
+        assertEquals(1.0, other.retrieveConstant("A"), 0);
+    }
+
+    @Test
+    public void testManyVariables() {
+        int count = 20000;
+
+        for(int i = 0; i < count; i++) {
+            memory.store("many" + i, (double) i);
+        }
+
+        // Labels built at runtime are not interned, so lookups must go by value
+        assertEquals(12345.0, memory.retrieveConstant("many" + 12345), 0);
+        assertEquals("CONSTANT", memory.retrieveType("many" + (count - 1)).toString());
+
+        for(int i = 0; i < count; i++) {
+            memory.free("many" + i);
+        }
+
+        assertEquals(3, memory.size());
+    }
+
+    @Test
+    public void testConcurrentStore() throws InterruptedException {
+        int threads = 8;
+        int labels = 2000;
+        AtomicInteger stored = new AtomicInteger();
+        AtomicInteger freed = new AtomicInteger();
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ArrayList<Thread> workers = new ArrayList<>();
+
+        // Every thread tries to store every label; exactly one must win each
+        for(int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for(int i = 0; i < labels; i++) {
+                    try {
+                        memory.store("shared" + i, (double) i);
+                        stored.incrementAndGet();
+                    }
+                    catch(IllegalArgumentException e) {
+                        // Someone else got there first
+                    }
+                }
+
+                // Nobody frees until everyone has finished storing
+                try {
+                    barrier.await();
+                }
+                catch(InterruptedException | BrokenBarrierException e) {
+                    return;
+                }
+
+                for(int i = 0; i < labels; i++) {
+                    if(memory.free("shared" + i)) {
+                        freed.incrementAndGet();
+                    }
+                }
+            });
+
+            workers.add(worker);
+            worker.start();
+        }
+
+        for(Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(labels, stored.get());
+        assertEquals(labels, freed.get());
+        assertEquals(3, memory.size());
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        Matrix big = new Matrix("big", 300, 200);
+        big.setRand(-10, 10);
+        Vector odd = new Vector("odd", 1.0, 2.0, 3.0, 4.0, 5.0);
+        memory.store("big", big);
+        memory.store("odd", odd);
+        memory.store("\u00e9", -2.5);
+
+        Path file = Files.createTempFile("memory", ".snapshot");
+        try {
+            memory.snapshot(file);
+            Memory restored = Memory.restore(file);
+
+            assertEquals(memory.size(), restored.size());
+            assertEquals(9.0, restored.retrieveConstant("A"), 0);
+            assertEquals(-2.5, restored.retrieveConstant("\u00e9"), 0);
+
+            Matrix m = restored.retrieveMatrix("big");
+            assertEquals("big", m.getLabel());
+            assertEquals(300, m.getWidth());
+            assertEquals(200, m.getHeight());
+            for(int y = 0; y < 200; y++) {
+                for(int x = 0; x < 300; x++) {
+                    assertEquals(big.getEntry(x, y), m.getEntry(x, y), 0);
+                }
+            }
+
+            Vector v = restored.retrieveVector("odd");
+            assertEquals("odd", v.getLabel());
+            assertEquals(5, v.getSize());
+            assertEquals(5.0, v.getEntry(4), 0);
+            assertEquals(3, restored.retrieveVector("B").getSize());
+            assertEquals(5, restored.retrieveMatrix("C").getWidth());
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSnapshotColumn() throws IOException {
+        Matrix column = new Matrix("column", new Vector("", 1.5), new Vector("", -2.0));
+        memory.store("col", column);
+
+        Path file = Files.createTempFile("memory", ".snapshot");
+        try {
+            memory.snapshot(file);
+            Matrix m = Memory.restore(file).retrieveMatrix("col");
+
+            assertEquals(1, m.getWidth());
+            assertEquals(2, m.getHeight());
+            assertArrayEquals(column.toArray(), m.toArray(), 0);
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRestoreInvalid() throws IOException {
+        Path file = Files.createTempFile("memory", ".snapshot");
+        try {
+            Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+
+            thrown.expect(IOException.class);
+            Memory.restore(file);
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRestoreDuplicate() throws IOException {
+        ByteBuffer snapshot = ByteBuffer.allocate(16 + 2 * 14).order(ByteOrder.LITTLE_ENDIAN);
+        snapshot.putInt(0x534D554D).putInt(2).putInt(2).putInt(0);
+        for(int i = 0; i < 2; i++) {
+            snapshot.put((byte) 0).putInt(1).put((byte) 'A').putDouble(i);
+        }
+
+        Path file = Files.createTempFile("memory", ".snapshot");
+        try {
+            Files.write(file, snapshot.array());
+
+            thrown.expect(IOException.class);
+            thrown.expectMessage("Snapshot is corrupt!");
+            Memory.restore(file);
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBudget() throws IOException {
+        // Room for two 100x100 matrices at a time
+        try(Memory bounded = new Memory(2 * 80000 + 100)) {
+            double[][] expected = new double[5][];
+
+            for(int i = 0; i < 5; i++) {
+                Matrix m = new Matrix("m" + i, 100, 100);
+                m.setRand(-10, 10);
+                expected[i] = m.toArray();
+                bounded.store("M" + i, m);
+
+                assertTrue(bounded.getResidentBytes() <= 2 * 80000 + 100);
+            }
+            bounded.store("v", new Vector("v", 1.0, 2.0, 3.0));
+            bounded.store("k", 4.0);
+
+            assertEquals(7, bounded.size());
+            assertEquals(4.0, bounded.retrieveConstant("k"), 0);
+            assertEquals("MATRIX", bounded.retrieveType("M0").toString());
+
+            // Paging in evicts something else, but every matrix comes back intact
+            for(int round = 0; round < 2; round++) {
+                for(int i = 0; i < 5; i++) {
+                    Matrix m = bounded.retrieveMatrix("M" + i);
+                    assertEquals("m" + i, m.getLabel());
+                    assertArrayEquals(expected[i], m.toArray(), 0);
+                    assertTrue(bounded.getResidentBytes() <= 2 * 80000 + 100);
+                }
+            }
+
+            assertArrayEquals(new double[] {1.0, 2.0, 3.0}, bounded.retrieveVector("v").toArray(), 0);
+            assertNull(bounded.retrieveVector("M0"));
+        }
+    }
+
+    @Test
+    public void testBudgetReplaceFree() throws IOException {
+        try(Memory bounded = new Memory(80000)) {
+            bounded.store("X", new Matrix("", 100, 100));
+            bounded.store("Y", new Matrix("", 100, 100));
+            assertEquals(80000, bounded.getResidentBytes());
+
+            // X is spilled; replacing or freeing it must not count it again
+            bounded.replace("X", 1.0);
+            assertEquals(1.0, bounded.retrieveConstant("X"), 0);
+            assertEquals(80000, bounded.getResidentBytes());
+
+            assertTrue(bounded.free("Y"));
+            assertEquals(0, bounded.getResidentBytes());
+
+            // A variable larger than the budget stays resident while in use
+            bounded.store("Z", new Matrix("", 200, 200));
+            assertEquals(320000, bounded.getResidentBytes());
+            assertEquals(200, bounded.retrieveMatrix("Z").getWidth());
+        }
+    }
+
+    @Test
+    public void testBudgetColumn() throws IOException {
+        Matrix column = new Matrix("column", new Vector("", 1.5), new Vector("", -2.0));
+
+        try(Memory bounded = new Memory(80000)) {
+            bounded.store("col", column);
+
+            // Pushes the column out to the spill file
+            bounded.store("X", new Matrix("", 100, 100));
+
+            Matrix m = bounded.retrieveMatrix("col");
+            assertEquals("column", m.getLabel());
+            assertEquals(1, m.getWidth());
+            assertArrayEquals(column.toArray(), m.toArray(), 0);
+        }
+    }
+
+    @Test
+    public void testBudgetSnapshot() throws IOException {
+        Path file = Files.createTempFile("memory", ".snapshot");
+
+        try(Memory bounded = new Memory(1000)) {
+            Matrix m = new Matrix("", 20, 20);
+            m.setRand(-1, 1);
+            bounded.store("M", m);
+            bounded.store("N", new Matrix("", 20, 20));
+            long resident = bounded.getResidentBytes();
+
+            bounded.snapshot(file);
+            assertEquals(resident, bounded.getResidentBytes());
+
+            Memory restored = Memory.restore(file);
+            assertEquals(2, restored.size());
+            assertArrayEquals(m.toArray(), restored.retrieveMatrix("M").toArray(), 0);
+        }
+        finally {
+            Files.delete(file);
+        }
     }
 }
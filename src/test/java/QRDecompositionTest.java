@@ -0,0 +1,84 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class QRDecompositionTest {
+    private static final double THRESH = 1e-9;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testConstructor() {
+        thrown.expect(UnsupportedOperationException.class);
+        new QRDecomposition(new Matrix("", 5, 3));
+    }
+
+    @Test
+    public void testFactors() {
+        // Tall enough to use more than one panel
+        Matrix a = new Matrix("", 70, 90);
+        a.setRand(-10, 10);
+
+        QRDecomposition qr = a.qr();
+        Matrix q = qr.getQ();
+        Matrix r = qr.getR();
+        Matrix qtq = q.transpose().mult(q);
+        Matrix product = q.mult(r);
+
+        for(int i = 0; i < a.getWidth(); i++) {
+            for(int j = 0; j < a.getHeight(); j++) {
+                assertEquals(a.getEntry(i, j), product.getEntry(i, j), THRESH);
+            }
+            for(int j = 0; j < a.getWidth(); j++) {
+                assertEquals(i == j ? 1 : 0, qtq.getEntry(i, j), THRESH);
+            }
+            for(int j = i + 1; j < a.getWidth(); j++) {
+                assertEquals(0, r.getEntry(i, j), THRESH);
+            }
+        }
+    }
+
+    @Test
+    public void testLeastSquares() {
+        // Fit y = 1 + 2x to points lying exactly on the line
+        Matrix a = new Matrix("", new Vector("", 1, 0),
+                                  new Vector("", 1, 1),
+                                  new Vector("", 1, 2),
+                                  new Vector("", 1, 3));
+
+        Vector x = a.leastSquares(new Vector("", 1, 3, 5, 7));
+
+        assertEquals(1, x.getEntry(0), THRESH);
+        assertEquals(2, x.getEntry(1), THRESH);
+
+        // The residual of a least-squares fit is orthogonal to the columns
+        x = a.leastSquares(new Vector("", 1, 4, 4, 8));
+        Vector residual = new Vector("", 1, 4, 4, 8);
+        for(int i = 0; i < 4; i++) {
+            residual.setEntry(i, residual.getEntry(i) - x.getEntry(0) - x.getEntry(1) * i);
+        }
+
+        assertEquals(0, residual.dot(a.getColumnVector(0)), THRESH);
+        assertEquals(0, residual.dot(a.getColumnVector(1)), THRESH);
+
+        thrown.expect(IllegalArgumentException.class);
+        a.leastSquares(new Vector("", 1, 2));
+    }
+
+    @Test
+    public void testRankDeficient() {
+        Matrix a = new Matrix("", new Vector("", 1, 2),
+                                  new Vector("", 2, 4),
+                                  new Vector("", 3, 6));
+
+        assertEquals(false, a.qr().isFullRank());
+
+        thrown.expect(ArithmeticException.class);
+        a.leastSquares(new Vector("", 1, 2, 3));
+    }
+}
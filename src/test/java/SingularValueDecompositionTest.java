@@ -0,0 +1,158 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class SingularValueDecompositionTest {
+    private static final double THRESH = 1e-9;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testSingularValues() {
+        Matrix a = new Matrix("", new Vector("", 3, 0),
+                                  new Vector("", 4, 5));
+
+        // A^T A has eigenvalues 5 and 45
+        Vector s = a.svd().getSingularValues();
+
+        assertEquals(2, s.getSize());
+        assertEquals(Math.sqrt(45), s.getEntry(0), THRESH);
+        assertEquals(Math.sqrt(5), s.getEntry(1), THRESH);
+        assertEquals(3, a.svd().conditionNumber(), THRESH);
+    }
+
+    @Test
+    public void testThin() {
+        // Tall, and wide
+        checkFactors(randomMatrix(7, 40), true);
+        checkFactors(randomMatrix(40, 7), true);
+        checkFactors(randomMatrix(12, 12), true);
+    }
+
+    @Test
+    public void testFull() {
+        checkFactors(randomMatrix(7, 40), false);
+        checkFactors(randomMatrix(40, 7), false);
+    }
+
+    @Test
+    public void testFullCompletesBasis() {
+        // Filling out U for this matrix used to run out of standard basis
+        // candidates and leave the last columns of U unnormalized
+        Matrix a = new Matrix("", new Vector("", -1, 1, -2, -1),
+                                  new Vector("", -1, 2, -2, 3),
+                                  new Vector("", -3, 0, 3, 3),
+                                  new Vector("", 2, 3, -3, 0),
+                                  new Vector("", 1, -1, 1, 2),
+                                  new Vector("", -3, 0, -1, 0));
+
+        Matrix u = a.svd(false).getU();
+        Matrix identity = new Matrix("", 6, 6).identity();
+
+        checkEquals(identity, u.transpose().mult(u));
+        checkFactors(a, false);
+    }
+
+    @Test
+    public void testRankDeficient() {
+        Matrix a = new Matrix("", new Vector("", 1, 2, 3),
+                                  new Vector("", 2, 4, 6),
+                                  new Vector("", 1, 0, 1),
+                                  new Vector("", 3, 4, 7));
+
+        SingularValueDecomposition svd = a.svd();
+
+        assertEquals(2, svd.rank());
+        assertEquals(Double.POSITIVE_INFINITY, svd.conditionNumber(), 0);
+        checkFactors(a, true);
+        checkFactors(a, false);
+    }
+
+    @Test
+    public void testPseudoInverse() {
+        // For a full rank square matrix the pseudo-inverse is the inverse
+        Matrix a = randomMatrix(9, 9);
+        checkEquals(a.inverse(), a.svd().pseudoInverse());
+
+        // A A+ A = A and A+ A A+ = A+ for any matrix
+        Matrix b = new Matrix("", new Vector("", 1, 2, 3),
+                                  new Vector("", 2, 4, 6),
+                                  new Vector("", 1, 0, 1));
+        Matrix p = b.svd().pseudoInverse();
+
+        assertEquals(3, p.getWidth());
+        assertEquals(3, p.getHeight());
+        checkEquals(b, b.mult(p).mult(b));
+        checkEquals(p, p.mult(b).mult(p));
+
+        Matrix c = randomMatrix(4, 10);
+        Matrix q = c.svd().pseudoInverse();
+
+        assertEquals(10, q.getWidth());
+        assertEquals(4, q.getHeight());
+        checkEquals(c, c.mult(q).mult(c));
+    }
+
+    /*
+     * Checks that U and V have orthonormal columns of the right shape and
+     * that U S V^T reproduces the matrix.
+     */
+    private void checkFactors(Matrix a, boolean thin) {
+        SingularValueDecomposition svd = a.svd(thin);
+        Matrix u = svd.getU();
+        Matrix v = svd.getV();
+        Vector s = svd.getSingularValues();
+        int k = Math.min(a.getWidth(), a.getHeight());
+
+        assertEquals(a.getHeight(), u.getHeight());
+        assertEquals(thin ? k : a.getHeight(), u.getWidth());
+        assertEquals(a.getWidth(), v.getHeight());
+        assertEquals(thin ? k : a.getWidth(), v.getWidth());
+
+        checkOrthonormal(u);
+        checkOrthonormal(v);
+
+        for(int i = 1; i < k; i++) {
+            assertTrue(s.getEntry(i - 1) >= s.getEntry(i));
+        }
+
+        for(int y = 0; y < a.getHeight(); y++) {
+            for(int x = 0; x < a.getWidth(); x++) {
+                double sum = 0;
+                for(int i = 0; i < k; i++) {
+                    sum += u.getEntry(i, y) * s.getEntry(i) * v.getEntry(i, x);
+                }
+                assertEquals(a.getEntry(x, y), sum, THRESH);
+            }
+        }
+    }
+
+    private void checkOrthonormal(Matrix m) {
+        Matrix product = m.transpose().mult(m);
+
+        for(int i = 0; i < m.getWidth(); i++) {
+            for(int j = 0; j < m.getWidth(); j++) {
+                assertEquals(i == j ? 1 : 0, product.getEntry(i, j), THRESH);
+            }
+        }
+    }
+
+    private void checkEquals(Matrix expected, Matrix actual) {
+        for(int y = 0; y < expected.getHeight(); y++) {
+            for(int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getEntry(x, y), actual.getEntry(x, y), THRESH);
+            }
+        }
+    }
+
+    private Matrix randomMatrix(int width, int height) {
+        Matrix m = new Matrix("", width, height);
+        m.setRand(-10, 10);
+        return m;
+    }
+}
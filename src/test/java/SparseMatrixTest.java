@@ -0,0 +1,181 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class SparseMatrixTest {
+    private static final double THRESH = 1e-9;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testBuilder() {
+        // Out of order, with a duplicate and an entry that cancels out
+        SparseMatrix s = new SparseMatrix.Builder("S", 3, 2)
+            .add(2, 1, 5)
+            .add(1, 0, 2)
+            .add(0, 1, 1)
+            .add(1, 0, 3)
+            .add(0, 0, 4)
+            .add(0, 0, -4)
+            .build();
+
+        assertEquals(3, s.getNonZeros());
+        assertEquals(0, s.getEntry(0, 0), 0);
+        assertEquals(5, s.getEntry(1, 0), 0);
+        assertEquals(1, s.getEntry(0, 1), 0);
+        assertEquals(5, s.getEntry(2, 1), 0);
+        assertEquals(0, s.getEntry(2, 0), 0);
+
+        thrown.expect(IndexOutOfBoundsException.class);
+        new SparseMatrix.Builder("", 3, 2).add(3, 0, 1);
+    }
+
+    @Test
+    public void testConstructor() {
+        thrown.expect(IllegalArgumentException.class);
+        new SparseMatrix.Builder("", 1, 5);
+    }
+
+    @Test
+    public void testDenseRoundTrip() {
+        Matrix m = randomSparse(20, 30, 0.2).toMatrix();
+        SparseMatrix s = new SparseMatrix(m);
+
+        assertEquals(m, s.toMatrix());
+        assertEquals(s, new SparseMatrix(s.toMatrix()));
+    }
+
+    @Test
+    public void testMultVector() {
+        SparseMatrix s = randomSparse(40, 25, 0.1);
+        Vector v = new Vector("", 40);
+        v.setRand(-10, 10);
+
+        Vector result = s.mult(v);
+        Matrix dense = s.toMatrix();
+
+        assertEquals(25, result.getSize());
+        for(int y = 0; y < 25; y++) {
+            assertEquals(dense.getRowVector(y).dot(v), result.getEntry(y), THRESH);
+        }
+
+        thrown.expect(IllegalArgumentException.class);
+        s.mult(new Vector("", 25));
+    }
+
+    @Test
+    public void testMultDense() {
+        SparseMatrix s = randomSparse(30, 20, 0.1);
+        Matrix m = new Matrix("", 15, 30);
+        m.setRand(-10, 10);
+
+        checkEquals(s.toMatrix().mult(m), s.mult(m));
+
+        // And dense times sparse
+        Matrix n = new Matrix("", 20, 12);
+        n.setRand(-10, 10);
+
+        checkEquals(n.mult(s.toMatrix()), n.mult(s));
+
+        thrown.expect(IllegalArgumentException.class);
+        s.mult(n);
+    }
+
+    @Test
+    public void testMultSparse() {
+        SparseMatrix a = randomSparse(30, 20, 0.1);
+        SparseMatrix b = randomSparse(25, 30, 0.1);
+
+        SparseMatrix product = a.mult(b);
+
+        assertEquals(25, product.getWidth());
+        assertEquals(20, product.getHeight());
+        checkEquals(a.toMatrix().mult(b.toMatrix()), product.toMatrix());
+
+        thrown.expect(IllegalArgumentException.class);
+        b.mult(b);
+    }
+
+    @Test
+    public void testTranspose() {
+        SparseMatrix s = randomSparse(30, 20, 0.1);
+        SparseMatrix t = s.transpose();
+
+        assertEquals(20, t.getWidth());
+        assertEquals(30, t.getHeight());
+        assertEquals(s.getNonZeros(), t.getNonZeros());
+        checkEquals(s.toMatrix().transpose(), t.toMatrix());
+        assertEquals(s, t.transpose());
+    }
+
+    @Test
+    public void testNullLabel() {
+        SparseMatrix unlabelled = new SparseMatrix.Builder(null, 3, 3).add(1, 2, 5).build();
+
+        assertEquals(unlabelled, new SparseMatrix.Builder(null, 3, 3).add(1, 2, 5).build());
+        assertNotEquals(unlabelled, new SparseMatrix.Builder("", 3, 3).add(1, 2, 5).build());
+        assertNotEquals(new SparseMatrix.Builder("", 3, 3).add(1, 2, 5).build(), unlabelled);
+    }
+
+    @Test
+    public void testLarge() {
+        // 100k x 100k with a million nonzeros would need 80 GB dense
+        int n = 100000;
+        Random rand = new Random(1);
+        SparseMatrix.Builder builder = new SparseMatrix.Builder("", n, n);
+
+        for(int i = 0; i < n; i++) {
+            builder.add(i, i, 4);
+            for(int j = 0; j < 9; j++) {
+                builder.add(rand.nextInt(n), i, -0.1);
+            }
+        }
+
+        SparseMatrix s = builder.build();
+        assertTrue(s.getNonZeros() <= 10 * n);
+
+        Vector ones = new Vector("", n);
+        for(int i = 0; i < n; i++) {
+            ones.setEntry(i, 1);
+        }
+
+        // Every row sums to 4 - 0.9
+        Vector result = s.mult(ones);
+        for(int i = 0; i < n; i += 997) {
+            assertEquals(3.1, result.getEntry(i), THRESH);
+        }
+    }
+
+    private void checkEquals(Matrix expected, Matrix actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+
+        for(int y = 0; y < expected.getHeight(); y++) {
+            for(int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getEntry(x, y), actual.getEntry(x, y), THRESH);
+            }
+        }
+    }
+
+    private SparseMatrix randomSparse(int width, int height, double density) {
+        Random rand = new Random(width * 31 + height);
+        SparseMatrix.Builder builder = new SparseMatrix.Builder("", width, height);
+
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                if(rand.nextDouble() < density) {
+                    builder.add(x, y, rand.nextDouble() * 20 - 10);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.*;
+
+public class SparseVectorTest {
+    private static final double THRESH = 1e-9;
+
+    private SparseVector a;
+    private SparseVector b;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        a = new SparseVector("a", 10, new int[] {7, 1, 4}, new double[] {3, 2, -1});
+        b = new SparseVector("b", 10, new int[] {4, 9, 1}, new double[] {1, 5, 0.5});
+    }
+
+    @Test
+    public void testConstructor() {
+        assertEquals(10, a.getSize());
+        assertEquals(3, a.getNonZeros());
+        assertEquals(2, a.getEntry(1), 0);
+        assertEquals(-1, a.getEntry(4), 0);
+        assertEquals(3, a.getEntry(7), 0);
+        assertEquals(0, a.getEntry(0), 0);
+
+        // Zeros are dropped
+        SparseVector c = new SparseVector("", 5, new int[] {0, 3}, new double[] {0, 1});
+        assertEquals(1, c.getNonZeros());
+
+        thrown.expect(IllegalArgumentException.class);
+        new SparseVector("", 5, new int[] {2, 2}, new double[] {1, 1});
+    }
+
+    @Test
+    public void testConstructorBounds() {
+        thrown.expect(IndexOutOfBoundsException.class);
+        new SparseVector("", 5, new int[] {5}, new double[] {1});
+    }
+
+    @Test
+    public void testDenseRoundTrip() {
+        Vector v = new Vector("v", 0, 2, 0, 0, -3, 0);
+        SparseVector s = new SparseVector(v);
+
+        assertEquals(2, s.getNonZeros());
+        assertEquals(v, s.toVector());
+        assertEquals(a, new SparseVector(a.toVector()));
+    }
+
+    @Test
+    public void testGetMagnitude() {
+        assertEquals(Math.sqrt(14), a.getMagnitude(), THRESH);
+        assertEquals(a.toVector().getMagnitude(), a.getMagnitude(), THRESH);
+    }
+
+    @Test
+    public void testDot() {
+        assertEquals(0, a.dot(b), THRESH);
+        assertEquals(a.toVector().dot(b.toVector()), a.dot(b), THRESH);
+        assertEquals(14, a.dot(a), THRESH);
+
+        thrown.expect(IllegalArgumentException.class);
+        a.dot(new SparseVector("", 3, new int[0], new double[0]));
+    }
+
+    @Test
+    public void testAddSub() {
+        SparseVector sum = a.add(b);
+        SparseVector difference = a.sub(b);
+
+        // a[4] + b[4] cancels out and is not stored
+        assertEquals(3, sum.getNonZeros());
+        assertEquals(2.5, sum.getEntry(1), THRESH);
+        assertEquals(0, sum.getEntry(4), THRESH);
+        assertEquals(5, sum.getEntry(9), THRESH);
+        checkEquals(a.toVector().add(b.toVector()), sum.toVector());
+        checkEquals(a.toVector().sub(b.toVector()), difference.toVector());
+
+        thrown.expect(IllegalArgumentException.class);
+        a.add(new SparseVector("", 3, new int[0], new double[0]));
+    }
+
+    @Test
+    public void testMixed() {
+        Vector v = new Vector("v", 10);
+        v.setRand(-10, 10);
+
+        Vector denseA = a.toVector();
+
+        assertEquals(denseA.dot(v), a.dot(v), THRESH);
+        assertEquals(denseA.dot(v), v.dot(a), THRESH);
+        checkEquals(denseA.add(v), a.add(v));
+        checkEquals(denseA.sub(v), a.sub(v));
+        checkEquals(v.add(denseA), v.add(a));
+        checkEquals(v.sub(denseA), v.sub(a));
+
+        Vector expected = v.add(denseA);
+        v.addInPlace(a);
+        checkEquals(expected, v);
+
+        expected = v.sub(denseA);
+        v.subInPlace(a);
+        checkEquals(expected, v);
+
+        thrown.expect(IllegalArgumentException.class);
+        new Vector("", 3).addInPlace(a);
+    }
+
+    @Test
+    public void testNullLabel() {
+        SparseVector unlabelled = new SparseVector(null, 5, new int[] {2}, new double[] {1});
+
+        assertEquals(unlabelled, new SparseVector(null, 5, new int[] {2}, new double[] {1}));
+        assertNotEquals(unlabelled, new SparseVector("", 5, new int[] {2}, new double[] {1}));
+        assertNotEquals(new SparseVector("", 5, new int[] {2}, new double[] {1}), unlabelled);
+    }
+
+    @Test
+    public void testMult() {
+        SparseVector scaled = a.mult(2);
+
+        assertEquals(6, scaled.getEntry(7), 0);
+        assertEquals(3, a.getEntry(7), 0);
+        assertEquals(0, a.mult(0).getNonZeros());
+    }
+
+    private void checkEquals(Vector expected, Vector actual) {
+        assertEquals(expected.getSize(), actual.getSize());
+
+        for(int i = 0; i < expected.getSize(); i++) {
+            assertEquals(expected.getEntry(i), actual.getEntry(i), THRESH);
+        }
+    }
+}
@@ -103,6 +103,26 @@ public class VectorTest {
         v.sub(q);
     }
 
+    @Test
+    public void testInPlace() {
+        Vector v = new Vector("Test 1", 1, 2, 3);
+        Vector w = new Vector("Test 2", 4, 6, 8);
+
+        v.addInPlace(w);
+        assertEquals(true, v.equals(new Vector("Test 1", 5, 8, 11)));
+
+        v.subInPlace(w);
+        v.scaleInPlace(2);
+        assertEquals(true, v.equals(new Vector("Test 1", 2, 4, 6)));
+
+        Vector dest = new Vector("Dest", 3);
+        Vector.subInto(w, v, dest);
+        assertEquals(true, dest.equals(new Vector("Dest", 2, 2, 2)));
+
+        thrown.expect(IllegalArgumentException.class);
+        Vector.addInto(v, w, new Vector("", 4));
+    }
+
     @Test
     public void testCross() {
         Vector v = new Vector("Test 1", 4.66, 17.34, 90);